@@ -0,0 +1,79 @@
+package io.github.eb4j;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import io.github.eb4j.hook.DefaultHook;
+
+/**
+ * Allocation and GC pressure of text lookups.
+ * <p>
+ * Every lookup creates a {@link io.github.eb4j.io.BookReader} and a stream.
+ * {@code getText} measures them as they are now, without finalizers;
+ * {@code getTextFinalizable} additionally allocates two objects with a
+ * {@code finalize()} method per lookup, as the reader and the stream used
+ * to be, so that the difference shows the cost of finalizer registration.
+ * Run with {@code ./gradlew jmh} and compare the gc profiler output
+ * ({@code gc.alloc.rate.norm}, {@code gc.count}, {@code gc.time}).
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BookReaderBenchmark {
+
+    private Book book;
+    private SubBook sub;
+    private long pos;
+
+    @Setup(Level.Trial)
+    public void setup() throws EBException {
+        File dir = new File(System.getProperty("eb4j.test.data", "src/test/resources/data"), "epwing");
+        book = new Book(dir);
+        sub = book.getSubBook(1);
+        pos = sub.searchWord("Tokyo").getNextResult().getTextPosition();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        book.close();
+    }
+
+    @Benchmark
+    public String getText() throws EBException {
+        return sub.getText(pos, new DefaultHook(sub));
+    }
+
+    @Benchmark
+    public String getTextFinalizable() throws EBException {
+        Finalizable reader = new Finalizable();
+        Finalizable stream = new Finalizable();
+        String text = sub.getText(pos, new DefaultHook(sub));
+        reader.closed = stream.closed;
+        return text;
+    }
+
+    /**
+     * Object with a finalizer, standing for the former reader and stream.
+     */
+    static final class Finalizable {
+        private boolean closed;
+
+        @Override
+        @SuppressWarnings("deprecation")
+        protected void finalize() throws Throwable {
+            closed = true;
+            super.finalize();
+        }
+    }
+}
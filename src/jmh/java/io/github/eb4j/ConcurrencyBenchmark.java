@@ -0,0 +1,91 @@
+package io.github.eb4j;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.eb4j.hook.DefaultHook;
+import io.github.eb4j.io.PageCache;
+
+/**
+ * Throughput of lookups on books shared between threads.
+ * <p>
+ * The books are opened once and shared by all benchmark threads, like
+ * the stress test in ConcurrencyTest, which checks the results. Run with
+ * {@code ./gradlew jmh} once per thread count, setting {@code threads} in
+ * the jmh block from 1 up to twice the number of cores, and compare the
+ * scores to see how the lookups scale.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrencyBenchmark {
+
+    private Book zipped;
+    private Book mapped;
+    private Book gaiji;
+    private SubBook zippedSub;
+    private SubBook mappedSub;
+    private SubBook gaijiSub;
+    private SubAppendix appendix;
+    private long pos;
+
+    @Setup(Level.Trial)
+    public void setup() throws EBException {
+        File data = new File(System.getProperty("eb4j.test.data", "src/test/resources/data"));
+        File dir = new File(data, "epwing-zipped");
+        zipped = new Book(dir, new File(dir, "appendix"));
+        zipped.setPageCache(new PageCache(PageCache.DEFAULT_SIZE));
+        zippedSub = zipped.getSubBook(1);
+        appendix = zipped.getSubBook(0).getSubAppendix();
+
+        mapped = new Book(new File(data, "epwing"));
+        mapped.setMemoryMapped(true);
+        mappedSub = mapped.getSubBook(1);
+        pos = mappedSub.searchWord("Tokyo").getNextResult().getTextPosition();
+
+        gaiji = new Book(new File(data, "epwing-gaiji"));
+        gaijiSub = gaiji.getSubBook(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        zipped.close();
+        mapped.close();
+        gaiji.close();
+    }
+
+    @Benchmark
+    public String searchWordAndGetText() throws EBException {
+        Result result = zippedSub.searchWord("Tokyo").getNextResult();
+        return result.getText(new DefaultHook(zippedSub));
+    }
+
+    @Benchmark
+    public String getTextMapped() throws EBException {
+        return mappedSub.getText(pos, new DefaultHook(mappedSub));
+    }
+
+    @Benchmark
+    public void gaiji(final Blackhole bh) throws EBException {
+        ExtFont font = gaijiSub.getFont(ExtFont.FONT_16);
+        bh.consume(font.getNarrowFont(0xa121));
+        bh.consume(font.getWideFont(0xb121));
+    }
+
+    @Benchmark
+    public String getWideFontAlt() throws EBException {
+        return appendix.getWideFontAlt(0xA43A);
+    }
+}
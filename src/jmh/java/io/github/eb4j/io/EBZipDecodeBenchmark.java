@@ -0,0 +1,91 @@
+package io.github.eb4j.io;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.github.eb4j.EBException;
+
+/**
+ * Benchmark of EBZIP slice decoding over the epwing-zipped test book.
+ * <p>
+ * {@code freshInflater} decodes every slice with a new inflater and input
+ * buffer, as done before inflaters were pooled; {@code pooledInflater}
+ * decodes through {@link EBZipInputStream#decodeSlice(long, byte[])}.
+ * The page cache is disabled so that every slice is decoded.
+ * Run with {@code ./gradlew jmh}; the gc profiler reports allocation rates.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EBZipDecodeBenchmark {
+
+    private FileInfo info;
+    private EBZipInputStream stream;
+    private byte[] out;
+    private long slices;
+
+    @Setup(Level.Trial)
+    public void setup() throws EBException {
+        File dir = new File(System.getProperty("eb4j.test.data", "src/test/resources/data"),
+                "epwing-zipped/test/DATA");
+        info = new FileInfo();
+        info.setFile(new File(dir, "HONMON.ebz"));
+        info.setFormat(EBFormat.FORMAT_EBZIP);
+        info.setPageCache(new PageCache(0));
+        stream = new EBZipInputStream(info);
+        stream.initFileInfo();
+        out = new byte[info.getSliceSize()];
+        slices = (info.getFileSize() + info.getSliceSize() - 1) / info.getSliceSize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stream.close();
+        info.getInflaterPool().clear();
+        info.closeChannel();
+    }
+
+    @Benchmark
+    public void pooledInflater(final Blackhole bh) throws EBException {
+        for (long i = 0; i < slices; i++) {
+            stream.decodeSlice(i, out);
+            bh.consume(out);
+        }
+    }
+
+    @Benchmark
+    public void freshInflater(final Blackhole bh) throws EBException, DataFormatException {
+        for (long i = 0; i < slices; i++) {
+            long pos = info.getZipSlicePosition(i);
+            int size = (int) (info.getZipSlicePosition(i + 1) - pos);
+            byte[] b = new byte[size];
+            stream.readRawFully(pos, b, 0, size);
+            if (size == info.getSliceSize()) {
+                System.arraycopy(b, 0, out, 0, size);
+            } else {
+                Inflater inf = new Inflater();
+                try {
+                    inf.setInput(b, 0, size);
+                    inf.inflate(out, 0, info.getSliceSize());
+                } finally {
+                    inf.end();
+                }
+            }
+            bh.consume(out);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.eb4j.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark of building the Huffman tree and decode table of an EPWING6
+ * frequency table, as done when a book is opened.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HuffmanTreeBenchmark {
+
+    @Param({"1000", "40000"})
+    public int leaf32;
+
+    private long[] values;
+    private int[] frequencies;
+    private int[] types;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1);
+        int size = leaf32 + 0x400 + 256 + 1;
+        values = new long[size];
+        frequencies = new int[size];
+        types = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+            frequencies[i] = random.nextInt(0x10000);
+            if (i < leaf32) {
+                types[i] = HuffmanNode.LEAF_32;
+            } else if (i < leaf32 + 0x400) {
+                types[i] = HuffmanNode.LEAF_16;
+            } else if (i < size - 1) {
+                types[i] = HuffmanNode.LEAF_8;
+            } else {
+                types[i] = HuffmanNode.LEAF_EOF;
+                frequencies[i] = 1;
+            }
+        }
+    }
+
+    @Benchmark
+    public HuffmanTable makeTree() {
+        List<HuffmanNode> list = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            list.add(new HuffmanNode(values[i], frequencies[i], types[i]));
+        }
+        return new HuffmanTable(HuffmanNode.makeTree(list));
+    }
+}
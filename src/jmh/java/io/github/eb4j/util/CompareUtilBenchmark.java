@@ -0,0 +1,72 @@
+package io.github.eb4j.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Allocation of key comparisons while scanning a leaf index page.
+ * <p>
+ * A 2 KB page of fixed-length entries is compared with a key entry by
+ * entry. {@code scanCopy} copies every entry into a new array before the
+ * comparison, as the searcher used to; {@code scanInPlace} compares the
+ * entries in the page with the offset overloads. Run with
+ * {@code ./gradlew jmh} and compare {@code gc.alloc.rate.norm}, which
+ * should be zero for {@code scanInPlace}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompareUtilBenchmark {
+
+    private static final int PAGE_SIZE = 2048;
+    private static final int ENTRY_LENGTH = 16;
+    private static final int RECORD_LENGTH = ENTRY_LENGTH + 12;
+
+    private byte[] page;
+    private byte[] key;
+    private int count;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1);
+        page = new byte[PAGE_SIZE];
+        count = (PAGE_SIZE - 4) / RECORD_LENGTH;
+        for (int i = 0; i < count; i++) {
+            int off = 4 + i * RECORD_LENGTH;
+            for (int j = 0; j < ENTRY_LENGTH; j++) {
+                page[off + j] = (byte) (0x21 + random.nextInt(0x5e));
+            }
+        }
+        key = new byte[ENTRY_LENGTH];
+        // larger than every entry so that the whole page is scanned
+        Arrays.fill(key, (byte) 0x7f);
+    }
+
+    @Benchmark
+    public void scanCopy(final Blackhole bh) {
+        for (int i = 0; i < count; i++) {
+            byte[] b = new byte[ENTRY_LENGTH];
+            System.arraycopy(page, 4 + i * RECORD_LENGTH, b, 0, b.length);
+            bh.consume(CompareUtil.compareToJISX0208(key, b, false));
+        }
+    }
+
+    @Benchmark
+    public void scanInPlace(final Blackhole bh) {
+        for (int i = 0; i < count; i++) {
+            bh.consume(CompareUtil.compareToJISX0208(key, page, 4 + i * RECORD_LENGTH, ENTRY_LENGTH, false));
+        }
+    }
+}
@@ -20,7 +20,7 @@ import io.github.eb4j.util.ByteUtil;
  * @author Hisaya FUKUMOTO
  * @author Hiroshi Miura
  */
-public class Appendix {
+public class Appendix implements AutoCloseable {
 
     /** Path of appendix package */
     private String _appendixPath = null;
@@ -123,6 +123,18 @@ public class Appendix {
         return _sub[index];
     }
 
+    /**
+     * Closes data files of all sub-books in the appendix package.
+     */
+    @Override
+    public void close() {
+        if (_sub != null) {
+            for (SubAppendix sub : _sub) {
+                sub.close();
+            }
+        }
+    }
+
     /**
      * Read information from CATALOG(S) file.
      *
@@ -164,6 +176,7 @@ public class Appendix {
             }
         } finally {
             bis.close();
+            file.close();
         }
     }
 }
@@ -0,0 +1,288 @@
+package io.github.eb4j;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.eb4j.hook.Hook;
+
+/**
+ * Asynchronous facade of a sub-book.
+ * <p>
+ * Searches and reads run on an executor and return a
+ * {@link CompletableFuture}, so that lookups across several books can be
+ * issued at once without blocking the caller. Cancelling the future of a
+ * search stops the traversal of the index before the next page is read.
+ * </p>
+ * <p>
+ * An instance is obtained with {@link SubBook#async()} or
+ * {@link SubBook#async(Executor)}. Without an executor, tasks run on
+ * virtual threads when the runtime supports them (Java 21 or later), and
+ * on a shared pool of daemon threads otherwise.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+public class AsyncSubBook {
+
+    /** Default executor, created on first use. */
+    private static volatile Executor defaultExecutor = null;
+
+    /** Sub-book. */
+    private final SubBook _sub;
+    /** Executor of the tasks. */
+    private final Executor _executor;
+
+
+    /**
+     * Build a facade.
+     *
+     * @param sub sub-book.
+     * @param executor executor of the tasks.
+     */
+    AsyncSubBook(final SubBook sub, final Executor executor) {
+        super();
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        _sub = sub;
+        _executor = executor;
+    }
+
+
+    /**
+     * Returns the default executor.
+     * <p>
+     * A virtual-thread-per-task executor on Java 21 or later, a cached
+     * pool of daemon threads otherwise.
+     * </p>
+     *
+     * @return default executor.
+     */
+    static Executor getDefaultExecutor() {
+        Executor ret = defaultExecutor;
+        if (ret == null) {
+            synchronized (AsyncSubBook.class) {
+                ret = defaultExecutor;
+                if (ret == null) {
+                    ret = _newVirtualThreadExecutor();
+                    if (ret == null) {
+                        AtomicInteger count = new AtomicInteger();
+                        ret = Executors.newCachedThreadPool(r -> {
+                            Thread t = new Thread(r, "eb4j-async-" + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+                    }
+                    defaultExecutor = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a virtual-thread-per-task executor if the runtime has one.
+     *
+     * @return executor, or null before Java 21.
+     */
+    private static Executor _newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the sub-book.
+     *
+     * @return sub-book.
+     */
+    public SubBook getSubBook() {
+        return _sub;
+    }
+
+    /**
+     * Returns the executor of the tasks.
+     *
+     * @return executor.
+     */
+    public Executor getExecutor() {
+        return _executor;
+    }
+
+    /**
+     * 前方一致検索を行います。
+     *
+     * @param word 検索語
+     * @param limit 結果の最大数 (0以下の場合は制限なし)
+     * @return 検索結果のリストを返すfuture
+     * @see SubBook#searchWord(String)
+     */
+    public CompletableFuture<List<Result>> searchWord(final String word, final int limit) {
+        return _search(() -> _sub.searchWord(word), limit);
+    }
+
+    /**
+     * 後方一致検索を行います。
+     *
+     * @param word 検索語
+     * @param limit 結果の最大数 (0以下の場合は制限なし)
+     * @return 検索結果のリストを返すfuture
+     * @see SubBook#searchEndword(String)
+     */
+    public CompletableFuture<List<Result>> searchEndword(final String word, final int limit) {
+        return _search(() -> _sub.searchEndword(word), limit);
+    }
+
+    /**
+     * 完全一致検索を行います。
+     *
+     * @param word 検索語
+     * @param limit 結果の最大数 (0以下の場合は制限なし)
+     * @return 検索結果のリストを返すfuture
+     * @see SubBook#searchExactword(String)
+     */
+    public CompletableFuture<List<Result>> searchExactword(final String word, final int limit) {
+        return _search(() -> _sub.searchExactword(word), limit);
+    }
+
+    /**
+     * 指定された語で始まる見出し語をインデックスの順に返します。
+     *
+     * @param prefix 検索語
+     * @param limit 結果の最大数 (0以下の場合は制限なし)
+     * @return 見出し語のリストを返すfuture
+     * @see SubBook#complete(String, int)
+     */
+    public CompletableFuture<List<Headword>> complete(final String prefix, final int limit) {
+        return _call(() -> _sub.complete(prefix, limit));
+    }
+
+    /**
+     * 指定位置の見出しを返します。
+     *
+     * @param pos データ位置
+     * @param hook フック
+     * @param <T> type to be return from hook.
+     * @return フックによって加工されたオブジェクトを返すfuture
+     * @see SubBook#getHeading(long, Hook)
+     */
+    public <T> CompletableFuture<T> getHeading(final long pos, final Hook<T> hook) {
+        return _call(() -> _sub.getHeading(pos, hook));
+    }
+
+    /**
+     * 指定位置の本文を返します。
+     *
+     * @param pos データ位置
+     * @param hook フック
+     * @param <T> type to be return from hook.
+     * @return フックによって加工されたオブジェクトを返すfuture
+     * @see SubBook#getText(long, Hook)
+     */
+    public <T> CompletableFuture<T> getText(final long pos, final Hook<T> hook) {
+        return _call(() -> _sub.getText(pos, hook));
+    }
+
+    /**
+     * Runs a search on the executor and collects its results.
+     *
+     * @param search search to run.
+     * @param limit maximum number of results, or 0 or less for no limit.
+     * @return future of the results.
+     */
+    private CompletableFuture<List<Result>> _search(final Call<Searcher> search, final int limit) {
+        CompletableFuture<List<Result>> future = new CompletableFuture<>();
+        AtomicReference<Searcher> running = new AtomicReference<>();
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                Searcher searcher = running.get();
+                if (searcher != null) {
+                    searcher.cancel();
+                }
+            }
+        });
+        _submit(future, () -> {
+            Searcher searcher = search.call();
+            running.set(searcher);
+            if (future.isDone()) {
+                // cancelled while the searcher was being set up
+                searcher.cancel();
+                return null;
+            }
+            List<Result> list = new ArrayList<>();
+            Result result;
+            while ((limit <= 0 || list.size() < limit)
+                   && (result = searcher.getNextResult()) != null) {
+                list.add(result);
+            }
+            return list;
+        });
+        return future;
+    }
+
+    /**
+     * Runs a call on the executor.
+     *
+     * @param call call to run.
+     * @param <T> type of the result.
+     * @return future of the result.
+     */
+    private <T> CompletableFuture<T> _call(final Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        _submit(future, call);
+        return future;
+    }
+
+    /**
+     * Submits a call that completes a future.
+     *
+     * @param future future to complete.
+     * @param call call to run.
+     * @param <T> type of the result.
+     */
+    private <T> void _submit(final CompletableFuture<T> future, final Call<T> call) {
+        try {
+            _executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(call.call());
+                } catch (EBException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // rejected by the executor
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Blocking call that may fail with EBException.
+     *
+     * @param <T> type of the result.
+     */
+    @FunctionalInterface
+    private interface Call<T> {
+        /**
+         * Runs the call.
+         *
+         * @return result.
+         * @exception EBException if an error occurs.
+         */
+        T call() throws EBException;
+    }
+}
+
+// end of AsyncSubBook.java
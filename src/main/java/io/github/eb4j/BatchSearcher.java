@@ -0,0 +1,178 @@
+package io.github.eb4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import io.github.eb4j.util.TaskUtil;
+
+/**
+ * Searcher of many words in one index.
+ * <p>
+ * The words are normalized with the rules of the index style and searched
+ * in the order of the index keys, so that neighbouring words descend
+ * through the same pinned upper pages of the {@link IndexPageCache} and
+ * scan the same leaf pages one after another. Large batches are split
+ * into contiguous ranges of keys searched in parallel.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+final class BatchSearcher {
+
+    /** Minimum number of words searched by one task. */
+    static final int CHUNK_SIZE = 256;
+
+    /** Sub-book. */
+    private final SubBook _sub;
+    /** Index style. */
+    private final IndexStyle _style;
+    /** Search type. */
+    private final int _type;
+
+
+    /**
+     * Build a searcher.
+     *
+     * @param sub sub-book.
+     * @param style index style.
+     * @param type search type of {@link SingleWordSearcher}.
+     */
+    BatchSearcher(final SubBook sub, final IndexStyle style, final int type) {
+        super();
+        _sub = sub;
+        _style = style;
+        _type = type;
+    }
+
+
+    /**
+     * Search words.
+     *
+     * @param words search words.
+     * @param pool pool searching ranges of words in parallel, or null to
+     * search in the calling thread.
+     * @return results of each word, in the order of the words.
+     * @exception EBException if the index could not be read.
+     */
+    List<List<Result>> search(final List<byte[]> words, final ForkJoinPool pool) throws EBException {
+        int count = words.size();
+        SingleWordSearcher searcher = new SingleWordSearcher(_sub, _style, _type);
+        Key[] keys = new Key[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = new Key(i, words.get(i), searcher.canonicalize(words.get(i)));
+        }
+        Arrays.sort(keys);
+
+        List<List<Result>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(null);
+        }
+        List<ForkJoinTask<List<List<Result>>>> tasks = new ArrayList<>();
+        try {
+            if (pool == null || count <= CHUNK_SIZE) {
+                _collect(keys, 0, _search(keys, 0, count), results);
+                return results;
+            }
+            int parallelism = pool.getParallelism();
+            int chunk = Math.max(CHUNK_SIZE, (count + parallelism - 1) / parallelism);
+            for (int start = 0; start < count; start += chunk) {
+                int from = start;
+                int to = Math.min(count, start + chunk);
+                tasks.add(pool.submit(() -> _search(keys, from, to)));
+            }
+            int start = 0;
+            for (ForkJoinTask<List<List<Result>>> task : tasks) {
+                List<List<Result>> part = TaskUtil.join(task);
+                _collect(keys, start, part, results);
+                start += part.size();
+            }
+        } finally {
+            for (ForkJoinTask<List<List<Result>>> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Search a range of sorted keys with one searcher.
+     *
+     * @param keys sorted keys.
+     * @param from first key to search.
+     * @param to end of the range, exclusive.
+     * @return results of the keys in the range.
+     * @exception EBException if the index could not be read.
+     */
+    private List<List<Result>> _search(final Key[] keys, final int from, final int to)
+            throws EBException {
+        List<List<Result>> part = new ArrayList<>(to - from);
+        SingleWordSearcher searcher = new SingleWordSearcher(_sub, _style, _type);
+        for (int i = from; i < to; i++) {
+            searcher.search(keys[i]._word);
+            List<Result> list = new ArrayList<>();
+            Result result;
+            while ((result = searcher.getNextResult()) != null) {
+                list.add(result);
+            }
+            part.add(list);
+        }
+        return part;
+    }
+
+    /**
+     * Stores results of a range of sorted keys at the positions of the words.
+     *
+     * @param keys sorted keys.
+     * @param from first key of the range.
+     * @param part results of the range.
+     * @param results results of the batch.
+     */
+    private static void _collect(final Key[] keys, final int from, final List<List<Result>> part,
+                                 final List<List<Result>> results) {
+        for (int i = 0; i < part.size(); i++) {
+            results.set(keys[from + i]._index, part.get(i));
+        }
+    }
+
+    /**
+     * Search word with its normalized form.
+     */
+    private static final class Key implements Comparable<Key> {
+        /** Position of the word in the batch. */
+        private final int _index;
+        /** Search word. */
+        private final byte[] _word;
+        /** Normalized word. */
+        private final byte[] _canonical;
+
+        /**
+         * Build a key.
+         *
+         * @param index position of the word in the batch.
+         * @param word search word.
+         * @param canonical normalized word.
+         */
+        Key(final int index, final byte[] word, final byte[] canonical) {
+            _index = index;
+            _word = word;
+            _canonical = canonical;
+        }
+
+        @Override
+        public int compareTo(final Key other) {
+            int len = Math.min(_canonical.length, other._canonical.length);
+            for (int i = 0; i < len; i++) {
+                int diff = (_canonical[i] & 0xff) - (other._canonical[i] & 0xff);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return _canonical.length - other._canonical.length;
+        }
+    }
+}
+
+// end of BatchSearcher.java
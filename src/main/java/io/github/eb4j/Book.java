@@ -2,10 +2,15 @@ package io.github.eb4j;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import io.github.eb4j.io.EBFile;
 import io.github.eb4j.io.EBFormat;
 import io.github.eb4j.io.BookInputStream;
+import io.github.eb4j.io.PageCache;
+import io.github.eb4j.io.SliceCache;
 import io.github.eb4j.util.ByteUtil;
 
 /**
@@ -25,9 +30,18 @@ import io.github.eb4j.util.ByteUtil;
  *
  * endif::[]
  *
+ * Data files are opened on first access and kept open for reuse,
+ * so close the book when it is no longer used.
+ *
+ * A book, its sub-books, fonts and appendix are safe to share between
+ * threads once constructed: searches, text reads and gaiji lookups may
+ * be called concurrently without external locking. Settings such as
+ * setMemoryMapped() and setPageCache() are visible to all threads but
+ * should be made before the book is shared.
+ *
  * @author Hisaya FUKUMOTO
  */
-public class Book {
+public class Book implements AutoCloseable {
 
     /** Book type of EBook(EB/EBG/EBXA/EBXA-C/S-EBXA) */
     public static final int DISC_EB = 0;
@@ -77,12 +91,22 @@ public class Book {
     /** Type of the book */
     private int _bookType = -1;
     /** Character set */
-    private int _charCode = -1;
+    private volatile int _charCode = -1;
     /** EPWING version */
     private int _version = -1;
 
     /** Sub-books of the book */
     private SubBook[] _sub = null;
+    /** Whether data files are memory mapped */
+    private volatile boolean _memoryMapped = false;
+    /** Cache of decoded pages */
+    private volatile PageCache _pageCache = null;
+    /** Cache of compressed slices */
+    private volatile SliceCache _sliceCache = null;
+    /** Number of slices decoded ahead */
+    private volatile int _readAhead = 0;
+    /** Memory budget of resident data files */
+    private volatile long _residentBudget = 0L;
 
 
     /**
@@ -253,6 +277,225 @@ public class Book {
         return _version;
     }
 
+    /**
+     * Returns whether data files of the book are memory mapped.
+     *
+     * @return true if memory mapped.
+     */
+    public boolean isMemoryMapped() {
+        return _memoryMapped;
+    }
+
+    /**
+     * Set whether text, graphic, sound, gaiji and appendix files of the book
+     * are read through memory mappings.
+     * <p>
+     * Hot pages of a mapped book are served from the OS page cache
+     * without a system call per page.
+     * </p>
+     *
+     * @param mapped true to map data files.
+     */
+    public void setMemoryMapped(final boolean mapped) {
+        _memoryMapped = mapped;
+        if (_sub != null) {
+            for (SubBook sub : _sub) {
+                sub.forEachFile(file -> file.setMemoryMapped(mapped));
+            }
+        }
+    }
+
+    /**
+     * Returns the cache of decoded pages used by the book.
+     *
+     * @return page cache, or null if the book uses the global cache.
+     */
+    public PageCache getPageCache() {
+        return _pageCache;
+    }
+
+    /**
+     * Set the cache of decoded pages shared by all readers of the book.
+     * <p>
+     * Decoded slices of compressed files are kept in the cache, so that
+     * repeated lookups do not decompress them again.
+     * </p>
+     *
+     * @param cache page cache, or null to use the global cache.
+     * @see PageCache#getDefault()
+     */
+    public void setPageCache(final PageCache cache) {
+        _pageCache = cache;
+        if (_sub != null) {
+            for (SubBook sub : _sub) {
+                sub.forEachFile(file -> file.setPageCache(cache));
+            }
+        }
+    }
+
+    /**
+     * Returns the cache of compressed slices used by the book.
+     *
+     * @return slice cache, or null if the book uses the global cache.
+     */
+    public SliceCache getSliceCache() {
+        return _sliceCache;
+    }
+
+    /**
+     * Set the cache of compressed slices shared by all readers of the book.
+     * <p>
+     * Compressed slices of EBZIP and EPWING files are kept in the cache,
+     * so that slices evicted from the page cache are decoded again without
+     * reading the files.
+     * </p>
+     *
+     * @param cache slice cache, or null to use the global cache.
+     * @see SliceCache#getDefault()
+     */
+    public void setSliceCache(final SliceCache cache) {
+        _sliceCache = cache;
+        if (_sub != null) {
+            for (SubBook sub : _sub) {
+                sub.forEachFile(file -> file.setSliceCache(cache));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slices decoded ahead on sequential reads.
+     *
+     * @return number of slices, or 0 if disabled.
+     */
+    public int getReadAhead() {
+        return _readAhead;
+    }
+
+    /**
+     * Set the number of slices of compressed data files decoded ahead on
+     * sequential reads.
+     * <p>
+     * Long entries, menus and bulk exports then decode the following
+     * slices on background threads while the text is processed.
+     * </p>
+     *
+     * @param slices number of slices, or 0 to disable.
+     * @see io.github.eb4j.io.EBFile#setReadAhead(int)
+     */
+    public void setReadAhead(final int slices) {
+        if (slices < 0) {
+            throw new IllegalArgumentException("slices must not be negative: " + slices);
+        }
+        _readAhead = slices;
+        if (_sub != null) {
+            for (SubBook sub : _sub) {
+                sub.forEachFile(file -> file.setReadAhead(slices));
+            }
+        }
+    }
+
+    /**
+     * Returns the memory budget of data files held in memory.
+     *
+     * @return budget in bytes, or 0 if disabled.
+     */
+    public long getResidentBudget() {
+        return _residentBudget;
+    }
+
+    /**
+     * Returns the size of the decoded data of the book held in memory.
+     *
+     * @return resident size in bytes.
+     */
+    public long getResidentSize() {
+        long size = 0L;
+        for (EBFile file : _getResidentFiles()) {
+            size += file.getResidentSize();
+        }
+        return size;
+    }
+
+    /**
+     * Decodes text, gaiji and appendix files of the book into memory on
+     * the common pool.
+     *
+     * @param budget memory budget in bytes, or 0 to release resident data.
+     * @return resident size in bytes.
+     * @exception EBException if a data file could not be read.
+     * @see #setResident(long, ForkJoinPool)
+     */
+    public long setResident(final long budget) throws EBException {
+        return setResident(budget, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Decodes text, gaiji and appendix files of the book into memory.
+     * <p>
+     * Files are decoded in order of sub-books, text first, in parallel
+     * chunks on the pool. Reads of resident files are then served from
+     * memory without file I/O or decompression. Files which would exceed
+     * the budget, and graphic and sound files, are read as before.
+     * </p>
+     *
+     * @param budget memory budget in bytes, or 0 to release resident data.
+     * @param pool pool decoding the files.
+     * @return resident size in bytes.
+     * @exception EBException if a data file could not be read.
+     * @see io.github.eb4j.io.EBFile#loadResident(ForkJoinPool)
+     */
+    public long setResident(final long budget, final ForkJoinPool pool) throws EBException {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget must not be negative: " + budget);
+        }
+        _residentBudget = budget;
+        long used = 0L;
+        for (EBFile file : _getResidentFiles()) {
+            if (used + file.getBookChannel().size() <= budget) {
+                used += file.loadResident(pool);
+            } else {
+                file.releaseResident();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Returns text, gaiji and appendix files of the book.
+     *
+     * @return data files to be held in memory.
+     */
+    private Set<EBFile> _getResidentFiles() {
+        Set<EBFile> files = new LinkedHashSet<>();
+        if (_sub != null) {
+            for (SubBook sub : _sub) {
+                sub.forEachFile(file -> {
+                    if (file == sub.getTextFile()
+                            || (file != sub.getGraphicFile() && file != sub.getSoundFile())) {
+                        files.add(file);
+                    }
+                });
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Closes all data files of the book.
+     * <p>
+     * The book is still usable after closing; files are reopened when
+     * they are read again.
+     * </p>
+     */
+    @Override
+    public void close() {
+        if (_sub != null) {
+            for (SubBook sub : _sub) {
+                sub.close();
+            }
+        }
+    }
+
     /**
      * Reads information from CATALOG(S) file.
      *
@@ -275,13 +518,17 @@ public class Book {
                     throw e;
             }
         }
-        switch (_bookType) {
-            case DISC_EB:
-                _loadCatalogEB(file);
-                break;
-            default:
-                _loadCatalogEPWING(file);
-                break;
+        try {
+            switch (_bookType) {
+                case DISC_EB:
+                    _loadCatalogEB(file);
+                    break;
+                default:
+                    _loadCatalogEPWING(file);
+                    break;
+            }
+        } finally {
+            file.close();
         }
     }
 
@@ -534,6 +781,7 @@ public class Book {
             if (bis != null) {
                 bis.close();
             }
+            file.close();
         }
     }
 }
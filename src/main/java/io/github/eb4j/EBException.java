@@ -34,6 +34,8 @@ public class EBException extends Exception {
     public static final int FAILED_CONVERT_GAIJI = 8;
     /** Error code: failed to convert image data */
     public static final int FAILED_CONVERT_IMAGE = 9;
+    /** Error code: failed to write file. */
+    public static final int FAILED_WRITE_FILE = 10;
 
     /** Error messages */
     private static final String[] ERR_MSG = {
@@ -45,7 +47,10 @@ public class EBException extends Exception {
         "failed to read a file",
         "unexpected format in a file",
         "failed to seek a file",
-        "can not find unicode map"
+        "can not find unicode map",
+        "failed to convert gaiji image",
+        "failed to convert image data",
+        "failed to write a file"
     };
 
     /** Error code */
@@ -6,6 +6,7 @@ import io.github.eb4j.util.ByteUtil;
 import io.github.eb4j.util.ImageUtil;
 
 import java.io.IOException;
+import java.util.function.Consumer;
 
 /**
  * ifeval::["{lang}" == "en"]
@@ -301,6 +302,26 @@ public class ExtFont {
         return FONT_SIZE[WIDE][_fontType];
     }
 
+    /**
+     * Performs the action for each font file of this Gaiji.
+     *
+     * @param action action to be performed.
+     */
+    void forEachFile(final Consumer<EBFile> action) {
+        for (EBFile file : _file) {
+            if (file != null) {
+                action.accept(file);
+            }
+        }
+    }
+
+    /**
+     * Closes font files of this Gaiji.
+     */
+    void close() {
+        forEachFile(EBFile::close);
+    }
+
     /**
      * Returns a BMP image data of half-width Gaiji.
      * @param code gaiji code.
@@ -4,6 +4,8 @@ import io.github.eb4j.io.EBFile;
 import io.github.eb4j.io.BookInputStream;
 import io.github.eb4j.util.ByteUtil;
 
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
 /**
@@ -117,10 +119,7 @@ public class GraphicData {
             byte[] b = new byte[COLOR_GRAPHIC_HEADER];
             bis.readFully(b, 0, b.length);
 
-            int size = 0;
-            if (new String(b, 0, 4, Charset.forName("ASCII")).equals("data")) {
-                size = (int)ByteUtil.getLongLE4(b, 4);
-            }
+            int size = (int)_getColorGraphicSize(b);
             img = new byte[size];
             bis.readFully(img, 0, img.length);
         } finally {
@@ -128,6 +127,62 @@ public class GraphicData {
         }
         return img;
     }
+
+    /**
+     * Open a stream of color image data at specified position.
+     *
+     * 指定位置のカラー画像データの入力ストリームを返します。
+     * ヘッダは最初の読み込み時に読まれ、画像データは読み進めるに従って
+     * ファイルから読み込まれます。使用後はストリームを閉じてください。
+     *
+     * @param pos position of data
+     * @return カラー画像データ(JPEG/DIB)の入力ストリーム
+     */
+    public InputStream openColorGraphicStream(final long pos) {
+        return new PayloadInputStream(_graphic, () -> {
+            byte[] b = new byte[COLOR_GRAPHIC_HEADER];
+            try (BookInputStream bis = _graphic.getInputStream()) {
+                bis.seek(pos);
+                bis.readFully(b, 0, b.length);
+            }
+            return new PayloadInputStream.Payload(new byte[0], pos + COLOR_GRAPHIC_HEADER,
+                                                  _getColorGraphicSize(b));
+        });
+    }
+
+    /**
+     * Transfer color image data at specified position to a channel.
+     *
+     * 指定位置のカラー画像データをチャネルに書き込みます。
+     * 無圧縮のファイルはFileChannel#transferToで転送され、
+     * 画像データ全体をメモリに読み込みません。
+     *
+     * @param pos position of data
+     * @param target destination channel
+     * @return 書き込んだバイト数
+     * @exception EBException ファイル読み込み中にエラーが発生した場合
+     */
+    public long transferColorGraphic(final long pos, final WritableByteChannel target) throws EBException {
+        byte[] b = new byte[COLOR_GRAPHIC_HEADER];
+        try (BookInputStream bis = _graphic.getInputStream()) {
+            bis.seek(pos);
+            bis.readFully(b, 0, b.length);
+        }
+        return _graphic.transferTo(pos + COLOR_GRAPHIC_HEADER, _getColorGraphicSize(b), target);
+    }
+
+    /**
+     * Returns the size of color image data from its header.
+     *
+     * @param header header of color image data
+     * @return size of image data, or 0 if the header is not a data header
+     */
+    private static long _getColorGraphicSize(final byte[] header) {
+        if (new String(header, 0, 4, Charset.forName("ASCII")).equals("data")) {
+            return ByteUtil.getLongLE4(header, 4);
+        }
+        return 0L;
+    }
 }
 
 // end of GraphicData.java
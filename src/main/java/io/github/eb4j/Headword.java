@@ -0,0 +1,78 @@
+package io.github.eb4j;
+
+import io.github.eb4j.hook.Hook;
+
+/**
+ * Headword found by a prefix search.
+ * <p>
+ * The key is the word stored in the word index, so it is returned without
+ * reading the text. Keys are normalized by the rules of the index, e.g.
+ * alphabets are upper case in most books, and serve to sort and compare
+ * headwords; use {@link #getHeading(Hook)} for the heading as displayed.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ * @see SubBook#complete(String, int)
+ */
+public class Headword {
+
+    /** インデックスのキー */
+    private final String _key;
+    /** 検索結果 */
+    private final Result _result;
+
+
+    /**
+     * Build headword object.
+     *
+     * @param key key of the index entry.
+     * @param result search result of the entry.
+     */
+    protected Headword(final String key, final Result result) {
+        super();
+        _key = key;
+        _result = result;
+    }
+
+
+    /**
+     * Returns the key of the index entry.
+     *
+     * @return key normalized by the rules of the index.
+     */
+    public String getKey() {
+        return _key;
+    }
+
+    /**
+     * Returns the heading of the headword.
+     * <p>
+     * The heading is decoded from the text when this method is called,
+     * through the page cache of the text file.
+     * </p>
+     *
+     * @param hook hook to be processed.
+     * @param <T> type to be return from hook.
+     * @return heading processed by the hook.
+     * @exception EBException if the heading could not be read.
+     */
+    public <T> T getHeading(final Hook<T> hook) throws EBException {
+        return _result.getHeading(hook);
+    }
+
+    /**
+     * Returns the search result of the headword.
+     *
+     * @return search result.
+     */
+    public Result getResult() {
+        return _result;
+    }
+
+    @Override
+    public String toString() {
+        return _key;
+    }
+}
+
+// end of Headword.java
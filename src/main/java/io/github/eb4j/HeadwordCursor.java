@@ -0,0 +1,696 @@
+package io.github.eb4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import io.github.eb4j.io.BookInputStream;
+import io.github.eb4j.io.EBFile;
+import io.github.eb4j.util.ByteUtil;
+import io.github.eb4j.util.CompareUtil;
+
+/**
+ * Cursor browsing the entries of an index in order.
+ * <p>
+ * The cursor walks the leaf layer of a word, endword or keyword index
+ * page by page, the way a printed dictionary is browsed, and returns every
+ * entry of the index as a {@link Headword}. It is positioned between two
+ * entries like a {@link java.util.ListIterator}: {@link #next()} returns
+ * the entry after the position and {@link #previous()} the entry before
+ * it. Each leaf page is read once for all of its entries through the
+ * index page cache of the index style. The group state at the start of
+ * pages continuing a group is remembered, so stepping back parses one page
+ * instead of the whole group, and headings of keyword groups are read from
+ * the text only when their entry is returned.
+ * </p>
+ * <p>
+ * Headwords are the keys stored in the index, normalized by the rules of
+ * the index; keys of an endword index are reversed. The position can be
+ * saved with {@link #getToken()} and restored later with
+ * {@link #restore(String)} or {@link SubBook#openHeadwordCursor(String)}.
+ * </p>
+ * <p>
+ * A cursor is not thread-safe; use one cursor per thread.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ * @see SubBook#openHeadwordCursor(int, String)
+ */
+public class HeadwordCursor {
+
+    /** Separator of the fields of a token. */
+    private static final char TOKEN_SEPARATOR = ':';
+    /** Maximum depth of an index tree. */
+    private static final int MAX_INDEX_DEPTH = 6;
+
+    /** 副本 */
+    private final SubBook _sub;
+    /** インデックススタイル */
+    private final IndexStyle _style;
+    /** 検索種別 */
+    private final int _type;
+    /** 本文ファイル */
+    private final EBFile _file;
+
+    /** 現在のリーフページ */
+    private Page _current = null;
+    /** 現在のページ内の位置 */
+    private int _index = 0;
+    /** グループの途中から始まるページの開始時の状態 */
+    private final Map<Long, Carry> _carries = new HashMap<>();
+
+
+    /**
+     * Build a cursor positioned before the first entry of the index.
+     *
+     * @param sub subbook.
+     * @param style index style.
+     * @param type search type of {@link SingleWordSearcher}.
+     * @exception EBException if the index could not be read.
+     */
+    HeadwordCursor(final SubBook sub, final IndexStyle style, final int type) throws EBException {
+        super();
+        _sub = sub;
+        _style = style;
+        _type = type;
+        _file = sub.getTextFile();
+        seekFirst();
+    }
+
+
+    /**
+     * Moves the cursor before the first entry of the index.
+     *
+     * @exception EBException if the index could not be read.
+     */
+    public void seekFirst() throws EBException {
+        _current = _load(_edgePage(false));
+        _index = 0;
+    }
+
+    /**
+     * Moves the cursor after the last entry of the index.
+     *
+     * @exception EBException if the index could not be read.
+     */
+    public void seekLast() throws EBException {
+        _current = _load(_edgePage(true));
+        _index = _current._entries.size();
+    }
+
+    /**
+     * Moves the cursor before the first entry not smaller than the word.
+     * <p>
+     * The word is normalized by the rules of the index, so the following
+     * {@link #next()} returns the first entry starting with the word if
+     * there is one, and the entry following its place in the index
+     * otherwise. A blank word moves the cursor before the first entry.
+     * </p>
+     *
+     * @param word word.
+     * @exception EBException if the index could not be read.
+     */
+    public void seek(final String word) throws EBException {
+        if (StringUtils.isBlank(word)) {
+            seekFirst();
+            return;
+        }
+        byte[] b = _sub.unescapeExtFontCode(word);
+        if (b.length == 0) {
+            seekFirst();
+            return;
+        }
+        SingleWordSearcher searcher = new SingleWordSearcher(_sub, _style, _type);
+        byte[] canonical = searcher.canonicalize(b);
+        long page = searcher.findLeafPage(b);
+        if (page < 0) {
+            seekLast();
+            return;
+        }
+        _current = _load(page);
+        _index = 0;
+        while (true) {
+            List<Entry> entries = _current._entries;
+            for (; _index < entries.size(); _index++) {
+                Entry entry = entries.get(_index);
+                if (CompareUtil.compareToByte(canonical, entry._order, entry._orderOff,
+                                              entry._orderLength, false) <= 0) {
+                    return;
+                }
+            }
+            if (SingleWordSearcher.isLayerEnd(_current._id)) {
+                return;
+            }
+            _current = _parse(_current._page + 1, _current.carry());
+            _index = 0;
+        }
+    }
+
+    /**
+     * Returns the entry after the position and moves the cursor forward.
+     *
+     * @return headword (null after the last entry)
+     * @exception EBException if the index could not be read.
+     */
+    public Headword next() throws EBException {
+        while (_index >= _current._entries.size()) {
+            if (SingleWordSearcher.isLayerEnd(_current._id)) {
+                return null;
+            }
+            _current = _parse(_current._page + 1, _current.carry());
+            _index = 0;
+        }
+        Headword headword = _current._entries.get(_index).toHeadword(_sub);
+        _index++;
+        return headword;
+    }
+
+    /**
+     * Returns the entry before the position and moves the cursor backward.
+     *
+     * @return headword (null before the first entry)
+     * @exception EBException if the index could not be read.
+     */
+    public Headword previous() throws EBException {
+        while (_index <= 0) {
+            if (SingleWordSearcher.isLayerStart(_current._id)) {
+                return null;
+            }
+            _current = _load(_current._page - 1);
+            _index = _current._entries.size();
+        }
+        Headword headword = _current._entries.get(_index - 1).toHeadword(_sub);
+        _index--;
+        return headword;
+    }
+
+    /**
+     * Returns a token of the position of the cursor.
+     * <p>
+     * The token is a short string which can be stored or sent to a client
+     * and passed to {@link #restore(String)} or
+     * {@link SubBook#openHeadwordCursor(String)} to continue browsing from
+     * the same position. It is valid for the same subbook only.
+     * </p>
+     *
+     * @return token.
+     */
+    public String getToken() {
+        return Integer.toHexString(_style.getIndexID()) + TOKEN_SEPARATOR
+            + _current._page + TOKEN_SEPARATOR + _index;
+    }
+
+    /**
+     * Moves the cursor to the position of a token.
+     *
+     * @param token token returned by {@link #getToken()}.
+     * @exception EBException if the index could not be read.
+     * @exception IllegalArgumentException if the token is not a position
+     * of this index.
+     */
+    public void restore(final String token) throws EBException {
+        String[] field = StringUtils.split(token, TOKEN_SEPARATOR);
+        if (field == null || field.length != 3 || parseIndexID(token) != _style.getIndexID()) {
+            throw new IllegalArgumentException("invalid token: " + token);
+        }
+        long page;
+        int index;
+        try {
+            page = Long.parseLong(field[1]);
+            index = Integer.parseInt(field[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid token: " + token, e);
+        }
+        if (page <= 0 || index < 0
+            || !SingleWordSearcher.isLeafLayer(_getPage(page)[0] & 0xff)) {
+            throw new IllegalArgumentException("invalid token: " + token);
+        }
+        Page current = _load(page);
+        if (index > current._entries.size()) {
+            throw new IllegalArgumentException("invalid token: " + token);
+        }
+        _current = current;
+        _index = index;
+    }
+
+    /**
+     * Returns the index ID of a token.
+     *
+     * @param token token.
+     * @return index ID (-1 if the token is malformed)
+     */
+    static int parseIndexID(final String token) {
+        if (token == null) {
+            return -1;
+        }
+        int idx = token.indexOf(TOKEN_SEPARATOR);
+        if (idx <= 0) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(token.substring(0, idx), 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the first or the last leaf page of the index.
+     *
+     * @param last true for the last page.
+     * @return page number.
+     * @exception EBException if the index could not be read.
+     */
+    private long _edgePage(final boolean last) throws EBException {
+        long page = _style.getStartPage();
+        for (int depth=0; depth<MAX_INDEX_DEPTH; depth++) {
+            byte[] b = _getPage(page);
+            if (SingleWordSearcher.isLeafLayer(b[0] & 0xff)) {
+                return page;
+            }
+            int len = b[1] & 0xff;
+            int count = ByteUtil.getInt2(b, 2);
+            if (count <= 0) {
+                throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+            }
+            int off = 4 + len;
+            if (last) {
+                off += (count - 1) * (len + 4);
+            }
+            if (off + 4 > BookInputStream.PAGE_SIZE) {
+                throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+            }
+            page = ByteUtil.getLong4(b, off);
+        }
+        throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+    }
+
+    /**
+     * Reads a leaf page with the group continued from the previous pages.
+     *
+     * @param page page number.
+     * @return page.
+     * @exception EBException if the index could not be read.
+     */
+    private Page _load(final long page) throws EBException {
+        // グループエントリの続きから始まるページは開始時の状態が分かるページから読み直す
+        long start = page;
+        Carry carry;
+        while (true) {
+            carry = _carries.get(start);
+            if (carry != null) {
+                break;
+            }
+            byte[] b = _getPage(start);
+            int id = b[0] & 0xff;
+            if (SingleWordSearcher.isLayerStart(id) || !SingleWordSearcher.hasGroupEntry(id)
+                || ByteUtil.getInt2(b, 2) == 0 || (b[4] & 0xff) != 0xc0) {
+                break;
+            }
+            start--;
+        }
+        Page current = _parse(start, carry);
+        for (long p=start+1; p<=page; p++) {
+            current = _parse(p, current.carry());
+        }
+        return current;
+    }
+
+    /**
+     * Returns an index page from the index page cache.
+     *
+     * @param page page number.
+     * @return index page.
+     * @exception EBException if the page could not be read.
+     */
+    private byte[] _getPage(final long page) throws EBException {
+        return _style.getPageCache().getPage(_file, page);
+    }
+
+    /**
+     * Reads the entries of a leaf page.
+     *
+     * @param page page number.
+     * @param carry group state at the end of the previous page (null
+     * outside a group).
+     * @return page.
+     * @exception EBException if the index could not be read.
+     */
+    private Page _parse(final long page, final Carry carry) throws EBException {
+        byte[] b = _getPage(page);
+        int id = b[0] & 0xff;
+        if (!SingleWordSearcher.isLeafLayer(id)) {
+            throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+        }
+        int entryLength = b[1] & 0xff;
+        int count = ByteUtil.getInt2(b, 2);
+        Page result = new Page(page, id, count);
+        if (carry != null) {
+            result._group = carry._group;
+            result._element = carry._element;
+            _carries.put(page, carry);
+        }
+        int off = 4;
+        boolean keyword = _type == SingleWordSearcher.KEYWORD || _type == SingleWordSearcher.CROSS;
+        for (int i=0; i<count; i++) {
+            if (!SingleWordSearcher.hasGroupEntry(id)) {
+                int len = entryLength;
+                if (len == 0) {
+                    if (off + 1 > BookInputStream.PAGE_SIZE) {
+                        throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+                    }
+                    len = b[off] & 0xff;
+                    off++;
+                }
+                if (off + len + 12 > BookInputStream.PAGE_SIZE) {
+                    throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+                }
+                result.addEntry(b, off, len, b, off, len, _position(b, off + len + 6), _position(b, off + len));
+                off += len + 12;
+                continue;
+            }
+            if (off + 2 > BookInputStream.PAGE_SIZE) {
+                throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+            }
+            int groupID = b[off] & 0xff;
+            if (groupID == 0x00) {
+                // シングルエントリ
+                int len = b[off+1] & 0xff;
+                if (off + len + 14 > BookInputStream.PAGE_SIZE) {
+                    throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+                }
+                off += 2;
+                result.addEntry(b, off, len, b, off, len, _position(b, off + len + 6), _position(b, off + len));
+                off += len + 12;
+                result._group = null;
+                result._element = 0;
+            } else if (groupID == 0x80) {
+                // グループエントリの開始
+                int len = b[off+1] & 0xff;
+                if (keyword) {
+                    if (off + len + 12 > BookInputStream.PAGE_SIZE) {
+                        throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+                    }
+                    result._group = new Group(b, off + 6, len, _position(b, off + len + 6));
+                    off += len + 12;
+                } else {
+                    if (off + len + 4 > BookInputStream.PAGE_SIZE) {
+                        throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+                    }
+                    result._group = new Group(b, off + 4, len, -1L);
+                    off += len + 4;
+                }
+                result._element = 0;
+            } else if (groupID == 0xc0) {
+                // グループエントリの要素
+                if (keyword) {
+                    if (off + 7 > BookInputStream.PAGE_SIZE) {
+                        throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+                    }
+                    if (result._group != null) {
+                        Group group = result._group;
+                        result._entries.add(new Entry(group._key, group._keyOff, group._keyLength,
+                                                      group._key, group._keyOff, group._keyLength,
+                                                      group, result._element, _position(b, off + 1)));
+                        result._element++;
+                    }
+                    off += 7;
+                } else {
+                    int len = b[off+1] & 0xff;
+                    if (off + len + 14 > BookInputStream.PAGE_SIZE) {
+                        throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+                    }
+                    off += 2;
+                    if (result._group != null) {
+                        Group group = result._group;
+                        result.addEntry(b, off, len, group._key, group._keyOff, group._keyLength,
+                                        _position(b, off + len + 6), _position(b, off + len));
+                    }
+                    off += len + 12;
+                }
+            } else {
+                // 未知のID
+                throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a position of 6 bytes in an index page.
+     *
+     * @param b index page.
+     * @param off offset of the position.
+     * @return data position.
+     */
+    private static long _position(final byte[] b, final int off) {
+        return BookInputStream.getPosition(ByteUtil.getLong4(b, off), ByteUtil.getInt2(b, off+4));
+    }
+
+    /**
+     * Entries of a leaf page.
+     */
+    private static final class Page {
+        /** Page number. */
+        private final long _page;
+        /** Page ID. */
+        private final int _id;
+        /** Entries. */
+        private final List<Entry> _entries;
+        /** Current group (null outside a group). */
+        private Group _group = null;
+        /** Number of elements of the current group read so far. */
+        private int _element = 0;
+
+        /**
+         * Build a page.
+         *
+         * @param page page number.
+         * @param id page ID.
+         * @param count number of entries in the page.
+         */
+        Page(final long page, final int id, final int count) {
+            _page = page;
+            _id = id;
+            _entries = new ArrayList<>(count);
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param key array holding the key.
+         * @param keyOff offset of the key.
+         * @param keyLength length of the key.
+         * @param order array holding the key ordering the entry.
+         * @param orderOff offset of the ordering key.
+         * @param orderLength length of the ordering key.
+         * @param heading heading position.
+         * @param text text position.
+         */
+        void addEntry(final byte[] key, final int keyOff, final int keyLength,
+                      final byte[] order, final int orderOff, final int orderLength,
+                      final long heading, final long text) {
+            _entries.add(new Entry(key, keyOff, keyLength, order, orderOff, orderLength, heading, text));
+        }
+
+        /**
+         * Returns the group state at the end of the page.
+         *
+         * @return group state (null outside a group).
+         */
+        Carry carry() {
+            if (_group == null) {
+                return null;
+            }
+            return new Carry(_group, _element);
+        }
+    }
+
+    /**
+     * Group state carried over to the next page.
+     */
+    private static final class Carry {
+        /** Current group. */
+        private final Group _group;
+        /** Number of elements of the group read so far. */
+        private final int _element;
+
+        /**
+         * Build a group state.
+         *
+         * @param group current group.
+         * @param element number of elements read so far.
+         */
+        Carry(final Group group, final int element) {
+            _group = group;
+            _element = element;
+        }
+    }
+
+    /**
+     * Group of entries sharing a key.
+     * <p>
+     * The elements of a keyword group have consecutive headings in the
+     * text, starting at the heading of the group. They are looked up when
+     * an element is returned and remembered, so the text is read at most
+     * once per element.
+     * </p>
+     */
+    private static final class Group {
+        /** Array holding the key of the group. */
+        private final byte[] _key;
+        /** Offset of the key. */
+        private final int _keyOff;
+        /** Length of the key. */
+        private final int _keyLength;
+        /** Heading positions of the elements found so far (null if not a keyword group). */
+        private long[] _headings = null;
+        /** Number of heading positions found so far. */
+        private int _headingCount = 0;
+
+        /**
+         * Build a group.
+         *
+         * @param key array holding the key.
+         * @param keyOff offset of the key.
+         * @param keyLength length of the key.
+         * @param heading heading position of the first element of a keyword
+         * group, or -1.
+         */
+        Group(final byte[] key, final int keyOff, final int keyLength, final long heading) {
+            _key = key;
+            _keyOff = keyOff;
+            _keyLength = keyLength;
+            if (heading >= 0) {
+                _headings = new long[] {heading};
+                _headingCount = 1;
+            }
+        }
+
+        /**
+         * Returns the heading position of an element of a keyword group.
+         *
+         * @param sub subbook.
+         * @param element element number.
+         * @return heading position.
+         * @exception EBException if the text could not be read.
+         */
+        long getHeading(final SubBook sub, final int element) throws EBException {
+            while (_headingCount <= element) {
+                if (_headingCount == _headings.length) {
+                    _headings = Arrays.copyOf(_headings, _headings.length * 2);
+                }
+                _headings[_headingCount] = sub.getNextHeadingPosition(_headings[_headingCount - 1]);
+                _headingCount++;
+            }
+            return _headings[element];
+        }
+    }
+
+    /**
+     * Entry of a leaf page.
+     * <p>
+     * Keys are kept in the cached index pages and decoded when the entry is
+     * returned. Elements of a group are ordered by the key of the group.
+     * </p>
+     */
+    private static final class Entry {
+        /** Array holding the key. */
+        private final byte[] _key;
+        /** Offset of the key. */
+        private final int _keyOff;
+        /** Length of the key. */
+        private final int _keyLength;
+        /** Array holding the key ordering the entry. */
+        private final byte[] _order;
+        /** Offset of the ordering key. */
+        private final int _orderOff;
+        /** Length of the ordering key. */
+        private final int _orderLength;
+        /** Heading position. */
+        private final long _heading;
+        /** Keyword group finding the heading position (null if known). */
+        private final Group _group;
+        /** Element number in the keyword group. */
+        private final int _element;
+        /** Text position. */
+        private final long _text;
+
+        /**
+         * Build an entry.
+         *
+         * @param key array holding the key.
+         * @param keyOff offset of the key.
+         * @param keyLength length of the key.
+         * @param order array holding the key ordering the entry.
+         * @param orderOff offset of the ordering key.
+         * @param orderLength length of the ordering key.
+         * @param heading heading position.
+         * @param text text position.
+         */
+        Entry(final byte[] key, final int keyOff, final int keyLength,
+              final byte[] order, final int orderOff, final int orderLength,
+              final long heading, final long text) {
+            _key = key;
+            _keyOff = keyOff;
+            _keyLength = keyLength;
+            _order = order;
+            _orderOff = orderOff;
+            _orderLength = orderLength;
+            _heading = heading;
+            _group = null;
+            _element = 0;
+            _text = text;
+        }
+
+        /**
+         * Build an element of a keyword group.
+         *
+         * @param key array holding the key.
+         * @param keyOff offset of the key.
+         * @param keyLength length of the key.
+         * @param order array holding the key ordering the entry.
+         * @param orderOff offset of the ordering key.
+         * @param orderLength length of the ordering key.
+         * @param group keyword group finding the heading position.
+         * @param element element number in the group.
+         * @param text text position.
+         */
+        Entry(final byte[] key, final int keyOff, final int keyLength,
+              final byte[] order, final int orderOff, final int orderLength,
+              final Group group, final int element, final long text) {
+            _key = key;
+            _keyOff = keyOff;
+            _keyLength = keyLength;
+            _order = order;
+            _orderOff = orderOff;
+            _orderLength = orderLength;
+            _heading = -1L;
+            _group = group;
+            _element = element;
+            _text = text;
+        }
+
+        /**
+         * Returns the headword of the entry.
+         *
+         * @param sub subbook.
+         * @return headword.
+         * @exception EBException if the heading position could not be read.
+         */
+        Headword toHeadword(final SubBook sub) throws EBException {
+            String word = SingleWordSearcher.decodeKey(sub, _key, _keyOff, _keyLength);
+            long heading = _heading;
+            if (_group != null) {
+                heading = _group.getHeading(sub, _element);
+            }
+            return new Headword(word, new Result(sub, heading, _text));
+        }
+    }
+}
+
+// end of HeadwordCursor.java
@@ -0,0 +1,194 @@
+package io.github.eb4j;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.eb4j.io.BookChannel;
+import io.github.eb4j.io.BookInputStream;
+import io.github.eb4j.io.EBFile;
+
+/**
+ * Cache of index pages of an index style.
+ * <p>
+ * Every search walks the index tree from the start page down to a leaf
+ * page, and the upper layers are the same for every query. Non-leaf pages
+ * are kept here for the life of the index style, and leaf pages are kept
+ * in least-recently-used order up to a limit, so that a lookup usually
+ * reads at most its leaf page from the text file. Pages are read past the
+ * page and slice caches of the file, so they are not cached twice.
+ * </p>
+ * <p>
+ * A page of a compressed file is read with the whole slice that holds
+ * it, and the other index pages of the slice are cached too, so walking
+ * the leaf layer decodes each slice once.
+ * </p>
+ * <p>
+ * Cached pages are shared by all searchers of the index style and must
+ * not be modified.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+final class IndexPageCache {
+
+    /** Default number of cached leaf pages. */
+    static final int DEFAULT_LEAF_PAGES = 64;
+
+    /** Index style whose pages are cached. */
+    private final IndexStyle _style;
+    /** Non-leaf pages, never evicted. */
+    private final Map<Long, byte[]> _pinned = new ConcurrentHashMap<>();
+    /** Leaf pages in access order. */
+    private final LinkedHashMap<Long, byte[]> _leaves;
+    /** Maximum number of leaf pages. */
+    private final int _maxLeaves;
+
+    /** Hit counter. */
+    private final AtomicLong _hits = new AtomicLong();
+    /** Miss counter. */
+    private final AtomicLong _misses = new AtomicLong();
+
+
+    /**
+     * Build a cache with the default number of leaf pages.
+     *
+     * @param style index style whose pages are cached.
+     */
+    IndexPageCache(final IndexStyle style) {
+        this(style, DEFAULT_LEAF_PAGES);
+    }
+
+    /**
+     * Build a cache.
+     *
+     * @param style index style whose pages are cached.
+     * @param maxLeaves maximum number of cached leaf pages.
+     */
+    IndexPageCache(final IndexStyle style, final int maxLeaves) {
+        super();
+        _style = style;
+        _maxLeaves = maxLeaves;
+        _leaves = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+                return size() > _maxLeaves;
+            }
+        };
+    }
+
+
+    /**
+     * Returns an index page, reading it from the file if not cached.
+     *
+     * @param file text file.
+     * @param page page number.
+     * @return index page of {@link BookInputStream#PAGE_SIZE} bytes.
+     * @exception EBException if the page could not be read.
+     */
+    byte[] getPage(final EBFile file, final long page) throws EBException {
+        Long key = page;
+        byte[] b = _pinned.get(key);
+        if (b == null) {
+            synchronized (_leaves) {
+                b = _leaves.get(key);
+            }
+        }
+        if (b != null) {
+            _hits.incrementAndGet();
+            return b;
+        }
+        _misses.incrementAndGet();
+        // the pages are kept here; do not keep a second copy in the page cache of the file
+        BookChannel channel = file.getBookChannel();
+        int sliceSize = Math.max(channel.getSliceSize(), BookInputStream.PAGE_SIZE);
+        long pos = BookInputStream.getPosition(page, 0);
+        long start = pos - pos % sliceSize;
+        int len = (int) Math.max(Math.min(sliceSize, channel.size() - start),
+                pos - start + BookInputStream.PAGE_SIZE);
+        byte[] slice = new byte[len];
+        channel.readFullyUncached(start, slice, 0, len);
+        // the other index pages of the slice first, so the requested page is the most recent leaf
+        long first = page - (pos - start) / BookInputStream.PAGE_SIZE;
+        for (int off = 0; off + BookInputStream.PAGE_SIZE <= len; off += BookInputStream.PAGE_SIZE) {
+            long p = first + off / BookInputStream.PAGE_SIZE;
+            if (p != page && p >= _style.getStartPage() && p <= _style.getEndPage()) {
+                _put(p, Arrays.copyOfRange(slice, off, off + BookInputStream.PAGE_SIZE));
+            }
+        }
+        int off = (int) (pos - start);
+        b = Arrays.copyOfRange(slice, off, off + BookInputStream.PAGE_SIZE);
+        _put(page, b);
+        return b;
+    }
+
+    /**
+     * Caches an index page.
+     *
+     * @param page page number.
+     * @param b index page.
+     */
+    private void _put(final long page, final byte[] b) {
+        if ((b[0] & 0x80) == 0) {
+            _pinned.putIfAbsent(page, b);
+        } else if (_maxLeaves > 0) {
+            synchronized (_leaves) {
+                _leaves.putIfAbsent(page, b);
+            }
+        }
+    }
+
+    /**
+     * Removes all cached pages.
+     */
+    void clear() {
+        _pinned.clear();
+        synchronized (_leaves) {
+            _leaves.clear();
+        }
+    }
+
+    /**
+     * Returns the number of pinned non-leaf pages.
+     *
+     * @return number of pinned pages.
+     */
+    int getPinnedCount() {
+        return _pinned.size();
+    }
+
+    /**
+     * Returns the number of cached leaf pages.
+     *
+     * @return number of leaf pages.
+     */
+    int getLeafCount() {
+        synchronized (_leaves) {
+            return _leaves.size();
+        }
+    }
+
+    /**
+     * Returns the number of pages served from the cache.
+     *
+     * @return hit count.
+     */
+    long getHitCount() {
+        return _hits.get();
+    }
+
+    /**
+     * Returns the number of pages read from the file.
+     *
+     * @return miss count.
+     */
+    long getMissCount() {
+        return _misses.get();
+    }
+}
+
+// end of IndexPageCache.java
@@ -54,6 +54,8 @@ public class IndexStyle {
     private int _psound = CONVERT;
     /** ラベル */
     private String _label = null;
+    /** インデックスページのキャッシュ */
+    private final IndexPageCache _pageCache = new IndexPageCache(this);
 
 
     /**
@@ -83,6 +85,15 @@ public class IndexStyle {
         return _indexID;
     }
 
+    /**
+     * インデックスページのキャッシュを返します。
+     *
+     * @return インデックスページのキャッシュ
+     */
+    IndexPageCache getPageCache() {
+        return _pageCache;
+    }
+
     /**
      * 開始ページ位置を設定します。
      *
@@ -140,6 +140,18 @@ public class MultiWordSearcher implements Searcher {
 
         return result[0];
     }
+
+    /**
+     * Stops the search.
+     */
+    @Override
+    public void cancel() {
+        if (_searcher != null) {
+            for (SingleWordSearcher searcher : _searcher) {
+                searcher.cancel();
+            }
+        }
+    }
 }
 
 // end of MultiWordSearcher.java
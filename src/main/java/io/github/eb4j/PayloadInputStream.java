@@ -0,0 +1,213 @@
+package io.github.eb4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.github.eb4j.io.BookInputStream;
+import io.github.eb4j.io.EBFile;
+
+/**
+ * Bounded input stream of graphic and sound data.
+ * <p>
+ * The location of the data is resolved on the first read, and the data is
+ * read through one {@link BookInputStream} as the caller consumes it, so
+ * memory use does not depend on the size of the data. A synthesized header
+ * such as the RIFF header of WAVE sound data is returned before the data.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+final class PayloadInputStream extends InputStream {
+
+    /** Data file */
+    private final EBFile _file;
+    /** Resolver of the data location */
+    private final Source _source;
+    /** Header returned before the data */
+    private byte[] _header = null;
+    /** Position of the data in the data file */
+    private long _dataPos = 0L;
+    /** Input stream of the data file */
+    private BookInputStream _bis = null;
+    /** Number of bytes of the header and the data returned so far */
+    private long _pos = 0L;
+    /** Number of bytes of the header and the data */
+    private long _length = -1L;
+    /** Whether this stream is closed */
+    private boolean _closed = false;
+
+
+    /**
+     * Constructor.
+     *
+     * @param file data file.
+     * @param source resolver of the data location, called on the first read.
+     */
+    PayloadInputStream(final EBFile file, final Source source) {
+        super();
+        _file = file;
+        _source = source;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        if (read(b, 0, 1) <= 0) {
+            return -1;
+        }
+        return b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        _open();
+        if (len == 0) {
+            return 0;
+        }
+        if (_pos >= _length) {
+            return -1;
+        }
+        int n = (int)Math.min(len, _length - _pos);
+        if (_pos < _header.length) {
+            n = Math.min(n, _header.length - (int)_pos);
+            System.arraycopy(_header, (int)_pos, b, off, n);
+        } else {
+            try {
+                n = _bis.read(b, off, n);
+            } catch (EBException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            if (n <= 0) {
+                // data file is shorter than declared
+                _length = _pos;
+                return -1;
+            }
+        }
+        _pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        _open();
+        long skip = Math.max(0L, Math.min(n, _length - _pos));
+        long pos = _pos + skip;
+        if (pos > _header.length) {
+            _bis.seek(_dataPos + pos - _header.length);
+        }
+        _pos = pos;
+        return skip;
+    }
+
+    @Override
+    public int available() throws IOException {
+        _open();
+        return (int)Math.min(Integer.MAX_VALUE, _length - _pos);
+    }
+
+    @Override
+    public void close() {
+        _closed = true;
+        if (_bis != null) {
+            _bis.close();
+            _bis = null;
+        }
+    }
+
+    /**
+     * Resolves the location of the data on the first call.
+     *
+     * @exception IOException if this stream is closed or the data file
+     * could not be read.
+     */
+    private void _open() throws IOException {
+        if (_closed) {
+            throw new IOException("Stream closed");
+        }
+        if (_bis != null) {
+            return;
+        }
+        try {
+            Payload payload = _source.resolve();
+            _bis = _file.getInputStream();
+            _bis.seek(payload.getPosition());
+            _header = payload.getHeader();
+            _dataPos = payload.getPosition();
+            _length = _header.length + payload.getSize();
+        } catch (EBException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolver of the data location.
+     */
+    @FunctionalInterface
+    interface Source {
+        /**
+         * Returns the header and the location of the data.
+         *
+         * @return header and location of the data.
+         * @exception EBException if the data file could not be read.
+         */
+        Payload resolve() throws EBException;
+    }
+
+    /**
+     * Header and location of the data.
+     */
+    static final class Payload {
+        /** Header returned before the data */
+        private final byte[] _header;
+        /** Position of the data in the data file */
+        private final long _pos;
+        /** Size of the data */
+        private final long _size;
+
+        /**
+         * Constructor.
+         *
+         * @param header header returned before the data.
+         * @param pos position of the data in the data file.
+         * @param size size of the data.
+         */
+        Payload(final byte[] header, final long pos, final long size) {
+            _header = header;
+            _pos = pos;
+            _size = size;
+        }
+
+        /**
+         * Returns the header.
+         *
+         * @return header.
+         */
+        byte[] getHeader() {
+            return _header;
+        }
+
+        /**
+         * Returns the position of the data.
+         *
+         * @return position of the data in the data file.
+         */
+        long getPosition() {
+            return _pos;
+        }
+
+        /**
+         * Returns the size of the data.
+         *
+         * @return size of the data.
+         */
+        long getSize() {
+            return _size;
+        }
+    }
+}
+
+// end of PayloadInputStream.java
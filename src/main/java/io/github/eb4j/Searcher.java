@@ -14,6 +14,18 @@ public interface Searcher {
      * @exception EBException if error happened.
      */
     Result getNextResult() throws EBException;
+
+    /**
+     * Stops the search.
+     * <p>
+     * May be called from any thread. A search in progress stops before
+     * reading the next index page, and later calls of
+     * {@link #getNextResult()} return null.
+     * The default implementation does nothing.
+     * </p>
+     */
+    default void cancel() {
+    }
 }
 
 // end of Searcher.java
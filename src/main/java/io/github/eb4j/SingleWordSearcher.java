@@ -1,5 +1,7 @@
 package io.github.eb4j;
 
+import java.nio.charset.StandardCharsets;
+
 import io.github.eb4j.io.EBFile;
 import io.github.eb4j.io.BookInputStream;
 import io.github.eb4j.util.ByteUtil;
@@ -33,6 +35,17 @@ public class SingleWordSearcher implements Searcher {
     /** 項目の配置スタイル */
     private static final int FIXED = 1;
 
+    /** 比較方法 (バイト単位) */
+    private static final int COMPARE_BYTE = 0;
+    /** 比較方法 (ISO 8859-1) */
+    private static final int COMPARE_LATIN = 1;
+    /** 比較方法 (JIS X 0208) */
+    private static final int COMPARE_JISX0208 = 2;
+    /** 比較方法 (仮名、シングルエントリ) */
+    private static final int COMPARE_KANA_SINGLE = 3;
+    /** 比較方法 (仮名、グループエントリ) */
+    private static final int COMPARE_KANA_GROUP = 4;
+
     /** 副本 */
     private SubBook _sub = null;
     /** インデックススタイル */
@@ -47,7 +60,18 @@ public class SingleWordSearcher implements Searcher {
     /** 検索するファイル */
     private EBFile _file = null;
 
-    /** キャッシュ */
+    /** 上位階層の比較方法 */
+    private int _preCompare = COMPARE_BYTE;
+    /** シングルエントリの比較方法 */
+    private int _singleCompare = COMPARE_BYTE;
+    /** シングルエントリの比較フラグ */
+    private boolean _singleFlag = false;
+    /** グループエントリの比較方法 */
+    private int _groupCompare = COMPARE_BYTE;
+    /** グループエントリの比較フラグ */
+    private boolean _groupFlag = false;
+
+    /** キャッシュ (インデックスページのキャッシュと共有) */
     private byte[] _cache = new byte[BookInputStream.PAGE_SIZE];
     /** キャシュのページ位置 */
     private long _cachePage = 0L;
@@ -71,9 +95,17 @@ public class SingleWordSearcher implements Searcher {
     /** 比較結果 */
     private int _comparison = -1;
 
+    /** 最後の検索結果のエントリの位置 */
+    private int _resultKeyOffset = 0;
+    /** 最後の検索結果のエントリの長さ (エントリがない場合は-1) */
+    private int _resultKeyLength = -1;
+
     /** キーワード検索用見出し位置 */
     private long _keywordHeading = 0L;
 
+    /** 検索が中止されたことを示すフラグ */
+    private volatile boolean _cancelled = false;
+
 
     /**
      * Build searcher object.
@@ -97,196 +129,176 @@ public class SingleWordSearcher implements Searcher {
     }
 
 
+    /**
+     * Returns a word normalized by the rules of the index style.
+     * <p>
+     * The word is reversed for backward searches, so that the result is
+     * ordered like the keys of the index.
+     * </p>
+     *
+     * @param word a search word.
+     * @return normalized copy of the word.
+     */
+    byte[] canonicalize(final byte[] word) {
+        byte[] canonical = new byte[word.length];
+        System.arraycopy(word, 0, canonical, 0, word.length);
+        boolean latin = _sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1;
+        if (latin) {
+            _style.fixWordLatin(canonical);
+        } else {
+            _style.fixWord(canonical);
+        }
+        if (_type == ENDWORD) {
+            if (latin) {
+                ByteUtil.reverseWordLatin(canonical);
+            } else {
+                ByteUtil.reverseWord(canonical);
+            }
+        }
+        return canonical;
+    }
+
     /**
      * Set a word to search.
      *
      * @param word a search word.
      */
     private void _setWord(final byte[] word) {
+        _canonical = canonicalize(word);
         int len = word.length;
         _word = new byte[len];
-        System.arraycopy(word, 0, _word, 0, len);
-        _canonical = new byte[len];
-        System.arraycopy(word, 0, _canonical, 0, len);
-
-        if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-            _style.fixWordLatin(_canonical);
-        } else {
-            _style.fixWord(_canonical);
-        }
-
         if (_style.getIndexID() != 0x70 && _style.getIndexID() != 0x90) {
             System.arraycopy(_canonical, 0, _word, 0, len);
+            return;
         }
+        System.arraycopy(word, 0, _word, 0, len);
 
         // 後方検索の場合、反転する
         if (_type == ENDWORD) {
             if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
                 ByteUtil.reverseWordLatin(_word);
-                ByteUtil.reverseWordLatin(_canonical);
             } else {
                 ByteUtil.reverseWord(_word);
-                ByteUtil.reverseWord(_canonical);
             }
         }
     }
 
     /**
-     * キーとパターンを比較します。
-     *
-     * @param key キー
-     * @param pattern パターン
-     * @return キーがパターンと同じ場合:0、
-     *         キーがパターンより大きい場合:1以上、
-     *         キーがパターンより小さい場合:-1以下
+     * 検索種別と文字セットから比較方法を決定します。
+     * <p>
+     * The comparison methods depend only on the search and the index, so
+     * they are resolved once per search instead of once per entry.
+     * </p>
      */
-    private int _comparePre(final byte[] key, final byte[] pattern) {
-        int comp = 0;
+    private void _resolveComparison() {
+        boolean latin = _sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1;
+        IndexStyle kana = null;
+        if (_type == ENDWORD) {
+            kana = _sub.getEndwordIndexStyle(SubBook.KANA);
+        } else {
+            kana = _sub.getWordIndexStyle(SubBook.KANA);
+        }
+        boolean kanaIndex = kana != null && _style.getStartPage() == kana.getStartPage();
+
+        // 前処理 (上位階層の比較)
+        _preCompare = COMPARE_BYTE;
+        if (_type == EXACTWORD || (_type == MULTI && _style.getCandidatePage() != 0)) {
+            if (latin) {
+                _preCompare = COMPARE_LATIN;
+            } else {
+                _preCompare = COMPARE_JISX0208;
+            }
+        }
+
+        // シングルエントリの比較
+        _singleCompare = COMPARE_BYTE;
+        _singleFlag = false;
         switch (_type) {
             case EXACTWORD:
-                if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                    comp = CompareUtil.compareToLatin(key, pattern, true);
+                if (latin) {
+                    _singleCompare = COMPARE_LATIN;
+                } else if (kanaIndex) {
+                    _singleCompare = COMPARE_KANA_SINGLE;
+                    _singleFlag = true;
                 } else {
-                    comp = CompareUtil.compareToJISX0208(key, pattern, true);
+                    _singleCompare = COMPARE_JISX0208;
                 }
                 break;
+            case KEYWORD:
+            case CROSS:
+                break;
             case MULTI:
-                if (_style.getCandidatePage() == 0) {
-                    comp = CompareUtil.compareToByte(key, pattern, true);
-                } else {
-                    if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                        comp = CompareUtil.compareToLatin(key, pattern, true);
+                if (_style.getCandidatePage() != 0) {
+                    if (latin) {
+                        _singleCompare = COMPARE_LATIN;
                     } else {
-                        comp = CompareUtil.compareToJISX0208(key, pattern, true);
+                        _singleCompare = COMPARE_JISX0208;
                     }
                 }
                 break;
             case WORD:
             case ENDWORD:
-            case KEYWORD:
-            case CROSS:
             default:
-                comp = CompareUtil.compareToByte(key, pattern, true);
+                if (!latin && kanaIndex) {
+                    _singleCompare = COMPARE_KANA_SINGLE;
+                }
                 break;
         }
-        return comp;
+
+        // グループエントリの比較
+        if (latin) {
+            _groupCompare = COMPARE_BYTE;
+            if (_type == EXACTWORD || (_type == MULTI && _style.getCandidatePage() != 0)) {
+                _groupCompare = COMPARE_LATIN;
+            }
+            _groupFlag = false;
+        } else {
+            _groupCompare = COMPARE_KANA_GROUP;
+            _groupFlag = _type == EXACTWORD || (_type == MULTI && _style.getCandidatePage() != 0);
+        }
     }
 
     /**
-     * キーとパターンを比較します。
+     * キーとキャッシュ上のシングルエントリを比較します。
      *
      * @param key キー
-     * @param pattern パターン
-     * @return キーがパターンと同じ場合:0、
-     *         キーがパターンより大きい場合:1以上、
-     *         キーがパターンより小さい場合:-1以下
+     * @param off エントリの開始位置
+     * @return キーがエントリと同じ場合:0、
+     *         キーがエントリより大きい場合:1以上、
+     *         キーがエントリより小さい場合:-1以下
      */
-    private int _compareSingle(final byte[] key, final byte[] pattern) {
-        int comp = 0;
-        switch (_type) {
-            case ENDWORD:
-                if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                    comp = CompareUtil.compareToByte(key, pattern, false);
-                } else {
-                    IndexStyle style = _sub.getEndwordIndexStyle(SubBook.KANA);
-                    if (style != null && _style.getStartPage() == style.getStartPage()) {
-                        comp = CompareUtil.compareToKanaSingle(key, pattern, false);
-                    } else {
-                        comp = CompareUtil.compareToByte(key, pattern, false);
-                    }
-                }
-                break;
-            case EXACTWORD:
-                if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                    comp = CompareUtil.compareToLatin(key, pattern, false);
-                } else {
-                    IndexStyle style = _sub.getWordIndexStyle(SubBook.KANA);
-                    if (style != null && _style.getStartPage() == style.getStartPage()) {
-                        comp = CompareUtil.compareToKanaSingle(key, pattern, true);
-                    } else {
-                        comp = CompareUtil.compareToJISX0208(key, pattern, false);
-                    }
-                }
-                break;
-            case KEYWORD:
-            case CROSS:
-                comp = CompareUtil.compareToByte(key, pattern, false);
-                break;
-            case MULTI:
-                if (_style.getCandidatePage() == 0) {
-                    comp = CompareUtil.compareToByte(key, pattern, false);
-                } else {
-                    if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                        comp = CompareUtil.compareToLatin(key, pattern, false);
-                    } else {
-                        comp = CompareUtil.compareToJISX0208(key, pattern, false);
-                    }
-                }
-                break;
-            case WORD:
-            default:
-                if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                    comp = CompareUtil.compareToByte(key, pattern, false);
-                } else {
-                    IndexStyle style = _sub.getWordIndexStyle(SubBook.KANA);
-                    if (style != null && _style.getStartPage() == style.getStartPage()) {
-                        comp = CompareUtil.compareToKanaSingle(key, pattern, false);
-                    } else {
-                        comp = CompareUtil.compareToByte(key, pattern, false);
-                    }
-                }
-                break;
-        }
-        return comp;
+    private int _compareSingle(final byte[] key, final int off) {
+        return _compare(_singleCompare, _singleFlag, key, _cache, off, _entryLength);
     }
 
     /**
      * キーとパターンを比較します。
      *
+     * @param method 比較方法
+     * @param flag 前方一致または完全一致を示すフラグ
      * @param key キー
-     * @param pattern パターン
+     * @param pattern パターンを含む配列
+     * @param off パターンの開始位置
+     * @param len パターンの長さ
      * @return キーがパターンと同じ場合:0、
      *         キーがパターンより大きい場合:1以上、
      *         キーがパターンより小さい場合:-1以下
      */
-    private int _compareGroup(final byte[] key, final byte[] pattern) {
-        int comp = 0;
-        switch (_type) {
-            case EXACTWORD:
-                if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                    comp = CompareUtil.compareToLatin(key, pattern, false);
-                } else {
-                    comp = CompareUtil.compareToKanaGroup(key, pattern, true);
-                }
-                break;
-            case MULTI:
-                if (_style.getCandidatePage() == 0) {
-                    if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                        comp = CompareUtil.compareToByte(key, pattern, false);
-                    } else {
-                        comp = CompareUtil.compareToKanaGroup(key, pattern, false);
-                    }
-                } else {
-                    if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                        comp = CompareUtil.compareToLatin(key, pattern, false);
-                    } else {
-                        comp = CompareUtil.compareToKanaGroup(key, pattern, true);
-                    }
-                }
-                break;
-            case WORD:
-            case ENDWORD:
-            case KEYWORD:
-            case CROSS:
+    private static int _compare(final int method, final boolean flag, final byte[] key,
+                                final byte[] pattern, final int off, final int len) {
+        switch (method) {
+            case COMPARE_LATIN:
+                return CompareUtil.compareToLatin(key, pattern, off, len, flag);
+            case COMPARE_JISX0208:
+                return CompareUtil.compareToJISX0208(key, pattern, off, len, flag);
+            case COMPARE_KANA_SINGLE:
+                return CompareUtil.compareToKanaSingle(key, pattern, off, len, flag);
+            case COMPARE_KANA_GROUP:
+                return CompareUtil.compareToKanaGroup(key, pattern, off, len, flag);
+            case COMPARE_BYTE:
             default:
-                if (_sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
-                    comp = CompareUtil.compareToByte(key, pattern, false);
-                } else {
-                    comp = CompareUtil.compareToKanaGroup(key, pattern, false);
-                }
-                break;
+                return CompareUtil.compareToByte(key, pattern, off, len, flag);
         }
-        return comp;
     }
 
     /**
@@ -297,67 +309,85 @@ public class SingleWordSearcher implements Searcher {
      */
     protected void search(final byte[] word) throws EBException {
         _setWord(word);
+        _resolveComparison();
         _page = _style.getStartPage();
 
         // pre-search
-        BookInputStream bis = _file.getInputStream();
-        try {
-            long nextPage = _page;
-            int depth;
-            for (depth=0; depth<MAX_INDEX_DEPTH; depth++) {
-                // データをキャッシュへ読み込む
-                bis.seek(_page, 0);
-                bis.readFully(_cache, 0, _cache.length);
-                _cachePage = _page;
+        IndexPageCache pageCache = _style.getPageCache();
+        long nextPage = _page;
+        int depth;
+        for (depth=0; depth<MAX_INDEX_DEPTH; depth++) {
+            if (_cancelled) {
+                _comparison = -1;
+                return;
+            }
+            // 上位の階層はインデックスページのキャッシュに常駐する
+            _cache = pageCache.getPage(_file, _page);
+            _cachePage = _page;
 
-                _pageID = _cache[0] & 0xff;
-                _entryLength = _cache[1] & 0xff;
-                if (_entryLength == 0) {
-                    _entryArrangement = VARIABLE;
-                } else {
-                    _entryArrangement = FIXED;
-                }
-                _entryCount = ByteUtil.getInt2(_cache, 2);
-                _off = 4;
+            _pageID = _cache[0] & 0xff;
+            _entryLength = _cache[1] & 0xff;
+            if (_entryLength == 0) {
+                _entryArrangement = VARIABLE;
+            } else {
+                _entryArrangement = FIXED;
+            }
+            _entryCount = ByteUtil.getInt2(_cache, 2);
+            _off = 4;
 
-                // リーフインデックスに達したらループ終了
-                if (_isLeafLayer(_pageID)) {
-                    break;
-                }
+            // リーフインデックスに達したらループ終了
+            if (isLeafLayer(_pageID)) {
+                break;
+            }
 
-                // 次のレベルのインデックスを取得する
-                byte[] b = new byte[_entryLength];
-                for (_entryIndex=0; _entryIndex<_entryCount; _entryIndex++) {
-                    if (_off + _entryLength + 4 > BookInputStream.PAGE_SIZE) {
-                        throw new EBException(EBException.UNEXP_FILE, _file.getPath());
-                    }
-                    System.arraycopy(_cache, _off, b, 0, b.length);
-                    _off += _entryLength;
-                    if (_comparePre(_canonical, b) <= 0) {
-                        nextPage = ByteUtil.getLong4(_cache, _off);
-                        break;
-                    }
-                    _off += 4;
+            // 次のレベルのインデックスを取得する
+            for (_entryIndex=0; _entryIndex<_entryCount; _entryIndex++) {
+                if (_off + _entryLength + 4 > BookInputStream.PAGE_SIZE) {
+                    throw new EBException(EBException.UNEXP_FILE, _file.getPath());
                 }
-                if (_entryIndex >= _entryCount || nextPage == _page) {
-                    _comparison = -1;
-                    return;
+                int comp = _compare(_preCompare, true, _canonical, _cache, _off, _entryLength);
+                _off += _entryLength;
+                if (comp <= 0) {
+                    nextPage = ByteUtil.getLong4(_cache, _off);
+                    break;
                 }
-                _page = nextPage;
+                _off += 4;
             }
-
-            // インデックス深さのチェック
-            if (depth == MAX_INDEX_DEPTH) {
-                throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+            if (_entryIndex >= _entryCount || nextPage == _page) {
+                _comparison = -1;
+                return;
             }
-        } finally {
-            bis.close();
+            _page = nextPage;
+        }
+
+        // インデックス深さのチェック
+        if (depth == MAX_INDEX_DEPTH) {
+            throw new EBException(EBException.UNEXP_FILE, _file.getPath());
         }
         _entryIndex = 0;
         _comparison = 1;
         _inGroupEntry = false;
     }
 
+    /**
+     * 検索語を含むリーフページを返します。
+     * <p>
+     * The upper layers of the index are walked as by {@link #search(byte[])},
+     * and the page where the search would start scanning is returned.
+     * </p>
+     *
+     * @param word 検索語
+     * @return リーフページ (検索語がインデックスの最後のエントリより大きい場合は-1)
+     * @exception EBException インデックスの読み込み中にエラーが発生した場合
+     */
+    long findLeafPage(final byte[] word) throws EBException {
+        search(word);
+        if (_comparison < 0) {
+            return -1L;
+        }
+        return _page;
+    }
+
     /**
      * 次の検索結果を返します。
      *
@@ -371,14 +401,18 @@ public class SingleWordSearcher implements Searcher {
         }
 
         while (true) {
+            if (_cancelled) {
+                _comparison = -1;
+                return null;
+            }
             refreshCache();
 
-            if (!_isLeafLayer(_pageID)) {
+            if (!isLeafLayer(_pageID)) {
                 // リーフインデックスでなければ例外
                 throw new EBException(EBException.UNEXP_FILE, _file.getPath());
             }
 
-            if (!_hasGroupEntry(_pageID)) {
+            if (!hasGroupEntry(_pageID)) {
                 Result result;
                 while (_entryIndex < _entryCount) {
                     result = getNonGroupEntry();
@@ -403,7 +437,7 @@ public class SingleWordSearcher implements Searcher {
             }
 
             // 次ページが存在すれば続行、存在しなければ終了
-            if (_isLayerEnd(_pageID)) {
+            if (isLayerEnd(_pageID)) {
                 _comparison = -1;
                 break;
             }
@@ -413,31 +447,77 @@ public class SingleWordSearcher implements Searcher {
         return null;
     }
 
+    /**
+     * 最後に返した検索結果のインデックスエントリを返します。
+     * <p>
+     * The entry is the key stored in the index, normalized by the rules of
+     * the index style and reversed for backward searches. It is read from
+     * the current index page, so this must be called before the next call
+     * of {@link #getNextResult()}.
+     * </p>
+     *
+     * @return インデックスエントリ (エントリを持たない検索結果の場合はnull)
+     */
+    String getResultKey() {
+        if (_resultKeyLength < 0) {
+            return null;
+        }
+        return decodeKey(_sub, _cache, _resultKeyOffset, _resultKeyLength);
+    }
+
+    /**
+     * インデックスエントリを文字列に変換します。
+     *
+     * @param sub 副本
+     * @param b インデックスページ
+     * @param off エントリの開始位置
+     * @param len エントリの長さ
+     * @return インデックスエントリ
+     */
+    static String decodeKey(final SubBook sub, final byte[] b, final int off, final int len) {
+        if (sub.getBook().getCharCode() == Book.CHARCODE_ISO8859_1) {
+            return new String(b, off, len, StandardCharsets.ISO_8859_1).trim();
+        }
+        return ByteUtil.jisx0208ToString(b, off, len);
+    }
+
+    /**
+     * 検索を中止します。
+     * <p>
+     * 他のスレッドから呼び出すことができます。
+     * 次のインデックスページを読み込む前に検索を終了します。
+     * </p>
+     */
+    @Override
+    public void cancel() {
+        _cancelled = true;
+    }
+
     /**
      * 指定されたページが最下層かどうかを判別します。
      *
      * @param id ページID
      * @return 最下層である場合はtrue、そうでない場合はfalse
      */
-    private boolean _isLeafLayer(final int id) {
+    static boolean isLeafLayer(final int id) {
         if ((id & 0x80) == 0x80) {
             return true;
         }
         return false;
     }
 
-    // /**
-    //  * 指定されたページが階層開始ページかどうかを判別します。
-    //  *
-    //  * @param id ページID
-    //  * @return 階層開始ページである場合はtrue、そうでない場合はfalse
-    //  */
-    // private boolean _isLayerStart(int id) {
-    //     if ((id & 0x40) == 0x40) {
-    //         return true;
-    //     }
-    //     return false;
-    // }
+    /**
+     * 指定されたページが階層開始ページかどうかを判別します。
+     *
+     * @param id ページID
+     * @return 階層開始ページである場合はtrue、そうでない場合はfalse
+     */
+    static boolean isLayerStart(final int id) {
+        if ((id & 0x40) == 0x40) {
+            return true;
+        }
+        return false;
+    }
 
     /**
      * 指定されたページが階層終了ページかどうかを判別します。
@@ -445,7 +525,7 @@ public class SingleWordSearcher implements Searcher {
      * @param id ページID
      * @return 階層終了ページである場合はtrue、そうでない場合はfalse
      */
-    private boolean _isLayerEnd(final int id) {
+    static boolean isLayerEnd(final int id) {
         if ((id & 0x20) == 0x20) {
             return true;
         }
@@ -458,7 +538,7 @@ public class SingleWordSearcher implements Searcher {
      * @param id ページID
      * @return グループエントリを含んでいる場合はtrue、そうでない場合はfalse
      */
-    private boolean _hasGroupEntry(final int id) {
+    static boolean hasGroupEntry(final int id) {
         if ((id & 0x10) == 0x10) {
             return true;
         }
@@ -468,13 +548,7 @@ public class SingleWordSearcher implements Searcher {
     // キャッシュとデータのページが異なれば読み込む
     private void refreshCache() throws EBException {
         if (_cachePage != _page) {
-            BookInputStream bis = _file.getInputStream();
-            try {
-                bis.seek(_page, 0);
-                bis.readFully(_cache, 0, _cache.length);
-            } finally {
-                bis.close();
-            }
+            _cache = _style.getPageCache().getPage(_file, _page);
             _cachePage = _page;
 
             if (_entryIndex == 0) {
@@ -506,13 +580,14 @@ public class SingleWordSearcher implements Searcher {
             throw new EBException(EBException.UNEXP_FILE, _file.getPath());
         }
 
-        byte[] b = new byte[_entryLength];
-        System.arraycopy(_cache, _off, b, 0, b.length);
+        _comparison = _compareSingle(_word, _off);
         _off += _entryLength;
 
-        _comparison = _compareSingle(_word, b);
         Result result = null;
+        _resultKeyLength = -1;
         if (_comparison == 0) {
+            _resultKeyOffset = _off - _entryLength;
+            _resultKeyLength = _entryLength;
             // 本文/見出し位置の取得
             long tPage = ByteUtil.getLong4(_cache, _off);
             int tOff = ByteUtil.getInt2(_cache, _off+4);
@@ -534,6 +609,7 @@ public class SingleWordSearcher implements Searcher {
         }
         int groupID = _cache[_off] & 0xff;
         Result result = null;
+        _resultKeyLength = -1;
         if (groupID == 0x00) {
             // シングルエントリ
             _entryLength = _cache[_off+1] & 0xff;
@@ -541,12 +617,12 @@ public class SingleWordSearcher implements Searcher {
                 throw new EBException(EBException.UNEXP_FILE, _file.getPath());
             }
 
-            byte[] b = new byte[_entryLength];
-            System.arraycopy(_cache, _off+2, b, 0, b.length);
+            _comparison = _compareSingle(_canonical, _off+2);
             _off += _entryLength + 2;
 
-            _comparison = _compareSingle(_canonical, b);
             if (_comparison == 0) {
+                _resultKeyOffset = _off - _entryLength;
+                _resultKeyLength = _entryLength;
                 // 本文/見出し位置の取得
                 long tPage = ByteUtil.getLong4(_cache, _off);
                 int tOff = ByteUtil.getInt2(_cache, _off+4);
@@ -559,15 +635,13 @@ public class SingleWordSearcher implements Searcher {
         } else if (groupID == 0x80) {
             // グループエントリの開始
             _entryLength = _cache[_off+1] & 0xff;
-            byte[] b = new byte[_entryLength];
             if (_type == KEYWORD || _type == CROSS) {
                 if (_off + _entryLength + 12 > BookInputStream.PAGE_SIZE) {
                     throw new EBException(EBException.UNEXP_FILE, _file.getPath());
                 }
 
-                System.arraycopy(_cache, _off+6, b, 0, b.length);
+                _comparison = _compareSingle(_word, _off+6);
                 _off += _entryLength + 6;
-                _comparison = _compareSingle(_word, b);
                 long hPage = ByteUtil.getLong4(_cache, _off);
                 int hOff = ByteUtil.getInt2(_cache, _off+4);
                 _keywordHeading =
@@ -578,16 +652,14 @@ public class SingleWordSearcher implements Searcher {
                     throw new EBException(EBException.UNEXP_FILE, _file.getPath());
                 }
 
-                System.arraycopy(_cache, _off+6, b, 0, b.length);
-                _comparison = _compareSingle(_word, b);
+                _comparison = _compareSingle(_word, _off+6);
                 _off += _entryLength + 6;
             } else {
                 if (_off + _entryLength + 4 > BookInputStream.PAGE_SIZE) {
                     throw new EBException(EBException.UNEXP_FILE, _file.getPath());
                 }
 
-                System.arraycopy(_cache, _off+4, b, 0, b.length);
-                _comparison = _compareSingle(_canonical, b);
+                _comparison = _compareSingle(_canonical, _off+4);
                 _off += _entryLength + 4;
             }
             _inGroupEntry = true;
@@ -627,11 +699,12 @@ public class SingleWordSearcher implements Searcher {
                     throw new EBException(EBException.UNEXP_FILE, _file.getPath());
                 }
 
-                byte[] b = new byte[_entryLength];
-                System.arraycopy(_cache, _off+2, b, 0, b.length);
+                int entryOff = _off + 2;
                 _off += _entryLength + 2;
                 if (_comparison == 0 && _inGroupEntry
-                    && _compareGroup(_word, b) == 0) {
+                    && _compare(_groupCompare, _groupFlag, _word, _cache, entryOff, _entryLength) == 0) {
+                    _resultKeyOffset = entryOff;
+                    _resultKeyLength = _entryLength;
                     // 本文/見出し位置の取得
                     long tPage = ByteUtil.getLong4(_cache, _off);
                     int tOff = ByteUtil.getInt2(_cache, _off+4);
@@ -3,6 +3,10 @@ package io.github.eb4j;
 import io.github.eb4j.io.EBFile;
 import io.github.eb4j.io.BookInputStream;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 
 /**
@@ -12,6 +16,9 @@ import java.nio.charset.Charset;
  */
 public class SoundData {
 
+    /** Size of the RIFF header of WAVE sound data */
+    private static final int WAVE_HEADER_SIZE = 44;
+
     /** バイナリデータファイル */
     private EBFile _file;
     /** インデックススタイル */
@@ -40,6 +47,137 @@ public class SoundData {
      * @exception EBException if file read error is happends.
      */
     public byte[] getWaveSound(final long pos1, final long pos2) throws EBException {
+        PayloadInputStream.Payload w = _readWave(pos1, pos2);
+        byte[] wave = new byte[(int)(WAVE_HEADER_SIZE + w.getSize())];
+        System.arraycopy(w.getHeader(), 0, wave, 0, WAVE_HEADER_SIZE);
+        try (BookInputStream bis = _file.getInputStream()) {
+            bis.seek(w.getPosition());
+            bis.readFully(wave, WAVE_HEADER_SIZE, (int)w.getSize());
+        }
+        return wave;
+    }
+
+    /**
+     * Transfers specified WAVE sound data to a channel.
+     * <p>
+     * The RIFF header is written first, followed by the sound data, which
+     * is transferred without being held in memory as a whole.
+     * </p>
+     *
+     * @param pos1 start position of a sound data.
+     * @param pos2 end position of a sound data.
+     * @param target destination channel.
+     * @return number of bytes written.
+     * @exception EBException if file read or write error is happends.
+     */
+    public long transferWaveSound(final long pos1, final long pos2,
+                                  final WritableByteChannel target) throws EBException {
+        PayloadInputStream.Payload w = _readWave(pos1, pos2);
+        ByteBuffer header = ByteBuffer.wrap(w.getHeader());
+        try {
+            while (header.hasRemaining()) {
+                if (target.write(header) <= 0) {
+                    return header.position();
+                }
+            }
+        } catch (IOException e) {
+            throw new EBException(EBException.FAILED_WRITE_FILE, e);
+        }
+        return WAVE_HEADER_SIZE + _file.transferTo(w.getPosition(), w.getSize(), target);
+    }
+
+    /**
+     * Opens a stream of specified WAVE sound data.
+     * <p>
+     * The RIFF header is synthesized on the first read and the sound data
+     * is read as the stream is consumed, so memory use does not depend on
+     * the size of the sound data. The stream should be closed after use.
+     * </p>
+     *
+     * @param pos1 start position of a sound data.
+     * @param pos2 end position of a sound data.
+     * @return input stream of WAVE sound data.
+     * @exception EBException if the positions are invalid.
+     */
+    public InputStream openWaveStream(final long pos1, final long pos2) throws EBException {
+        if (pos1 >= pos2) {
+            throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+        }
+        return new PayloadInputStream(_file, () -> _readWave(pos1, pos2));
+    }
+
+    /**
+     * Returns specified MIDI sound data.
+     *
+     * @param pos1 データ開始位置
+     * @param pos2 データ終了位置
+     * @return MIDI音声データのバイト配列
+     * @exception EBException ファイル読み込み中にエラーが発生した場合
+     */
+    public byte[] getMidiSound(final long pos1, final long pos2) throws EBException {
+        long size;
+        if (pos1 < pos2) {
+            size = pos2 - pos1;
+        } else {
+            throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+        }
+
+        byte[] midi = new byte[(int)size];
+        BookInputStream bis = _file.getInputStream();
+        try {
+            bis.seek(pos1);
+            bis.readFully(midi, 0, midi.length);
+        } finally {
+            bis.close();
+        }
+        return midi;
+    }
+
+    /**
+     * Transfers specified MIDI sound data to a channel.
+     *
+     * @param pos1 データ開始位置
+     * @param pos2 データ終了位置
+     * @param target 書き込み先のチャネル
+     * @return 書き込んだバイト数
+     * @exception EBException ファイル読み込み中にエラーが発生した場合
+     */
+    public long transferMidiSound(final long pos1, final long pos2,
+                                  final WritableByteChannel target) throws EBException {
+        if (pos1 >= pos2) {
+            throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+        }
+        return _file.transferTo(pos1, pos2 - pos1, target);
+    }
+
+    /**
+     * Opens a stream of specified MIDI sound data.
+     * <p>
+     * The sound data is read as the stream is consumed. The stream should
+     * be closed after use.
+     * </p>
+     *
+     * @param pos1 データ開始位置
+     * @param pos2 データ終了位置
+     * @return MIDI音声データの入力ストリーム
+     * @exception EBException 位置が不正な場合
+     */
+    public InputStream openMidiStream(final long pos1, final long pos2) throws EBException {
+        if (pos1 >= pos2) {
+            throw new EBException(EBException.UNEXP_FILE, _file.getPath());
+        }
+        return new PayloadInputStream(_file, () -> new PayloadInputStream.Payload(new byte[0], pos1, pos2 - pos1));
+    }
+
+    /**
+     * Reads the header of WAVE sound data.
+     *
+     * @param pos1 start position of a sound data.
+     * @param pos2 end position of a sound data.
+     * @return RIFF header, position and size of the sound data.
+     * @exception EBException if file read error is happends.
+     */
+    private PayloadInputStream.Payload _readWave(final long pos1, final long pos2) throws EBException {
         long size;
         if (pos1 < pos2) {
             size = pos2 - pos1 + 1;
@@ -54,9 +192,9 @@ public class SoundData {
          *  header fragment (28byte) = "fmt " + ... + "data"
          *  size of data part (4byte)
          */
-        byte[] wave = null;
-        BookInputStream bis = _file.getInputStream();
-        try {
+        byte[] wave = new byte[WAVE_HEADER_SIZE];
+        long pos;
+        try (BookInputStream bis = _file.getInputStream()) {
             bis.seek(pos1);
             byte[] b = new byte[4];
             bis.readFully(b, 0, b.length);
@@ -66,22 +204,18 @@ public class SoundData {
                 } else {
                     size = 0;
                 }
-                wave = new byte[(int)(44+size)];
                 System.arraycopy(b, 0, wave, 12, 4);
                 bis.readFully(wave, 16, 28);
+                pos = pos1 + 32;
             } else {
-                wave = new byte[(int)(44+size)];
                 bis.seek(_style.getStartPage(), 32);
                 bis.readFully(wave, 12, 28);
                 wave[40] = (byte)(size & 0xff);
                 wave[41] = (byte)((size >>> 8) & 0xff);
                 wave[42] = (byte)((size >>> 16) & 0xff);
                 wave[43] = (byte)((size >>> 24) & 0xff);
-                bis.seek(pos1);
+                pos = pos1;
             }
-            bis.readFully(wave, 44, (int)size);
-        } finally {
-            bis.close();
         }
 
         wave[0] = 'R';
@@ -96,34 +230,7 @@ public class SoundData {
         wave[9] = 'A';
         wave[10] = 'V';
         wave[11] = 'E';
-        return wave;
-    }
-
-    /**
-     * Returns specified MIDI sound data.
-     *
-     * @param pos1 データ開始位置
-     * @param pos2 データ終了位置
-     * @return MIDI音声データのバイト配列
-     * @exception EBException ファイル読み込み中にエラーが発生した場合
-     */
-    public byte[] getMidiSound(final long pos1, final long pos2) throws EBException {
-        long size;
-        if (pos1 < pos2) {
-            size = pos2 - pos1;
-        } else {
-            throw new EBException(EBException.UNEXP_FILE, _file.getPath());
-        }
-
-        byte[] midi = new byte[(int)size];
-        BookInputStream bis = _file.getInputStream();
-        try {
-            bis.seek(pos1);
-            bis.readFully(midi, 0, midi.length);
-        } finally {
-            bis.close();
-        }
-        return midi;
+        return new PayloadInputStream.Payload(wave, pos, size);
     }
 }
 
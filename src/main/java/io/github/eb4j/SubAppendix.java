@@ -2,8 +2,9 @@ package io.github.eb4j;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import io.github.eb4j.ext.UnicodeUnescaper;
 import io.github.eb4j.io.EBFile;
@@ -40,9 +41,9 @@ public class SubAppendix {
     /** ストップコード */
     private final int[] stopCode = new int[2];
 
-    /** 代替文字のキャッシュ */
+    /** 代替文字のキャッシュ (filled concurrently by lookups) */
     private final Map<Integer, Map<Integer, String>> altMapCache =
-            new HashMap<>(2, 1.0f);
+            new ConcurrentHashMap<>(2, 1.0f);
 
     private final UnicodeUnescaper unescaper;
 
@@ -140,7 +141,7 @@ public class SubAppendix {
                         throw new EBException(EBException.UNEXP_FILE, appendixFile.getPath());
                     }
                 }
-                altMapCache.put(i, new HashMap<>(charCount, 1.0f));
+                altMapCache.put(i, new ConcurrentHashMap<>(charCount, 1.0f));
             }
 
             // ストップコード情報の取得
@@ -270,6 +271,22 @@ public class SubAppendix {
         return ret;
     }
 
+    /**
+     * Performs the action for the appendix data file of this sub-book.
+     *
+     * @param action action to be performed.
+     */
+    void forEachFile(final Consumer<EBFile> action) {
+        action.accept(appendixFile);
+    }
+
+    /**
+     * Closes the appendix data file of this sub-book.
+     */
+    void close() {
+        appendixFile.close();
+    }
+
     /**
      * この副本にストップコードが含まれているかどうかを判別します。
      *
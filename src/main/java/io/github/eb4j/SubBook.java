@@ -1,8 +1,18 @@
 package io.github.eb4j;
 
 import java.io.File;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -15,6 +25,13 @@ import io.github.eb4j.util.ByteUtil;
 
 /**
  * Subbook class.
+ * <p>
+ * A sub-book is safe to use from multiple threads. Its indexes and files
+ * do not change after the book is loaded, and every search or read opens
+ * its own cursor. The current font set by {@link #setFont(int)} is shared
+ * by all threads; threads that need different sizes should select the
+ * font per call with {@link #getFont(int)}.
+ * </p>
  *
  * @author Hisaya FUKUMOTO
  */
@@ -32,6 +49,15 @@ public class SubBook {
     /** アルファベット */
     protected static final int ALPHABET = 2;
 
+    /** 前方一致検索 (for {@link #searchWords(Collection, int)}) */
+    public static final int SEARCH_WORD = SingleWordSearcher.WORD;
+    /** 後方一致検索 (for {@link #searchWords(Collection, int)}) */
+    public static final int SEARCH_ENDWORD = SingleWordSearcher.ENDWORD;
+    /** 完全一致検索 (for {@link #searchWords(Collection, int)}) */
+    public static final int SEARCH_EXACTWORD = SingleWordSearcher.EXACTWORD;
+    /** 条件検索 (for {@link #openHeadwordCursor(int, String)}) */
+    public static final int SEARCH_KEYWORD = SingleWordSearcher.KEYWORD;
+
     /** 書籍 */
     private Book _book = null;
     /** この副本に対応する付録パッケージ */
@@ -56,9 +82,9 @@ public class SubBook {
     /** タイトル */
     private String _title;
     /** 外字 */
-    private ExtFont[] _fonts = new ExtFont[4];
+    private final ExtFont[] _fonts = new ExtFont[4];
     /** 選択中の外字 */
-    private int _fontIndex = -1;
+    private volatile int _fontIndex = -1;
 
     /** 本文用インデックススタイル */
     private IndexStyle _textStyle = null;
@@ -671,6 +697,10 @@ public class SubBook {
 
     /**
      * 指定されたサイズの外字を返します。
+     * <p>
+     * Unlike {@link #getFont()}, the result does not depend on the font
+     * selected by other threads.
+     * </p>
      *
      * @param type 外字の種類
      * @return 外字
@@ -690,6 +720,9 @@ public class SubBook {
 
     /**
      * 使用する外字を指定されたサイズに設定します。
+     * <p>
+     * The selection is shared by all threads using this sub-book.
+     * </p>
      *
      * @param type 外字の種類
      * @see ExtFont#FONT_16
@@ -786,6 +819,106 @@ public class SubBook {
         return file;
     }
 
+    /**
+     * 動画ファイルの内容をチャネルに転送します。
+     *
+     * @param name ファイル名
+     * @param target 書き込み先のチャネル
+     * @return 書き込んだバイト数
+     * @exception EBException ファイルが存在しない場合や読み込み中にエラーが発生した場合
+     */
+    public long transferMovieFile(final String name, final WritableByteChannel target) throws EBException {
+        if (_movieDir == null) {
+            throw new EBException(EBException.FILE_NOT_FOUND, name);
+        }
+        try (EBFile ebfile = new EBFile(_movieDir, name, EBFormat.FORMAT_PLAIN)) {
+            return ebfile.transferTo(0, ebfile.getBookChannel().size(), target);
+        }
+    }
+
+    /**
+     * Returns an asynchronous facade of this sub-book on the default executor.
+     *
+     * @return asynchronous facade.
+     * @see AsyncSubBook
+     */
+    public AsyncSubBook async() {
+        return new AsyncSubBook(this, AsyncSubBook.getDefaultExecutor());
+    }
+
+    /**
+     * Returns an asynchronous facade of this sub-book.
+     *
+     * @param executor executor of the searches and reads.
+     * @return asynchronous facade.
+     * @see AsyncSubBook
+     */
+    public AsyncSubBook async(final Executor executor) {
+        return new AsyncSubBook(this, executor);
+    }
+
+    /**
+     * Performs the action for each data file of this sub-book and its appendix.
+     *
+     * @param action action to be performed.
+     */
+    void forEachFile(final Consumer<EBFile> action) {
+        if (_text != null) {
+            action.accept(_text);
+        }
+        if (_graphic != null) {
+            action.accept(_graphic);
+        }
+        if (_sound != null) {
+            action.accept(_sound);
+        }
+        for (ExtFont font : _fonts) {
+            if (font != null) {
+                font.forEachFile(action);
+            }
+        }
+        if (_appendix != null) {
+            _appendix.forEachFile(action);
+        }
+    }
+
+    /**
+     * Closes data files of this sub-book and its appendix, and drops the
+     * cached index pages.
+     */
+    void close() {
+        forEachFile(EBFile::close);
+        _forEachStyle(style -> style.getPageCache().clear());
+    }
+
+    /**
+     * Performs the action for each index style of this sub-book.
+     *
+     * @param action action to be performed.
+     */
+    private void _forEachStyle(final Consumer<IndexStyle> action) {
+        List<IndexStyle> styles = new ArrayList<>();
+        Collections.addAll(styles, _textStyle, _soundStyle, _keywordStyle, _crossStyle,
+                           _menuStyle, _imageMenuStyle, _copyrightStyle);
+        Collections.addAll(styles, _wordStyle);
+        Collections.addAll(styles, endwordStyle);
+        if (_multiStyle != null) {
+            Collections.addAll(styles, _multiStyle);
+        }
+        if (_entryStyle != null) {
+            for (IndexStyle[] entry : _entryStyle) {
+                if (entry != null) {
+                    Collections.addAll(styles, entry);
+                }
+            }
+        }
+        for (IndexStyle style : styles) {
+            if (style != null) {
+                action.accept(style);
+            }
+        }
+    }
+
     /**
      * 指定位置の見出しを返します。
      *
@@ -796,17 +929,9 @@ public class SubBook {
      * @exception EBException ファイル読み込み中にエラーが発生した場合
      */
     public <T> T getHeading(final long pos, final Hook<T> hook) throws EBException {
-        BookReader<T> reader = null;
-        T t = null;
-        try {
-            reader = new BookReader<T>(this, hook);
-            t = reader.readHeading(pos);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
+        try (BookReader<T> reader = new BookReader<T>(this, hook)) {
+            return reader.readHeading(pos);
         }
-        return t;
     }
 
     /**
@@ -817,17 +942,9 @@ public class SubBook {
      * @exception EBException ファイル読み込み中にエラーが発生した場合
      */
     public long getNextHeadingPosition(final long pos) throws EBException {
-        BookReader<Object> reader = null;
-        long nextPos;
-        try {
-            reader = new BookReader<Object>(this, null);
-            nextPos = reader.nextHeadingPosition(pos);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
+        try (BookReader<Object> reader = new BookReader<Object>(this, null)) {
+            return reader.nextHeadingPosition(pos);
         }
-        return nextPos;
     }
 
     /**
@@ -840,17 +957,9 @@ public class SubBook {
      * @exception EBException ファイル読み込み中にエラーが発生した場合
      */
     public <T> T getText(final long pos, final Hook<T> hook) throws EBException {
-        BookReader<T> reader = null;
-        T t = null;
-        try {
-            reader = new BookReader<T>(this, hook);
-            t = reader.readText(pos);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
+        try (BookReader<T> reader = new BookReader<T>(this, hook)) {
+            return reader.readText(pos);
         }
-        return t;
     }
 
     /**
@@ -866,17 +975,9 @@ public class SubBook {
         if (!hasMenu()) {
             return null;
         }
-        BookReader<T> reader = null;
-        T t = null;
-        try {
-            reader = new BookReader<T>(this, hook);
-            t = reader.readText(_menuStyle.getStartPage(), 0);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
+        try (BookReader<T> reader = new BookReader<T>(this, hook)) {
+            return reader.readText(_menuStyle.getStartPage(), 0);
         }
-        return t;
     }
 
     /**
@@ -892,17 +993,9 @@ public class SubBook {
         if (!hasImageMenu()) {
             return null;
         }
-        BookReader<T> reader = null;
-        T t = null;
-        try {
-            reader = new BookReader<T>(this, hook);
-            t = reader.readText(_imageMenuStyle.getStartPage(), 0);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
+        try (BookReader<T> reader = new BookReader<T>(this, hook)) {
+            return reader.readText(_imageMenuStyle.getStartPage(), 0);
         }
-        return t;
     }
 
     /**
@@ -918,17 +1011,27 @@ public class SubBook {
         if (!hasCopyright()) {
             return null;
         }
-        BookReader<T> reader = null;
-        T t = null;
-        try {
-            reader = new BookReader<T>(this, hook);
-            t = reader.readText(_copyrightStyle.getStartPage(), 0);
-        } finally {
-            if (reader != null) {
-                reader.close();
+        try (BookReader<T> reader = new BookReader<T>(this, hook)) {
+            return reader.readText(_copyrightStyle.getStartPage(), 0);
+        }
+    }
+
+    /**
+     * 指定されたバイト配列の文字種別に対応するインデックススタイルを返します。
+     *
+     * @param styles 文字種別ごとのインデックススタイル
+     * @param b バイト配列
+     * @return インデックススタイル (存在しない場合はnull)
+     */
+    private IndexStyle _selectWordStyle(final IndexStyle[] styles, final byte[] b) {
+        int type = ALPHABET;
+        if (_book.getCharCode() != Book.CHARCODE_ISO8859_1) {
+            type = _getWordType(b);
+            if (styles[type] == null) {
+                type = KANJI;
             }
         }
-        return t;
+        return styles[type];
     }
 
     /**
@@ -1009,18 +1112,12 @@ public class SubBook {
         if (b.length == 0) {
             return new NullSearcher();
         }
-        int type = ALPHABET;
-        if (_book.getCharCode() != Book.CHARCODE_ISO8859_1) {
-            type = _getWordType(b);
-            if (_wordStyle[type] == null) {
-                type = KANJI;
-            }
-        }
-        if (_wordStyle[type] == null) {
+        IndexStyle style = _selectWordStyle(_wordStyle, b);
+        if (style == null) {
             return new NullSearcher();
         }
         SingleWordSearcher searcher =
-            new SingleWordSearcher(this, _wordStyle[type], SingleWordSearcher.EXACTWORD);
+            new SingleWordSearcher(this, style, SingleWordSearcher.EXACTWORD);
         searcher.search(b);
         return searcher;
     }
@@ -1041,18 +1138,12 @@ public class SubBook {
         if (b.length == 0) {
             return new NullSearcher();
         }
-        int type = ALPHABET;
-        if (_book.getCharCode() != Book.CHARCODE_ISO8859_1) {
-            type = _getWordType(b);
-            if (_wordStyle[type] == null) {
-                type = KANJI;
-            }
-        }
-        if (_wordStyle[type] == null) {
+        IndexStyle style = _selectWordStyle(_wordStyle, b);
+        if (style == null) {
             return new NullSearcher();
         }
         SingleWordSearcher searcher =
-            new SingleWordSearcher(this, _wordStyle[type], SingleWordSearcher.WORD);
+            new SingleWordSearcher(this, style, SingleWordSearcher.WORD);
         searcher.search(b);
         return searcher;
     }
@@ -1073,22 +1164,213 @@ public class SubBook {
         if (b.length == 0) {
             return new NullSearcher();
         }
-        int type = ALPHABET;
-        if (_book.getCharCode() != Book.CHARCODE_ISO8859_1) {
-            type = _getWordType(b);
-            if (endwordStyle[type] == null) {
-                type = KANJI;
-            }
-        }
-        if (endwordStyle[type] == null) {
+        IndexStyle style = _selectWordStyle(endwordStyle, b);
+        if (style == null) {
             return new NullSearcher();
         }
         SingleWordSearcher searcher =
-            new SingleWordSearcher(this, endwordStyle[type], SingleWordSearcher.ENDWORD);
+            new SingleWordSearcher(this, style, SingleWordSearcher.ENDWORD);
         searcher.search(b);
         return searcher;
     }
 
+    /**
+     * 指定された語で始まる見出し語をインデックスの順に返します。
+     * <p>
+     * The leaf pages of the word index are scanned in order from the first
+     * entry matching the prefix, and the scan stops as soon as the limit is
+     * reached. The keys of the headwords are taken from the index entries,
+     * so no heading is read from the text until
+     * {@link Headword#getHeading(Hook)} is called.
+     * </p>
+     *
+     * @param prefix 検索語
+     * @param limit 結果の最大数 (0以下の場合は制限なし)
+     * @return 見出し語のリスト
+     * @exception EBException 検索中にエラーが発生した場合
+     */
+    public List<Headword> complete(final String prefix, final int limit) throws EBException {
+        List<Headword> list = new ArrayList<>();
+        if (!hasWordSearch() || StringUtils.isBlank(prefix)) {
+            return list;
+        }
+        byte[] b = _unescapeExtFontCode(prefix);
+        if (b.length == 0) {
+            return list;
+        }
+        IndexStyle style = _selectWordStyle(_wordStyle, b);
+        if (style == null) {
+            return list;
+        }
+        SingleWordSearcher searcher = new SingleWordSearcher(this, style, SingleWordSearcher.WORD);
+        searcher.search(b);
+        Result result;
+        while ((limit <= 0 || list.size() < limit) && (result = searcher.getNextResult()) != null) {
+            list.add(new Headword(searcher.getResultKey(), result));
+        }
+        return list;
+    }
+
+    /**
+     * インデックスを順に参照するカーソルを返します。
+     * <p>
+     * The index of the type is chosen by the characters of the word as in
+     * {@link #searchWord(String)}, and the cursor is positioned before the
+     * first entry not smaller than the word. A blank word opens the
+     * kanji or alphabet index at its first entry.
+     * </p>
+     *
+     * @param type 検索種別 ({@link #SEARCH_WORD}、{@link #SEARCH_ENDWORD}
+     *        または{@link #SEARCH_KEYWORD})
+     * @param word 検索語
+     * @return カーソル (インデックスが存在しない場合はnull)
+     * @exception EBException インデックスの読み込み中にエラーが発生した場合
+     * @see HeadwordCursor#seek(String)
+     */
+    public HeadwordCursor openHeadwordCursor(final int type, final String word) throws EBException {
+        IndexStyle style;
+        switch (type) {
+            case SEARCH_WORD:
+            case SEARCH_ENDWORD:
+                byte[] b = new byte[0];
+                if (word != null) {
+                    b = _unescapeExtFontCode(word);
+                }
+                if (type == SEARCH_WORD) {
+                    style = _selectWordStyle(_wordStyle, b);
+                } else {
+                    style = _selectWordStyle(endwordStyle, b);
+                }
+                break;
+            case SEARCH_KEYWORD:
+                style = _keywordStyle;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown search type: " + type);
+        }
+        if (style == null || style.getStartPage() <= 0) {
+            return null;
+        }
+        HeadwordCursor cursor = new HeadwordCursor(this, style, type);
+        cursor.seek(word);
+        return cursor;
+    }
+
+    /**
+     * 保存された位置からインデックスを順に参照するカーソルを返します。
+     *
+     * @param token {@link HeadwordCursor#getToken()}で取得した位置
+     * @return カーソル
+     * @exception EBException インデックスの読み込み中にエラーが発生した場合
+     * @exception IllegalArgumentException この副本の位置ではない場合
+     */
+    public HeadwordCursor openHeadwordCursor(final String token) throws EBException {
+        int id = HeadwordCursor.parseIndexID(token);
+        IndexStyle style = null;
+        int type = SEARCH_WORD;
+        for (int i=0; i<_wordStyle.length; i++) {
+            if (_wordStyle[i] != null && _wordStyle[i].getIndexID() == id) {
+                style = _wordStyle[i];
+            }
+            if (endwordStyle[i] != null && endwordStyle[i].getIndexID() == id) {
+                style = endwordStyle[i];
+                type = SEARCH_ENDWORD;
+            }
+        }
+        if (_keywordStyle != null && _keywordStyle.getIndexID() == id) {
+            style = _keywordStyle;
+            type = SEARCH_KEYWORD;
+        }
+        if (style == null || style.getStartPage() <= 0) {
+            throw new IllegalArgumentException("invalid token: " + token);
+        }
+        HeadwordCursor cursor = new HeadwordCursor(this, style, type);
+        cursor.restore(token);
+        return cursor;
+    }
+
+    /**
+     * 複数の語を一括して検索します。
+     *
+     * @param words 検索語
+     * @param type 検索種別
+     * @return 検索語ごとの検索結果
+     * @exception EBException 検索中にエラーが発生した場合
+     * @see #searchWords(Collection, int, ForkJoinPool)
+     */
+    public Map<String, List<Result>> searchWords(final Collection<String> words, final int type)
+            throws EBException {
+        return searchWords(words, type, null);
+    }
+
+    /**
+     * 複数の語を一括して検索します。
+     * <p>
+     * The words are normalized with the rules of the index and searched in
+     * the order of the index keys, so that neighbouring words share the
+     * index pages they read. Batches larger than a few hundred words are
+     * split into ranges of keys searched in parallel on the pool.
+     * </p>
+     *
+     * @param words 検索語
+     * @param type 検索種別 ({@link #SEARCH_WORD}、{@link #SEARCH_ENDWORD}
+     *        または{@link #SEARCH_EXACTWORD})
+     * @param pool 並列に検索するプール (nullの場合は呼び出したスレッドで検索)
+     * @return 検索語ごとの検索結果 (検索語の順、結果がない場合は空のリスト)
+     * @exception EBException 検索中にエラーが発生した場合
+     */
+    public Map<String, List<Result>> searchWords(final Collection<String> words, final int type,
+                                                 final ForkJoinPool pool) throws EBException {
+        IndexStyle[] styles;
+        boolean available;
+        switch (type) {
+            case SEARCH_WORD:
+            case SEARCH_EXACTWORD:
+                styles = _wordStyle;
+                available = hasWordSearch();
+                break;
+            case SEARCH_ENDWORD:
+                styles = endwordStyle;
+                available = hasEndwordSearch();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown search type: " + type);
+        }
+
+        // 文字種別のインデックスごとにまとめる
+        Map<String, List<Result>> results = new LinkedHashMap<>();
+        Map<IndexStyle, List<String>> batches = new LinkedHashMap<>();
+        Map<IndexStyle, List<byte[]>> keys = new HashMap<>();
+        for (String word : words) {
+            if (results.containsKey(word)) {
+                continue;
+            }
+            results.put(word, Collections.emptyList());
+            if (!available || StringUtils.isBlank(word)) {
+                continue;
+            }
+            byte[] b = _unescapeExtFontCode(word);
+            if (b.length == 0) {
+                continue;
+            }
+            IndexStyle style = _selectWordStyle(styles, b);
+            if (style == null) {
+                continue;
+            }
+            batches.computeIfAbsent(style, s -> new ArrayList<>()).add(word);
+            keys.computeIfAbsent(style, s -> new ArrayList<>()).add(b);
+        }
+        for (Map.Entry<IndexStyle, List<String>> batch : batches.entrySet()) {
+            List<List<Result>> found =
+                new BatchSearcher(this, batch.getKey(), type).search(keys.get(batch.getKey()), pool);
+            List<String> list = batch.getValue();
+            for (int i = 0; i < list.size(); i++) {
+                results.put(list.get(i), found.get(i));
+            }
+        }
+        return results;
+    }
+
     /**
      * 条件検索を行います。
      *
@@ -1362,18 +1644,10 @@ public class SubBook {
         if (!hasMultiEntryCandidate(multiIndex, entryIndex)) {
             return null;
         }
-        BookReader<T> reader = null;
-        T t = null;
-        try {
-            reader = new BookReader<T>(this, hook);
+        try (BookReader<T> reader = new BookReader<T>(this, hook)) {
             long page = _entryStyle[multiIndex][entryIndex].getCandidatePage();
-            t = reader.readText(page, 0);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
+            return reader.readText(page, 0);
         }
-        return t;
     }
 
     /**
@@ -1408,6 +1682,16 @@ public class SubBook {
         return getTitle();
     }
 
+    /**
+     * 検索語中の外字エスケープコード"\####"を展開します。
+     *
+     * @param word 検索語
+     * @return バイト配列
+     */
+    byte[] unescapeExtFontCode(final String word) {
+        return _unescapeExtFontCode(word);
+    }
+
     /**
      * 検索語中の外字エスケープコード"\####"を展開します。
      *
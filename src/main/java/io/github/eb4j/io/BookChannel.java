@@ -0,0 +1,363 @@
+package io.github.eb4j.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.eb4j.EBException;
+
+/**
+ * Thread-safe positional reader of a book file.
+ * <p>
+ * Unlike {@link BookInputStream}, a channel has no file pointer: every
+ * read names its position, so one channel can be shared by any number of
+ * threads without locking. Compressed files are read through the
+ * {@link PageCache} of the file, so a slice decoded for one thread is
+ * served to all others.
+ * </p>
+ * <p>
+ * A channel is obtained with {@link EBFile#getBookChannel()}. Internally
+ * each read borrows an idle stream of the file, so reads do not construct
+ * a stream per call.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+public final class BookChannel {
+
+    /** Maximum number of idle streams. */
+    static final int MAX_IDLE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    /** File information. */
+    private final FileInfo _info;
+    /** Idle streams. */
+    private final ConcurrentLinkedDeque<BookInputStream> _idle = new ConcurrentLinkedDeque<>();
+    /** Number of idle streams. */
+    private final AtomicInteger _idleCount = new AtomicInteger();
+
+
+    /**
+     * Build a channel.
+     *
+     * @param info file information.
+     */
+    BookChannel(final FileInfo info) {
+        super();
+        _info = info;
+    }
+
+
+    /**
+     * Returns the size of the data of the file.
+     *
+     * @return data size.
+     */
+    public long size() {
+        return _info.getFileSize();
+    }
+
+    /**
+     * Returns the size of the unit the data is decoded in.
+     * <p>
+     * Compressed data is decoded one slice at a time, so a read aligned to
+     * the slice size decodes each slice once. Uncompressed and EPWING
+     * compressed data is read one page at a time.
+     * </p>
+     *
+     * @return slice size.
+     */
+    public int getSliceSize() {
+        return _info.getSliceSize();
+    }
+
+    /**
+     * Reads up to len bytes at the specified position.
+     *
+     * @param pos position in the data.
+     * @param b destination buffer.
+     * @param off offset in the buffer.
+     * @param len maximum number of bytes to read.
+     * @return number of bytes read, or -1 if pos is at or past the end.
+     * @exception EBException if a read error occurs.
+     */
+    public int readAt(final long pos, final byte[] b, final int off, final int len) throws EBException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (pos < 0) {
+            throw new IllegalArgumentException("pos must not be negative: " + pos);
+        }
+        if (pos >= _info.getFileSize()) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        BookInputStream bis = _borrow();
+        boolean done = false;
+        try {
+            bis.seek(pos);
+            int n = bis.read(b, off, len);
+            done = true;
+            return n;
+        } finally {
+            _release(bis, done);
+        }
+    }
+
+    /**
+     * Reads bytes at the specified position into a buffer.
+     * <p>
+     * Up to {@code dst.remaining()} bytes are read and the position of the
+     * buffer is advanced by the number of bytes read.
+     * </p>
+     *
+     * @param pos position in the data.
+     * @param dst destination buffer.
+     * @return number of bytes read, or -1 if pos is at or past the end.
+     * @exception EBException if a read error occurs.
+     */
+    public int readAt(final long pos, final ByteBuffer dst) throws EBException {
+        if (dst.hasArray()) {
+            int n = readAt(pos, dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (n > 0) {
+                dst.position(dst.position() + n);
+            }
+            return n;
+        }
+        byte[] b = new byte[Math.min(dst.remaining(), BookInputStream.PAGE_SIZE * 4)];
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int n = readAt(pos + total, b, 0, Math.min(b.length, dst.remaining()));
+            if (n <= 0) {
+                break;
+            }
+            dst.put(b, 0, n);
+            total += n;
+        }
+        if (total == 0 && pos >= _info.getFileSize()) {
+            return -1;
+        }
+        return total;
+    }
+
+    /**
+     * Reads exactly len bytes at the specified position.
+     *
+     * @param pos position in the data.
+     * @param b destination buffer.
+     * @param off offset in the buffer.
+     * @param len number of bytes to read.
+     * @exception EBException if a read error occurs or the end of the data is reached.
+     */
+    public void readFullyAt(final long pos, final byte[] b, final int off, final int len) throws EBException {
+        int rlen = 0;
+        while (rlen < len) {
+            int n = readAt(pos + rlen, b, off + rlen, len - rlen);
+            if (n == -1) {
+                throw new EBException(EBException.FAILED_READ_FILE, _info.getPath());
+            }
+            rlen += n;
+        }
+    }
+
+    /**
+     * Reads exactly len bytes at the specified position without going
+     * through the page and slice caches.
+     * <p>
+     * Used by bulk readers decoding the whole file, which would otherwise
+     * fill the shared caches with slices read once and evict the slices of
+     * other readers, and by readers keeping the data in a cache of their
+     * own.
+     * </p>
+     *
+     * @param pos position in the data.
+     * @param b destination buffer.
+     * @param off offset in the buffer.
+     * @param len number of bytes to read.
+     * @exception EBException if a read error occurs or the end of the data is reached.
+     */
+    public void readFullyUncached(final long pos, final byte[] b, final int off, final int len) throws EBException {
+        try (BookInputStream bis = EBFile.newInputStream(_info)) {
+            bis.bypassCaches();
+            bis.seek(pos);
+            bis.readFully(b, off, len);
+        }
+    }
+
+    /**
+     * Transfers bytes at the specified position to a channel.
+     * <p>
+     * Uncompressed files are transferred with
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)},
+     * which the operating system may carry out without copying the data
+     * into the JVM. Compressed files are decoded and written one slice at a
+     * time, so the payload is never held in memory as a whole.
+     * </p>
+     * <p>
+     * The transfer stops early at the end of the data, or when a
+     * non-blocking target accepts no more bytes.
+     * </p>
+     *
+     * @param pos position in the data.
+     * @param len maximum number of bytes to transfer.
+     * @param target destination channel.
+     * @return number of bytes written to the target.
+     * @exception EBException if a read or write error occurs.
+     */
+    public long transferTo(final long pos, final long len, final WritableByteChannel target) throws EBException {
+        if (pos < 0 || len < 0) {
+            throw new IllegalArgumentException("pos and len must not be negative: " + pos + ", " + len);
+        }
+        long total = Math.min(len, _info.getFileSize() - pos);
+        if (total <= 0) {
+            return 0L;
+        }
+        long done = 0L;
+        if (_info.getFormat() == EBFormat.FORMAT_PLAIN && _info.getResidentFile() == null) {
+            while (done < total) {
+                FileChannel channel = _info.getChannel();
+                long n;
+                try {
+                    n = channel.transferTo(pos + done, total - done, target);
+                } catch (ClosedByInterruptException e) {
+                    throw new EBException(EBException.FAILED_READ_FILE, _info.getPath(), e);
+                } catch (ClosedChannelException e) {
+                    if (channel.isOpen()) {
+                        // the file is open, so the target has been closed
+                        throw new EBException(EBException.FAILED_WRITE_FILE, e);
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new EBException(EBException.FAILED_READ_FILE, _info.getPath(), e);
+                    }
+                    // closed by EBFile#close() or an interrupted reader; reopen
+                    continue;
+                } catch (IOException e) {
+                    // transferTo does not tell which side failed; read a byte
+                    // of the source, which reports a read error itself
+                    _info.readChannel(ByteBuffer.allocate(1), pos + done, -1L);
+                    throw new EBException(EBException.FAILED_WRITE_FILE, e);
+                }
+                if (n <= 0) {
+                    break;
+                }
+                done += n;
+            }
+            return done;
+        }
+        byte[] b = new byte[Math.max(_info.getSliceSize(), BookInputStream.PAGE_SIZE)];
+        BookInputStream bis = _borrow();
+        boolean ok = false;
+        try {
+            bis.seek(pos);
+            while (done < total) {
+                int n = bis.read(b, 0, (int)Math.min(b.length, total - done));
+                if (n <= 0) {
+                    break;
+                }
+                int m = _write(target, ByteBuffer.wrap(b, 0, n));
+                if (m < n) {
+                    ok = true;
+                    return done + m;
+                }
+                done += n;
+            }
+            ok = true;
+        } finally {
+            _release(bis, ok);
+        }
+        return done;
+    }
+
+    /**
+     * Writes a buffer to a channel.
+     *
+     * @param target destination channel.
+     * @param buf buffer to write.
+     * @return number of bytes written, less than the buffer held when a
+     * non-blocking target accepts no more bytes.
+     * @exception EBException if a write error occurs.
+     */
+    private static int _write(final WritableByteChannel target, final ByteBuffer buf) throws EBException {
+        int start = buf.position();
+        try {
+            while (buf.hasRemaining()) {
+                if (target.write(buf) <= 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new EBException(EBException.FAILED_WRITE_FILE, e);
+        }
+        return buf.position() - start;
+    }
+
+    /**
+     * Discards the idle streams.
+     * <p>
+     * Called when the format or the mapping of the file changes, so that
+     * later reads use streams of the new kind.
+     * </p>
+     */
+    void clear() {
+        BookInputStream bis;
+        while ((bis = _idle.pollFirst()) != null) {
+            _idleCount.decrementAndGet();
+            bis.close();
+        }
+    }
+
+    /**
+     * Returns the number of idle streams.
+     *
+     * @return number of idle streams.
+     */
+    int getIdleCount() {
+        return _idleCount.get();
+    }
+
+    /**
+     * Borrows an idle stream, or opens a new one.
+     *
+     * @return stream.
+     * @exception EBException if the stream cannot be opened.
+     */
+    private BookInputStream _borrow() throws EBException {
+        BookInputStream bis = _idle.pollFirst();
+        if (bis != null) {
+            _idleCount.decrementAndGet();
+            return bis;
+        }
+        return EBFile.newInputStream(_info);
+    }
+
+    /**
+     * Returns a stream to the idle streams.
+     * <p>
+     * A stream whose read failed is closed instead, since its buffer may
+     * hold a partly read slice.
+     * </p>
+     *
+     * @param bis stream.
+     * @param reusable false if the read failed.
+     */
+    private void _release(final BookInputStream bis, final boolean reusable) {
+        if (!reusable) {
+            bis.close();
+            return;
+        }
+        if (_idleCount.incrementAndGet() <= MAX_IDLE) {
+            _idle.addFirst(bis);
+        } else {
+            _idleCount.decrementAndGet();
+            bis.close();
+        }
+    }
+}
+
+// end of BookChannel.java
@@ -1,14 +1,18 @@
 package io.github.eb4j.io;
 
-import java.io.RandomAccessFile;
-import java.io.EOFException;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import io.github.eb4j.EBException;
 
 /**
  * Base InputStream class for book.
+ * <p>
+ * A stream is a lightweight cursor over the file. All streams of an
+ * {@link EBFile} share one channel owned by the file and read it with
+ * positional reads, so opening and closing a stream costs no system call.
+ * When the file is memory mapped, raw reads are copied from the mapping
+ * instead.
+ * </p>
  *
  * @author Hisaya FUKUMOTO
  * @author Hiroshi Miura
@@ -20,8 +24,6 @@ public abstract class BookInputStream implements AutoCloseable {
 
     /** File information. */
     protected FileInfo info = null;
-    /** Input stream. */
-    protected RandomAccessFile stream = null;
     /** File pointer position. */
     protected long filePos = 0;
 
@@ -29,6 +31,16 @@ public abstract class BookInputStream implements AutoCloseable {
     protected byte[] cache = null;
     /** Position in cache buffer. */
     protected long cachePos = -1;
+    /** Whether the cache buffer is shared through the page cache. */
+    private boolean cacheShared = false;
+    /** Number of slices decoded ahead on sequential reads. */
+    private int readAhead = 0;
+    /** Index of the slice loaded last. */
+    private long lastIndex = -1;
+    /** Generation of the file a background stream is bound to, or -1. */
+    private long generation = -1L;
+    /** Whether the page and slice caches are bypassed. */
+    private boolean uncached = false;
 
 
     /**
@@ -39,20 +51,10 @@ public abstract class BookInputStream implements AutoCloseable {
     protected BookInputStream(final FileInfo info) {
         super();
         this.info = info;
+        this.readAhead = info.getReadAhead();
     }
 
 
-    /**
-     * このオブジェクトで使用されているシステムリソースを破棄します。
-     *
-     * @exception Throwable このメソッドで生じた例外
-     */
-    @Override
-    protected void finalize() throws Throwable {
-        close();
-        super.finalize();
-    }
-
     /**
      * このファイルのファイルサイズを返します。
      *
@@ -80,6 +82,70 @@ public abstract class BookInputStream implements AutoCloseable {
         return info.getSliceSize();
     }
 
+    /**
+     * Returns the number of slices decoded ahead on sequential reads.
+     *
+     * @return number of slices, or 0 if disabled.
+     */
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Set the number of slices decoded ahead on sequential reads.
+     * <p>
+     * When this stream loads slices in order, the next slices are decoded
+     * on background threads into the {@link PageCache} of the file. The
+     * default is taken from {@link EBFile#setReadAhead(int)}. Read-ahead
+     * has no effect on uncompressed files or when the page cache is
+     * disabled.
+     * </p>
+     *
+     * @param slices number of slices, or 0 to disable.
+     */
+    public void setReadAhead(final int slices) {
+        if (slices < 0) {
+            throw new IllegalArgumentException("slices must not be negative: " + slices);
+        }
+        readAhead = slices;
+    }
+
+    /**
+     * Makes this stream bypass the page and slice caches.
+     * <p>
+     * Slices are decoded into the buffer of this stream and not scheduled
+     * for read-ahead, so that a reader decoding the whole file does not
+     * evict the slices of other readers.
+     * </p>
+     */
+    void bypassCaches() {
+        uncached = true;
+    }
+
+    /**
+     * Binds this stream to a generation of the file.
+     * <p>
+     * A bound stream fails instead of reopening the file once it has been
+     * closed.
+     * </p>
+     *
+     * @param gen generation of the file.
+     * @see FileInfo#getChannel(long)
+     */
+    void bindGeneration(final long gen) {
+        generation = gen;
+    }
+
+    /**
+     * このファイルのスライス数を返します。
+     *
+     * @param size スライスサイズ
+     * @return スライス数
+     */
+    protected long getSliceCount(final int size) {
+        return (info.getFileSize() + size - 1) / size;
+    }
+
     /**
      * ファイル情報を初期化します。
      *
@@ -94,29 +160,17 @@ public abstract class BookInputStream implements AutoCloseable {
      * @exception EBException 入出力エラーが発生した場合
      */
     protected void open() throws EBException {
-        if (stream != null) {
-            close();
-        }
-
-        try {
-            stream = new RandomAccessFile(info.getFile(), "r");
-        } catch (FileNotFoundException e) {
-            throw new EBException(EBException.FILE_NOT_FOUND, info.getPath(), e);
-        }
+        info.getChannel();
         filePos = 0;
     }
 
     /**
      * このファイルを閉じます。
-     *
+     * <p>
+     * The shared channel stays open until {@link EBFile#close()} is called.
+     * </p>
      */
     public void close() {
-        if (stream != null) {
-            try {
-                stream.close();
-            } catch (IOException e) {
-            }
-        }
     }
 
     /**
@@ -200,62 +254,125 @@ public abstract class BookInputStream implements AutoCloseable {
     }
 
     /**
-     * このファイルから最大b.lengthバイトのデータをバイト配列に読み込みます。
+     * 指定スライスをデコードしてキャッシュに読み込みます。
+     * <p>
+     * The decoded slice is looked up in the {@link PageCache} of the file
+     * first, and stored in it after decoding. A cached slice is shared by
+     * reference, so the cache buffer must not be modified by the caller.
+     * When slices are loaded in order and read-ahead is enabled, the
+     * following slices are scheduled for decoding in the background.
+     * </p>
      *
-     * @param b データの読み込み先のバッファ
-     * @return バッファに読み込まれたバイトの合計数
-     *         (ストリームの終わりに達してデータがない場合は-1)
+     * @param index スライス番号
+     * @param size スライスサイズ
      * @exception EBException 入出力エラーが発生した場合
      */
-    protected int readRaw(final byte[] b) throws EBException {
-        return readRaw(b, 0, b.length);
+    protected void loadCache(final long index, final int size) throws EBException {
+        PageCache pageCache = info.getPageCache();
+        if (uncached || pageCache == null || pageCache.getMaxSize() == 0) {
+            if (cacheShared || cache == null || cache.length != size) {
+                cache = new byte[size];
+                cacheShared = false;
+            }
+            decodeSlice(index, cache);
+            return;
+        }
+        if (readAhead > 0 && index == lastIndex + 1) {
+            long last = Math.min(index + readAhead, getSliceCount(size) - 1);
+            ReadAhead.schedule(info, pageCache, index + 1, last, size);
+        }
+        lastIndex = index;
+        byte[] data = pageCache.get(info, index);
+        if (data == null) {
+            data = new byte[size];
+            decodeSlice(index, data);
+            pageCache.put(info, index, data);
+        }
+        cache = data;
+        cacheShared = true;
     }
 
     /**
-     * このファイルから最大lenバイトのデータをバイト配列に読み込みます。
+     * 指定スライスをデコードしてバッファに書き込みます。
+     * <p>
+     * Implementations must not depend on the state of the stream, because
+     * the result is shared by all streams of the file.
+     * The default implementation reads the slice as is.
+     * </p>
+     *
+     * @param index スライス番号
+     * @param out デコード結果の書き込み先のバッファ
+     * @exception EBException 入出力エラーが発生した場合
+     */
+    protected void decodeSlice(final long index, final byte[] out) throws EBException {
+        long pos = index * out.length;
+        int len = (int)Math.min(out.length, Math.max(0, info.getFileSize() - pos));
+        readRawFully(pos, out, 0, len);
+    }
+
+    /**
+     * 指定スライスの圧縮データをバイト配列に読み込みます。
+     * <p>
+     * The compressed data is looked up in the {@link SliceCache} of the
+     * file first, and stored in it after reading the file.
+     * </p>
      *
+     * @param index スライス番号
+     * @param pos ファイル上の圧縮データの位置
      * @param b データの読み込み先のバッファ
-     * @param off データの開始オフセット
-     * @param len 読み込まれる最大バイト数
-     * @return バッファに読み込まれたバイトの合計数
-     *         (ストリームの終わりに達してデータがない場合は-1)
+     * @param len 圧縮データのバイト数
      * @exception EBException 入出力エラーが発生した場合
      */
-    protected int readRaw(final byte[] b, final int off, final int len) throws EBException {
-        int ret;
-        try {
-            ret = stream.read(b, off, len);
-        } catch (IOException e) {
-            throw new EBException(EBException.FAILED_READ_FILE, info.getPath(), e);
+    protected void readSlice(final long index, final long pos, final byte[] b, final int len)
+            throws EBException {
+        SliceCache sliceCache = info.getSliceCache();
+        if (uncached || sliceCache == null || sliceCache.getMaxSize() == 0) {
+            readRawFully(pos, b, 0, len);
+            return;
+        }
+        if (!sliceCache.get(info, index, b, len)) {
+            readRawFully(pos, b, 0, len);
+            sliceCache.put(info, index, b, len);
         }
-        return ret;
     }
 
     /**
-     * このファイルからb.lengthバイトのデータをバイト配列に読み込みます。
+     * このファイルの指定位置から最大lenバイトのデータをバイト配列に読み込みます。
      *
+     * @param pos ファイル上の読み込み位置
      * @param b データの読み込み先のバッファ
+     * @param off データの開始オフセット
+     * @param len 読み込まれる最大バイト数
+     * @return バッファに読み込まれたバイトの合計数
+     *         (ファイルの終わりに達してデータがない場合は-1)
      * @exception EBException 入出力エラーが発生した場合
      */
-    protected void readRawFully(final byte[] b) throws EBException {
-        readRawFully(b, 0, b.length);
+    protected int readRaw(final long pos, final byte[] b, final int off, final int len)
+            throws EBException {
+        if (info.isMemoryMapped()) {
+            return info.getMappedFile(generation).read(pos, b, off, len);
+        }
+        return info.readChannel(ByteBuffer.wrap(b, off, len), pos, generation);
     }
 
     /**
-     * このファイルからlenバイトのデータをバイト配列に読み込みます。
+     * このファイルの指定位置からlenバイトのデータをバイト配列に読み込みます。
      *
+     * @param pos ファイル上の読み込み位置
      * @param b データの読み込み先のバッファ
      * @param off データの開始オフセット
-     * @param len 読み込まれる最大バイト数
+     * @param len 読み込まれるバイト数
      * @exception EBException 入出力エラーが発生した場合
      */
-    protected void readRawFully(final byte[] b, final int off, final int len) throws EBException {
-        try {
-            stream.readFully(b, off, len);
-        } catch (EOFException e) {
-            throw new EBException(EBException.FAILED_READ_FILE, info.getPath(), e);
-        } catch (IOException e) {
-            throw new EBException(EBException.FAILED_READ_FILE, info.getPath(), e);
+    protected void readRawFully(final long pos, final byte[] b, final int off, final int len)
+            throws EBException {
+        int rlen = 0;
+        while (rlen < len) {
+            int n = readRaw(pos + rlen, b, off + rlen, len - rlen);
+            if (n < 0) {
+                throw new EBException(EBException.FAILED_READ_FILE, info.getPath());
+            }
+            rlen += n;
         }
     }
 
@@ -10,11 +10,15 @@ import java.nio.charset.Charset;
 
 /**
  * Read texts from BookInputStream.
+ * <p>
+ * A reader holds no system resource of its own; the file channel is
+ * owned by the {@link EBFile}. Close it with try-with-resources.
+ * </p>
  *
  * @author Hisaya FUKUMOTO
  * @param <T> Generated object by hook.
  */
-public class BookReader<T> {
+public class BookReader<T> implements AutoCloseable {
 
     /** Indicate an article text */
     private static final int TEXT = 0;
@@ -51,21 +55,11 @@ public class BookReader<T> {
     }
 
 
-    /**
-     * Closes and destroy system resources in this object.
-     *
-     * @exception Throwable all exceptions when close() and finalize().
-     */
-    @Override
-    protected void finalize() throws Throwable {
-        close();
-        super.finalize();
-    }
-
     /**
      * Close a reader stream.
      *
      */
+    @Override
     public void close() {
         if (_bis != null) {
             _bis.close();
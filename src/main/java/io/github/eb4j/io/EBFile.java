@@ -1,17 +1,30 @@
 package io.github.eb4j.io;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.commons.lang3.ArrayUtils;
 
 import io.github.eb4j.EBException;
+import io.github.eb4j.util.TaskUtil;
 
 /**
  * ファイルおよびディレクトリの抽象表現クラス。
+ * <p>
+ * Each file owns one channel that is shared by all of its input streams.
+ * The channel is opened on the first read and stays open until
+ * {@link #close()} is called. The file can instead be read through a
+ * memory mapping, see {@link #setMemoryMapped(boolean)}.
+ * </p>
  *
  * @author Hisaya FUKUMOTO
  */
-public class EBFile {
+public class EBFile implements AutoCloseable {
     /** PLAIN形式 */
     @Deprecated
     public static final int FORMAT_PLAIN = 0;
@@ -27,10 +40,20 @@ public class EBFile {
     /** S-EBXA形式 */
     @Deprecated
     public static final int FORMAT_SEBXA = 4;
+    /** Size of chunks decoded by one task when loading resident data. */
+    private static final int RESIDENT_CHUNK_SIZE = 512 * BookInputStream.PAGE_SIZE;
     /** ファイル情報 */
-    private FileInfo _info;
+    private final FileInfo _info;
     /** オリジナルファイル名 */
     private String _name = null;
+    /** スレッドセーフな位置指定読み込み */
+    private final BookChannel _channel;
+    /** 元のファイル */
+    private File _source = null;
+    /** サイドカーを読み込んでいるかどうか */
+    private boolean _sidecar = false;
+    /** S-EBXA圧縮の本文かどうか */
+    private volatile boolean _sebxa = false;
 
 
     /**
@@ -85,6 +108,7 @@ public class EBFile {
                   final EBFormat defaultFormat) throws EBException {
         super();
         _info = new FileInfo();
+        _channel = new BookChannel(_info);
 
         String ebzName = name + ".ebz";
         String orgName = name + ".org";
@@ -119,8 +143,22 @@ public class EBFile {
         if (!_info.getFile().canRead()) {
             throw new EBException(EBException.CANT_READ_FILE, _info.getPath());
         }
+        _source = _info.getFile();
+        File sidecar = Sidecar.getFile(_source);
+        EBFormat sidecarFormat = Sidecar.check(sidecar, _source);
+        if (sidecarFormat != null) {
+            _info.setFile(sidecar);
+            _info.setFormat(sidecarFormat);
+            _sidecar = true;
+        }
         try (BookInputStream bis = getInputStream()) {
             bis.initFileInfo();
+            if (_sidecar && sidecarFormat == EBFormat.FORMAT_PLAIN) {
+                _info.setFileSize(_info.getRealFileSize() - Sidecar.TRAILER_SIZE);
+            }
+        } finally {
+            // do not hold a descriptor for files that are never read again
+            _info.closeChannel();
         }
     }
 
@@ -180,6 +218,30 @@ public class EBFile {
         return _info.getFile();
     }
 
+    /**
+     * Returns the file found in the directory.
+     * <p>
+     * This is the same as {@link #getFile()} unless a sidecar is read
+     * instead of the file.
+     * </p>
+     *
+     * @return file.
+     * @see Sidecar
+     */
+    public File getSourceFile() {
+        return _source;
+    }
+
+    /**
+     * Returns whether a sidecar is read instead of the file.
+     *
+     * @return true if the decoded data is read from a sidecar.
+     * @see Sidecar
+     */
+    public boolean isSidecar() {
+        return _sidecar;
+    }
+
     /**
      * Return a path name of this file object.
      *
@@ -213,6 +275,10 @@ public class EBFile {
 
     /**
      * Set compression configuration of S-EBXA.
+     * <p>
+     * This is ignored when a sidecar is read, since it holds the decoded
+     * article.
+     * </p>
      *
      * @param index start of index of compressed article data.
      * @param base  base position of compressed article data.
@@ -220,12 +286,303 @@ public class EBFile {
      * @param end end position of article.
      */
     public void setSEBXAInfo(final long index, final long base, final long start, final long end) {
+        _sebxa = true;
+        if (_sidecar) {
+            return;
+        }
         _info.setSebxaIndexPosition(index);
         _info.setSebxaBasePosition(base);
         _info.setSebxaStartPosition(start);
         _info.setSebxaEndPosition(end);
+        _info.setSebxaSliceTable(null);
+        _info.setResidentFile(null);
         _info.setFileSize(end);
+        _info.setSliceSize(SEBXAInputStream.SEBXA_SLICE_SIZE);
         _info.setFormat(EBFormat.FORMAT_SEBXA);
+        // slices decoded with the previous format are no longer valid
+        _info.invalidateCaches();
+        _channel.clear();
+    }
+
+    /**
+     * Returns whether this file is an S-EBXA compressed text.
+     * <p>
+     * This is also true for a sidecar of the text, which holds the decoded
+     * article but still the S-EBXA entries in its index table.
+     * </p>
+     *
+     * @return true if {@link #setSEBXAInfo(long, long, long, long)} has been called.
+     */
+    boolean isSEBXA() {
+        return _sebxa;
+    }
+
+    /**
+     * Returns whether this file is read through a memory mapping.
+     *
+     * @return true if memory mapped.
+     */
+    public boolean isMemoryMapped() {
+        return _info.isMemoryMapped();
+    }
+
+    /**
+     * Set whether this file is read through a memory mapping.
+     * <p>
+     * A mapped file is served from the OS page cache without a system call
+     * per page. Files larger than 2 GB are mapped as multiple segments.
+     * </p>
+     *
+     * @param mapped true to map the file.
+     */
+    public void setMemoryMapped(final boolean mapped) {
+        _info.setMemoryMapped(mapped);
+        _channel.clear();
+    }
+
+    /**
+     * Returns the cache of decoded pages used by this file.
+     *
+     * @return page cache, or null if caching is disabled.
+     */
+    public PageCache getPageCache() {
+        return _info.getPageCache();
+    }
+
+    /**
+     * Set the cache of decoded pages used by this file.
+     * <p>
+     * Only compressed files use the cache. A cache with size limit 0
+     * disables caching.
+     * </p>
+     *
+     * @param cache page cache, or null to use the global cache.
+     * @see PageCache#getDefault()
+     */
+    public void setPageCache(final PageCache cache) {
+        _info.setPageCache(cache);
+    }
+
+    /**
+     * Returns the cache of compressed slices used by this file.
+     *
+     * @return slice cache, or null if caching is disabled.
+     */
+    public SliceCache getSliceCache() {
+        return _info.getSliceCache();
+    }
+
+    /**
+     * Set the cache of compressed slices used by this file.
+     * <p>
+     * Only EBZIP and EPWING files use the cache, below the page cache of
+     * decoded slices. A cache with size limit 0 disables caching.
+     * </p>
+     *
+     * @param cache slice cache, or null to use the global cache.
+     * @see SliceCache#getDefault()
+     */
+    public void setSliceCache(final SliceCache cache) {
+        _info.setSliceCache(cache);
+    }
+
+    /**
+     * Returns the number of slices decoded ahead on sequential reads.
+     *
+     * @return number of slices, or 0 if disabled.
+     */
+    public int getReadAhead() {
+        return _info.getReadAhead();
+    }
+
+    /**
+     * Set the number of slices decoded ahead on sequential reads.
+     * <p>
+     * When a stream of a compressed file reads slices in order, the
+     * following slices are decoded on background threads into the page
+     * cache, so that decompression overlaps with the processing of the
+     * text. Read-ahead has no effect when the page cache is disabled.
+     * The setting applies to streams opened afterwards.
+     * </p>
+     *
+     * @param slices number of slices, or 0 to disable.
+     * @see BookInputStream#setReadAhead(int)
+     */
+    public void setReadAhead(final int slices) {
+        if (slices < 0) {
+            throw new IllegalArgumentException("slices must not be negative: " + slices);
+        }
+        _info.setReadAhead(slices);
+    }
+
+    /**
+     * Returns whether the decoded data of this file is held in memory.
+     *
+     * @return true if resident.
+     */
+    public boolean isResident() {
+        return _info.getResidentFile() != null;
+    }
+
+    /**
+     * Returns the size of the decoded data of this file held in memory.
+     *
+     * @return resident size in bytes, or 0 if not resident.
+     */
+    public long getResidentSize() {
+        MappedFile resident = _info.getResidentFile();
+        if (resident == null) {
+            return 0L;
+        }
+        return resident.size();
+    }
+
+    /**
+     * Decodes the whole file into memory.
+     * <p>
+     * The data is decoded in chunks in parallel on the pool and held in
+     * direct buffers outside the heap, bypassing the page and slice
+     * caches. All reads are then served from memory without file I/O or
+     * decompression. If the direct buffers cannot be allocated, the file
+     * is read as before.
+     * </p>
+     *
+     * @param pool pool decoding the file.
+     * @return resident size in bytes, or 0 if the data could not be held.
+     * @exception EBException if the file could not be read.
+     */
+    public long loadResident(final ForkJoinPool pool) throws EBException {
+        if (isResident()) {
+            return getResidentSize();
+        }
+        long size = _channel.size();
+        ByteBuffer[] segments = new ByteBuffer[MappedFile.getSegmentCount(size)];
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                long len = Math.min(MappedFile.SEGMENT_SIZE, size - (long)i * MappedFile.SEGMENT_SIZE);
+                segments[i] = ByteBuffer.allocateDirect((int)len);
+            }
+        } catch (OutOfMemoryError e) {
+            // direct memory is exhausted
+            return 0L;
+        }
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        try {
+            for (long pos = 0; pos < size; pos += RESIDENT_CHUNK_SIZE) {
+                long start = pos;
+                int len = (int)Math.min(RESIDENT_CHUNK_SIZE, size - pos);
+                tasks.add(pool.submit(() -> {
+                    byte[] b = new byte[len];
+                    _channel.readFullyUncached(start, b, 0, len);
+                    ByteBuffer buf = segments[(int)(start / MappedFile.SEGMENT_SIZE)].duplicate();
+                    buf.position((int)(start % MappedFile.SEGMENT_SIZE));
+                    buf.put(b);
+                    return null;
+                }));
+            }
+            for (ForkJoinTask<Void> task : tasks) {
+                TaskUtil.join(task);
+            }
+        } finally {
+            for (ForkJoinTask<Void> task : tasks) {
+                task.cancel(false);
+                task.quietlyJoin();
+            }
+        }
+        _info.setResidentFile(new MappedFile(segments, size));
+        _channel.clear();
+        _info.closeChannel();
+        return size;
+    }
+
+    /**
+     * Releases the decoded data held in memory; the file is read again.
+     */
+    public void releaseResident() {
+        _info.setResidentFile(null);
+        _channel.clear();
+    }
+
+    /**
+     * Closes the channel shared by streams of this file and releases the
+     * decoded data held in memory and the slices of this file in the page
+     * and slice caches.
+     * <p>
+     * The file is reopened when it is read again.
+     * </p>
+     */
+    @Override
+    public void close() {
+        _info.setResidentFile(null);
+        _info.invalidateCaches();
+        _channel.clear();
+        _info.closeChannel();
+        _info.getInflaterPool().clear();
+    }
+
+    /**
+     * Returns the thread-safe positional reader of this file.
+     * <p>
+     * The reader can be shared by any number of threads, unlike the
+     * streams returned by {@link #getInputStream()}.
+     * </p>
+     *
+     * @return positional reader.
+     */
+    public BookChannel getBookChannel() {
+        return _channel;
+    }
+
+    /**
+     * Reads up to len bytes at the specified position.
+     * <p>
+     * This method is safe to call from multiple threads concurrently.
+     * </p>
+     *
+     * @param pos position in the data.
+     * @param b destination buffer.
+     * @param off offset in the buffer.
+     * @param len maximum number of bytes to read.
+     * @return number of bytes read, or -1 if pos is at or past the end.
+     * @exception EBException if a read error occurs.
+     * @see BookChannel#readAt(long, byte[], int, int)
+     */
+    public int readAt(final long pos, final byte[] b, final int off, final int len) throws EBException {
+        return _channel.readAt(pos, b, off, len);
+    }
+
+    /**
+     * Reads bytes at the specified position into a buffer.
+     * <p>
+     * This method is safe to call from multiple threads concurrently.
+     * </p>
+     *
+     * @param pos position in the data.
+     * @param dst destination buffer.
+     * @return number of bytes read, or -1 if pos is at or past the end.
+     * @exception EBException if a read error occurs.
+     * @see BookChannel#readAt(long, ByteBuffer)
+     */
+    public int readAt(final long pos, final ByteBuffer dst) throws EBException {
+        return _channel.readAt(pos, dst);
+    }
+
+    /**
+     * Transfers bytes at the specified position to a channel.
+     * <p>
+     * Uncompressed files are sent with FileChannel#transferTo; compressed
+     * files are streamed one slice at a time.
+     * </p>
+     *
+     * @param pos position in the data.
+     * @param len maximum number of bytes to transfer.
+     * @param target destination channel.
+     * @return number of bytes written to the target.
+     * @exception EBException if a read or write error occurs.
+     * @see BookChannel#transferTo(long, long, WritableByteChannel)
+     */
+    public long transferTo(final long pos, final long len, final WritableByteChannel target) throws EBException {
+        return _channel.transferTo(pos, len, target);
     }
 
     /**
@@ -235,21 +592,40 @@ public class EBFile {
      * @exception EBException if file read error happended.
      */
     public BookInputStream getInputStream() throws EBException {
+        return newInputStream(_info);
+    }
+
+    /**
+     * Returns InputStream object of a file.
+     *
+     * @param info file information.
+     * @return InputStream of data.
+     * @exception EBException if file read error happended.
+     */
+    static BookInputStream newInputStream(final FileInfo info) throws EBException {
+        MappedFile resident = info.getResidentFile();
+        if (resident != null) {
+            return new MappedInputStream(info, resident);
+        }
         BookInputStream bis;
-        switch (_info.getFormat()) {
+        switch (info.getFormat()) {
             case FORMAT_EBZIP:
-                bis = new EBZipInputStream(_info);
+                bis = new EBZipInputStream(info);
                 break;
             case FORMAT_EPWING:
             case FORMAT_EPWING6:
-                bis = new EPWINGInputStream(_info);
+                bis = new EPWINGInputStream(info);
                 break;
             case FORMAT_SEBXA:
-                bis = new SEBXAInputStream(_info);
+                bis = new SEBXAInputStream(info);
                 break;
             case FORMAT_PLAIN:
             default:
-                bis = new PlainInputStream(_info);
+                if (info.isMemoryMapped()) {
+                    bis = new MappedInputStream(info);
+                } else {
+                    bis = new PlainInputStream(info);
+                }
                 break;
         }
         return bis;
@@ -25,8 +25,6 @@ public class EBZipInputStream extends BookInputStream {
     protected EBZipInputStream(final FileInfo info) throws EBException {
         super(info);
         open();
-        // スライス単位でキャッシュする
-        cache = new byte[info.getSliceSize()];
     }
 
 
@@ -38,14 +36,14 @@ public class EBZipInputStream extends BookInputStream {
     @Override
     protected void initFileInfo() throws EBException {
         try {
-            info.setRealFileSize(stream.length());
+            info.setRealFileSize(info.getChannel().size());
         } catch (IOException e) {
             throw new EBException(EBException.FAILED_READ_FILE, info.getPath(), e);
         }
 
         // read EBZip header
         byte[] b = new byte[EBZipConstants.EBZIP_HEADER_SIZE];
-        readRawFully(b, 0, b.length);
+        readRawFully(0, b, 0, b.length);
 
         int mode = b[5] >>> 4;
         info.setZipLevel(b[5] & 0x0f);
@@ -72,9 +70,49 @@ public class EBZipInputStream extends BookInputStream {
         if (mode != 1 && mode != 2) {
             throw new EBException(EBException.UNEXP_FILE, info.getPath());
         }
+        _loadSliceTable();
         super.initFileInfo();
     }
 
+    /**
+     * Load the slice index into memory.
+     * <p>
+     * Indexes of 2 to 4 bytes are stored as an array of positions, and
+     * 5-byte indexes are kept packed. A table that does not fit in an
+     * array is not loaded, and the index is read for each slice instead.
+     * </p>
+     *
+     * @exception EBException if file read error is happened.
+     */
+    private void _loadSliceTable() throws EBException {
+        int indexSize = info.getZipIndexSize();
+        long count = (info.getFileSize() + info.getSliceSize() - 1) / info.getSliceSize() + 1;
+        if (count * indexSize > Integer.MAX_VALUE - 8) {
+            return;
+        }
+        byte[] b = new byte[(int)(count * indexSize)];
+        readRawFully(EBZipConstants.EBZIP_HEADER_SIZE, b, 0, b.length);
+        if (indexSize == 5) {
+            info.setZipPackedSliceTable(b);
+            return;
+        }
+        long[] table = new long[(int)count];
+        for (int i=0, off=0; i<table.length; i++, off+=indexSize) {
+            switch (indexSize) {
+                case 2:
+                    table[i] = ByteUtil.getInt2(b, off);
+                    break;
+                case 3:
+                    table[i] = ByteUtil.getInt3(b, off);
+                    break;
+                default:
+                    table[i] = ByteUtil.getLong4(b, off);
+                    break;
+            }
+        }
+        info.setZipSliceTable(table);
+    }
+
     /**
      * Returns compression level of the file.
      *
@@ -121,59 +159,12 @@ public class EBZipInputStream extends BookInputStream {
             if (cachePos < 0
                 || filePos < cachePos
                 || cachePos + info.getSliceSize() <= filePos) {
+                // 圧縮スライスをデコードしてキャッシュに読み込む
+                loadCache(filePos / info.getSliceSize(), info.getSliceSize());
+
                 // キャッシュのデータ位置
                 // filePosの位置が含まれるスライスの先頭位置
                 cachePos = filePos - (filePos % info.getSliceSize());
-
-                // 圧縮されたスライスのインデックスデータの位置
-                // (スライスオフセット * インデックスサイズ) + ヘッダサイズ
-                long pos = filePos / info.getSliceSize() * info.getZipIndexSize()
-                    + EBZipConstants.EBZIP_HEADER_SIZE;
-                try {
-                    stream.seek(pos);
-                } catch (IOException e) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                }
-                byte[] buf = new byte[info.getZipIndexSize()*2];
-                readRawFully(buf, 0, buf.length);
-
-                // スライス位置の取得
-                long slicePos = 0L;
-                long nextSlicePos = 0L;
-                switch (info.getZipIndexSize()) {
-                    case 2:
-                        slicePos = ByteUtil.getInt2(buf, 0);
-                        nextSlicePos = ByteUtil.getInt2(buf, 2);
-                        break;
-                    case 3:
-                        slicePos = ByteUtil.getInt3(buf, 0);
-                        nextSlicePos = ByteUtil.getInt3(buf, 3);
-                        break;
-                    case 4:
-                        slicePos = ByteUtil.getLong4(buf, 0);
-                        nextSlicePos = ByteUtil.getLong4(buf, 4);
-                        break;
-                    case 5:
-                        slicePos = ByteUtil.getLong5(buf, 0);
-                        nextSlicePos = ByteUtil.getLong5(buf, 5);
-                        break;
-                    default:
-                        break;
-                }
-
-                // 圧縮されたスライスのサイズ
-                int sliceSize = (int)(nextSlicePos - slicePos);
-                if (sliceSize <= 0 || info.getSliceSize() < sliceSize) {
-                    return -1;
-                }
-
-                // 圧縮スライスをデコードしてキャッシュに読み込む
-                try {
-                    stream.seek(slicePos);
-                } catch (IOException e) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                }
-                _decode(sliceSize);
             }
 
             // キャッシュからデータの取得
@@ -193,27 +184,84 @@ public class EBZipInputStream extends BookInputStream {
     }
 
     /**
-     * Decode.
+     * Read positions of a slice and the next slice from the slice index.
      *
-     * @param size slice size for compression.
+     * @param index slice index.
+     * @return positions of the slice and the next slice.
      * @exception EBException if file read error is happened.
      */
-    private void _decode(final int size) throws EBException {
+    private long[] _readSliceIndex(final long index) throws EBException {
+        // 圧縮されたスライスのインデックスデータの位置
+        // (スライスオフセット * インデックスサイズ) + ヘッダサイズ
+        long pos = index * info.getZipIndexSize() + EBZipConstants.EBZIP_HEADER_SIZE;
+        byte[] buf = new byte[info.getZipIndexSize()*2];
+        readRawFully(pos, buf, 0, buf.length);
+
+        long[] ret = new long[2];
+        switch (info.getZipIndexSize()) {
+            case 2:
+                ret[0] = ByteUtil.getInt2(buf, 0);
+                ret[1] = ByteUtil.getInt2(buf, 2);
+                break;
+            case 3:
+                ret[0] = ByteUtil.getInt3(buf, 0);
+                ret[1] = ByteUtil.getInt3(buf, 3);
+                break;
+            case 4:
+                ret[0] = ByteUtil.getLong4(buf, 0);
+                ret[1] = ByteUtil.getLong4(buf, 4);
+                break;
+            case 5:
+                ret[0] = ByteUtil.getLong5(buf, 0);
+                ret[1] = ByteUtil.getLong5(buf, 5);
+                break;
+            default:
+                break;
+        }
+        return ret;
+    }
+
+    /**
+     * Decode a slice.
+     *
+     * @param index slice index.
+     * @param out buffer for the decoded slice.
+     * @exception EBException if file read error is happened.
+     */
+    @Override
+    protected void decodeSlice(final long index, final byte[] out) throws EBException {
+        // スライス位置の取得
+        long slicePos = info.getZipSlicePosition(index);
+        long nextSlicePos = info.getZipSlicePosition(index + 1);
+        if (slicePos < 0 || nextSlicePos < 0) {
+            long[] pos = _readSliceIndex(index);
+            slicePos = pos[0];
+            nextSlicePos = pos[1];
+        }
+
+        // 圧縮されたスライスのサイズ
+        int size = (int)(nextSlicePos - slicePos);
+        if (size <= 0 || info.getSliceSize() < size) {
+            throw new EBException(EBException.UNEXP_FILE, info.getPath());
+        }
+
         if (size == info.getSliceSize()) {
-            // 圧縮されていないのでそのままキャッシュに読み込む
-            readRawFully(cache, 0, size);
+            // 圧縮されていないのでスライスキャッシュ経由でそのまま読み込む
+            readSlice(index, slicePos, out, size);
         } else {
-            byte[] b = new byte[size];
-            Inflater inf = new Inflater();
+            InflaterPool pool = info.getInflaterPool();
+            InflaterPool.Entry entry = pool.borrow(size);
             try {
-                // 圧縮されたスライスをキャッシュに展開する
-                readRawFully(b, 0, size);
+                // 圧縮されたスライスを展開する
+                byte[] b = entry.getBuffer();
+                readSlice(index, slicePos, b, size);
+                Inflater inf = entry.getInflater();
                 inf.setInput(b, 0, size);
-                inf.inflate(cache, 0, info.getSliceSize());
+                inf.inflate(out, 0, info.getSliceSize());
             } catch (DataFormatException e) {
                 throw new EBException(EBException.UNEXP_FILE, info.getPath(), e);
             } finally {
-                inf.end();
+                pool.release(entry);
             }
         }
     }
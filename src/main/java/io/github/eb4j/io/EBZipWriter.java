@@ -0,0 +1,337 @@
+package io.github.eb4j.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import io.github.eb4j.EBException;
+import io.github.eb4j.util.TaskUtil;
+
+/**
+ * Writer of EBZIP compressed files.
+ * <p>
+ * The data of a source file is read through its {@link BookChannel},
+ * bypassing the page and slice caches, so PLAIN, EBZIP, EPWING and S-EBXA
+ * files are all accepted and written as EBZIP, or uncompressed back to a
+ * PLAIN file. Slices are read and deflated in parallel on a fork-join pool and written in order; a slice
+ * that does not shrink is stored as is, like the original ebzip command.
+ * </p>
+ * <p>
+ * The S-EBXA text of an EB book is written decoded, so the S-EBXA index
+ * and base entries are removed from the index table on its first page;
+ * otherwise a reader of the written file would decode it a second time.
+ * An S-EBXA text without these entries on its first page is refused.
+ * </p>
+ * <p>
+ * A writer holds no state between calls and may be shared by threads.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+public final class EBZipWriter {
+
+    /** Mode of files whose size fits in 4 bytes. */
+    private static final int MODE_EBZIP1 = 1;
+    /** Mode of files whose size needs 5 bytes. */
+    private static final int MODE_EBZIP2 = 2;
+    /** Index ID of the base of S-EBXA compressed data. */
+    private static final int SEBXA_BASE = 0x21;
+    /** Index ID of the index of S-EBXA compressed data. */
+    private static final int SEBXA_INDEX = 0x22;
+    /** Size of an entry of the index table. */
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    /** Compression level. */
+    private final int _level;
+    /** Pool deflating slices. */
+    private final ForkJoinPool _pool;
+
+
+    /**
+     * Build a writer with the default compression level on the common pool.
+     */
+    public EBZipWriter() {
+        this(EBZipConstants.EBZIP_DEFAULT_LEVEL);
+    }
+
+    /**
+     * Build a writer on the common pool.
+     *
+     * @param level compression level from 0 to
+     * {@link EBZipConstants#EBZIP_MAX_LEVEL}; the slice size is
+     * {@link BookInputStream#PAGE_SIZE} shifted left by the level.
+     */
+    public EBZipWriter(final int level) {
+        this(level, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Build a writer.
+     *
+     * @param level compression level from 0 to
+     * {@link EBZipConstants#EBZIP_MAX_LEVEL}.
+     * @param pool pool deflating slices.
+     */
+    public EBZipWriter(final int level, final ForkJoinPool pool) {
+        super();
+        if (level < 0 || level > EBZipConstants.EBZIP_MAX_LEVEL) {
+            throw new IllegalArgumentException("level must be between 0 and "
+                    + EBZipConstants.EBZIP_MAX_LEVEL + ": " + level);
+        }
+        _level = level;
+        _pool = pool;
+    }
+
+
+    /**
+     * Returns the compression level.
+     *
+     * @return compression level.
+     */
+    public int getLevel() {
+        return _level;
+    }
+
+    /**
+     * Compress a file into EBZIP.
+     *
+     * @param source source file of any format.
+     * @param target file to write.
+     * @return size of the written file.
+     * @exception EBException if the source could not be read or the target
+     * could not be written.
+     */
+    public long zip(final EBFile source, final File target) throws EBException {
+        int sliceSize = BookInputStream.PAGE_SIZE << _level;
+        BookChannel channel = source.getBookChannel();
+        byte[] indexPage = _getIndexPage(source);
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long count = (size + sliceSize - 1) / sliceSize;
+            int indexSize = getIndexSize(size);
+            if ((count + 1) * indexSize > Integer.MAX_VALUE - 8) {
+                throw new EBException(EBException.UNEXP_FILE, source.getPath());
+            }
+            byte[] index = new byte[(int)((count + 1) * indexSize)];
+            long pos = EBZipConstants.EBZIP_HEADER_SIZE + index.length;
+            long limit = 1L << (indexSize * 8);
+
+            // slices are read and deflated ahead of writing, at most depth at a time
+            int depth = Math.max(2, _pool.getParallelism() * 4);
+            ArrayDeque<ForkJoinTask<byte[][]>> pending = new ArrayDeque<>(depth);
+            Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+            Adler32 adler = new Adler32();
+            long written = 0L;
+            try {
+                for (long i = 0; i < count || !pending.isEmpty(); ) {
+                    if (i < count && pending.size() < depth) {
+                        long slicePos = i * sliceSize;
+                        int len = (int)Math.min(sliceSize, size - slicePos);
+                        pending.addLast(_pool.submit(() -> {
+                            byte[] slice = new byte[sliceSize];
+                            channel.readFullyUncached(slicePos, slice, 0, len);
+                            if (slicePos == 0 && indexPage != null) {
+                                System.arraycopy(indexPage, 0, slice, 0, Math.min(len, indexPage.length));
+                            }
+                            return new byte[][] {slice, _deflate(slice, deflaters)};
+                        }));
+                        i++;
+                        continue;
+                    }
+                    byte[][] slice = TaskUtil.join(pending.removeFirst());
+                    long len = Math.min(sliceSize, size - written * sliceSize);
+                    adler.update(slice[0], 0, (int)len);
+                    byte[] b = slice[1];
+                    if (pos + b.length >= limit) {
+                        // incompressible data overflowed the index width
+                        throw new EBException(EBException.UNEXP_FILE, source.getPath());
+                    }
+                    _putLong(index, (int)(written * indexSize), indexSize, pos);
+                    _write(out, b, pos);
+                    pos += b.length;
+                    written++;
+                }
+            } finally {
+                for (ForkJoinTask<byte[][]> task : pending) {
+                    task.cancel(false);
+                    task.quietlyJoin();
+                }
+                for (Deflater deflater : deflaters) {
+                    deflater.end();
+                }
+            }
+            _putLong(index, (int)(count * indexSize), indexSize, pos);
+
+            byte[] header = new byte[EBZipConstants.EBZIP_HEADER_SIZE];
+            System.arraycopy("EBZip".getBytes(StandardCharsets.US_ASCII), 0, header, 0, 5);
+            int mode = MODE_EBZIP1;
+            if (size >= (1L << 32)) {
+                mode = MODE_EBZIP2;
+            }
+            header[5] = (byte)((mode << 4) | _level);
+            _putLong(header, 9, 5, size);
+            _putLong(header, 14, 4, adler.getValue());
+            _putLong(header, 18, 4, source.getFile().lastModified() / 1000);
+            _write(out, header, 0);
+            _write(out, index, EBZipConstants.EBZIP_HEADER_SIZE);
+            return pos;
+        } catch (IOException e) {
+            throw new EBException(EBException.FAILED_WRITE_FILE, target.getPath(), e);
+        }
+    }
+
+    /**
+     * Uncompress a file into a PLAIN file.
+     *
+     * @param source source file of any format.
+     * @param target file to write.
+     * @return size of the written file.
+     * @exception EBException if the source could not be read or the target
+     * could not be written.
+     */
+    public long unzip(final EBFile source, final File target) throws EBException {
+        byte[] indexPage = _getIndexPage(source);
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long size = source.getBookChannel().size();
+            long n = source.transferTo(0, size, out);
+            if (n != size) {
+                throw new EBException(EBException.FAILED_WRITE_FILE, target.getPath());
+            }
+            if (indexPage != null) {
+                _write(out, Arrays.copyOf(indexPage, (int)Math.min(size, indexPage.length)), 0);
+            }
+            return n;
+        } catch (IOException e) {
+            throw new EBException(EBException.FAILED_WRITE_FILE, target.getPath(), e);
+        }
+    }
+
+    /**
+     * Returns the index page to write for an S-EBXA text.
+     * <p>
+     * The S-EBXA index and base entries are removed from the index table
+     * on the first page, so that the written text is read as it is.
+     * </p>
+     *
+     * @param source source file.
+     * @return rewritten first page, or null if the source is not an S-EBXA text.
+     * @exception EBException if the source could not be read, or its first
+     * page has no index table with the S-EBXA entries.
+     */
+    private static byte[] _getIndexPage(final EBFile source) throws EBException {
+        if (!source.isSEBXA()) {
+            return null;
+        }
+        byte[] b = new byte[BookInputStream.PAGE_SIZE];
+        source.getBookChannel().readFullyUncached(0, b, 0, b.length);
+        int count = b[1] & 0xff;
+        if (count >= BookInputStream.PAGE_SIZE / INDEX_ENTRY_SIZE - 1) {
+            throw new EBException(EBException.UNEXP_FILE, source.getPath());
+        }
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int off = INDEX_ENTRY_SIZE + i * INDEX_ENTRY_SIZE;
+            int id = b[off] & 0xff;
+            if (id != SEBXA_BASE && id != SEBXA_INDEX) {
+                System.arraycopy(b, off, b, INDEX_ENTRY_SIZE + kept * INDEX_ENTRY_SIZE, INDEX_ENTRY_SIZE);
+                kept++;
+            }
+        }
+        if (count - kept != 2) {
+            // the written data would be read as S-EBXA again
+            throw new EBException(EBException.UNEXP_FILE, source.getPath());
+        }
+        Arrays.fill(b, INDEX_ENTRY_SIZE + kept * INDEX_ENTRY_SIZE,
+                INDEX_ENTRY_SIZE + count * INDEX_ENTRY_SIZE, (byte)0);
+        b[1] = (byte)kept;
+        return b;
+    }
+
+    /**
+     * Returns the width of slice index entries for a file size.
+     *
+     * @param size uncompressed file size.
+     * @return width of an index entry in bytes.
+     */
+    static int getIndexSize(final long size) {
+        if (size < (1L << 16)) {
+            return 2;
+        } else if (size < (1L << 24)) {
+            return 3;
+        } else if (size < (1L << 32)) {
+            return 4;
+        }
+        return 5;
+    }
+
+    /**
+     * Deflate a slice.
+     *
+     * @param slice slice data.
+     * @param deflaters idle deflaters to reuse.
+     * @return deflated slice, or the slice itself if it does not shrink.
+     */
+    private static byte[] _deflate(final byte[] slice, final Queue<Deflater> deflaters) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater();
+        }
+        try {
+            byte[] b = new byte[slice.length];
+            deflater.setInput(slice);
+            deflater.finish();
+            int n = deflater.deflate(b, 0, b.length);
+            if (!deflater.finished() || n >= slice.length) {
+                return slice;
+            }
+            return Arrays.copyOf(b, n);
+        } finally {
+            deflater.reset();
+            deflaters.add(deflater);
+        }
+    }
+
+    /**
+     * Write a byte array at a position.
+     *
+     * @param out channel to write.
+     * @param b data.
+     * @param pos position.
+     * @exception IOException if an I/O error occurs.
+     */
+    private static void _write(final FileChannel out, final byte[] b, final long pos) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while (buf.hasRemaining()) {
+            out.write(buf, pos + buf.position());
+        }
+    }
+
+    /**
+     * Store a value in big endian.
+     *
+     * @param b destination.
+     * @param off offset.
+     * @param len number of bytes.
+     * @param value value.
+     */
+    private static void _putLong(final byte[] b, final int off, final int len, final long value) {
+        for (int i = 0; i < len; i++) {
+            b[off + i] = (byte)(value >>> ((len - 1 - i) * 8));
+        }
+    }
+}
+
+// end of EBZipWriter.java
@@ -14,6 +14,14 @@ import io.github.eb4j.util.ByteUtil;
  */
 public class EPWINGInputStream extends BookInputStream {
 
+    /** スライスキャッシュに格納する圧縮ページの最大サイズ */
+    private static final int MAX_CACHED_PAGE_SIZE = PAGE_SIZE * 4;
+    /** 一度に読み込む圧縮ページの最大サイズ (これを超える場合は分割して読み込む) */
+    private static final int MAX_PAGE_READ_SIZE = PAGE_SIZE * 16;
+
+    /** 圧縮データの読み込みバッファ */
+    private byte[] _inBuf = new byte[PAGE_SIZE];
+
     /**
      * Constructor.
      *
@@ -23,7 +31,6 @@ public class EPWINGInputStream extends BookInputStream {
     protected EPWINGInputStream(final FileInfo info) throws EBException {
         super(info);
         open();
-        cache = new byte[PAGE_SIZE];
     }
 
 
@@ -35,7 +42,7 @@ public class EPWINGInputStream extends BookInputStream {
     @Override
     protected void initFileInfo() throws EBException {
         try {
-            info.setRealFileSize(stream.length());
+            info.setRealFileSize(info.getChannel().size());
         } catch (IOException e) {
             throw new EBException(EBException.FAILED_READ_FILE, info.getPath(), e);
         }
@@ -47,7 +54,7 @@ public class EPWINGInputStream extends BookInputStream {
         if (info.getFormat() == EBFormat.FORMAT_EPWING6) {
             len += 16;
         }
-        readRawFully(b, 0, len);
+        readRawFully(0, b, 0, len);
 
         info.setEpwingIndexPosition(ByteUtil.getLong4(b, 0));
         info.setEpwingIndexSize(ByteUtil.getLong4(b, 4));
@@ -59,12 +66,7 @@ public class EPWINGInputStream extends BookInputStream {
 
         // ファイルサイズの取得
         long pos = info.getEpwingIndexPosition() + (info.getEpwingIndexSize() - 36) / 36 * 36;
-        try {
-            stream.seek(pos);
-        } catch (IOException e) {
-            throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-        }
-        readRawFully(b, 0, 36);
+        readRawFully(pos, b, 0, 36);
         info.setFileSize((info.getEpwingIndexSize() / 36) * (PAGE_SIZE * 16));
         for (int i=1; i<16; i++) {
             int p = i * 2 + 4;
@@ -89,15 +91,12 @@ public class EPWINGInputStream extends BookInputStream {
         if (info.getFormat() == EBFormat.FORMAT_EPWING6) {
             list = new ArrayList<>(leaf32 + leaf16 + 256 + 1);
             len = b.length - (b.length % 6);
-            try {
-                stream.seek(info.getEpwingFrequencyPosition());
-            } catch (IOException e) {
-                throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-            }
-            readRawFully(b, 0, len);
+            pos = info.getEpwingFrequencyPosition();
+            readRawFully(pos, b, 0, len);
             for (int i=0, off=0; i<leaf32; i++, off+=6) {
                 if (off >= len) {
-                    readRawFully(b, 0, len);
+                    pos += len;
+                    readRawFully(pos, b, 0, len);
                     off = 0;
                 }
                 long value = ByteUtil.getLong4(b, off);
@@ -110,15 +109,12 @@ public class EPWINGInputStream extends BookInputStream {
 
         // 16bitデータのハフマンノード作成
         len = b.length - (b.length % 4);
-        try {
-            stream.seek(info.getEpwingFrequencyPosition() + leaf32 * 6L);
-        } catch (IOException e) {
-            throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-        }
-        readRawFully(b, 0, len);
+        pos = info.getEpwingFrequencyPosition() + leaf32 * 6L;
+        readRawFully(pos, b, 0, len);
         for (int i=0, off=0; i<leaf16; i++, off+=4) {
             if (off >= b.length) {
-                readRawFully(b, 0, len);
+                pos += len;
+                readRawFully(pos, b, 0, len);
                 off = 0;
             }
             long value = ByteUtil.getInt2(b, off);
@@ -127,12 +123,8 @@ public class EPWINGInputStream extends BookInputStream {
         }
 
         // 8bitデータのハフマンノード作成
-        try {
-            stream.seek(info.getEpwingFrequencyPosition() + leaf32 * 6L + leaf16 * 4L);
-        } catch (IOException e) {
-            throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-        }
-        readRawFully(b, 0, b.length);
+        pos = info.getEpwingFrequencyPosition() + leaf32 * 6L + leaf16 * 4L;
+        readRawFully(pos, b, 0, b.length);
         for (int i=0, off=0; i<256; i++, off+=2) {
             int freq = ByteUtil.getInt2(b, off);
             list.add(new HuffmanNode(i, freq, HuffmanNode.LEAF_8));
@@ -141,12 +133,71 @@ public class EPWINGInputStream extends BookInputStream {
         // EOFデータのハフマンノード作成
         list.add(new HuffmanNode(256, 1, HuffmanNode.LEAF_EOF));
 
-        // ハフマンツリーの作成
+        // ハフマンツリーとデコードテーブルの作成
         info.setEpwingRootNode(HuffmanNode.makeTree(list));
+        info.setEpwingTable(new HuffmanTable(info.getEpwingRootNode()));
+
+        _loadPagePositions();
 
         super.initFileInfo();
     }
 
+    /**
+     * インデックスを読み込み、圧縮ページの位置テーブルを作成します。
+     * <p>
+     * インデックスは16ページごとに36バイトのブロックで、先頭4バイトが基準位置、
+     * 続く2バイトずつが各ページの基準位置からのオフセットです。
+     * 配列に収まらない場合はテーブルを作成せず、ページごとにインデックスを読み込みます。
+     * </p>
+     *
+     * @exception EBException 入出力エラーが発生した場合
+     */
+    private void _loadPagePositions() throws EBException {
+        long pages = (info.getFileSize() + PAGE_SIZE - 1) / PAGE_SIZE;
+        long blocks = (pages + 15) / 16;
+        if (blocks * 36 > Integer.MAX_VALUE - 8) {
+            return;
+        }
+        byte[] b = new byte[(int)(blocks * 36)];
+        readRawFully(info.getEpwingIndexPosition(), b, 0, b.length);
+        long[] positions = new long[(int)pages];
+        for (int i=0; i<positions.length; i++) {
+            int off = i / 16 * 36;
+            positions[i] = ByteUtil.getLong4(b, off) + ByteUtil.getInt2(b, off + 4 + (i % 16) * 2);
+        }
+        info.setEpwingPagePositions(positions);
+    }
+
+    /**
+     * 圧縮ページの終わりの位置を返します。
+     * <p>
+     * The page ends at the start of the next page. The last page ends at
+     * the nearest of the index, the frequency table and the end of the
+     * file following it.
+     * </p>
+     *
+     * @param index ページ番号 (0から始まる)
+     * @param rawPos 圧縮ページの位置
+     * @return 圧縮ページの終わりの位置 (不明な場合は-1)
+     */
+    private long _getPageEnd(final long index, final long rawPos) {
+        long nextPos = info.getEpwingPagePosition(index + 1);
+        if (nextPos > rawPos) {
+            return nextPos;
+        }
+        if (nextPos >= 0 || (index + 1) * PAGE_SIZE < info.getFileSize()) {
+            // 次のページ位置が読み込まれていない
+            return -1L;
+        }
+        long endPos = info.getRealFileSize();
+        for (long pos : new long[] {info.getEpwingIndexPosition(), info.getEpwingFrequencyPosition()}) {
+            if (pos > rawPos && pos < endPos) {
+                endPos = pos;
+            }
+        }
+        return endPos;
+    }
+
     /**
      * EPWING形式のファイルから最大b.lengthバイトのデータをバイト配列に読み込みます。
      *
@@ -172,30 +223,9 @@ public class EPWINGInputStream extends BookInputStream {
             if (cachePos < 0
                 || filePos < cachePos
                 || cachePos + PAGE_SIZE <= filePos) {
-                cachePos = filePos - (filePos % PAGE_SIZE);
-
-                // インデックスの読み込み
-                long pos = info.getEpwingIndexPosition() + filePos / (PAGE_SIZE * 16) * 36;
-                try {
-                    stream.seek(pos);
-                } catch (IOException e) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                }
-                byte[] buf = new byte[36];
-                readRawFully(buf, 0, buf.length);
-
-                // ページ位置の取得
-                int offset = (int)(4 + (filePos / PAGE_SIZE % 16) * 2);
-                long pagePos = (ByteUtil.getLong4(buf, 0)
-                                + ByteUtil.getInt2(buf, offset));
-
                 // 圧縮ページをデコードしてキャッシュに読み込む
-                try {
-                    stream.seek(pagePos);
-                } catch (IOException e) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                }
-                _decode();
+                loadCache(filePos / PAGE_SIZE, PAGE_SIZE);
+                cachePos = filePos - (filePos % PAGE_SIZE);
             }
 
             // キャッシュからデータの取得
@@ -215,100 +245,163 @@ public class EPWINGInputStream extends BookInputStream {
     }
 
     /**
-     * 復号化します。
+     * 指定ページを復号化します。
      *
+     * @param index ページ番号 (0から始まる)
+     * @param out 復号化したページの書き込み先のバッファ
      * @exception EBException 入出力エラーが発生した場合
      */
-    private void _decode() throws EBException {
-        byte[] b = new byte[PAGE_SIZE];
+    @Override
+    protected void decodeSlice(final long index, final byte[] out) throws EBException {
+        byte[] b = _inBuf;
+
+        // ページ位置の取得
+        long rawPos = info.getEpwingPagePosition(index);
+        if (rawPos < 0) {
+            // インデックスの読み込み
+            readRawFully(info.getEpwingIndexPosition() + index / 16 * 36, b, 0, 36);
+            int offset = (int)(4 + (index % 16) * 2);
+            rawPos = ByteUtil.getLong4(b, 0) + ByteUtil.getInt2(b, offset);
+        }
         int inPos = 0;
         int inLen = 0;
         int outPos = 0;
         int outLen = 0;
-        int bitIndex = 7;
+
+        // 次のページまでのデータ (EPWING6では圧縮形式を含む) を一度に読み込む
+        boolean whole = false;
+        long endPos = _getPageEnd(index, rawPos);
+        if (endPos > rawPos && endPos - rawPos <= MAX_PAGE_READ_SIZE) {
+            inLen = (int)(endPos - rawPos);
+            if (b.length < inLen) {
+                b = new byte[inLen];
+                _inBuf = b;
+            }
+            if (inLen <= MAX_CACHED_PAGE_SIZE) {
+                // スライスキャッシュがあればその経由で読み込む
+                readSlice(index, rawPos, b, inLen);
+            } else {
+                readRawFully(rawPos, b, 0, inLen);
+            }
+            whole = true;
+        }
 
         if (info.getFormat() == EBFormat.FORMAT_EPWING6) {
             // 圧縮形式の取得
-            readRawFully(b, 0, 1);
+            if (whole) {
+                inPos = 1;
+            } else {
+                readRawFully(rawPos, b, 0, 1);
+            }
+            rawPos++;
             if ((b[0] & 0xff) != 0) {
                 // 無圧縮なのでそのまま読み込む
-                readRawFully(cache, 0, PAGE_SIZE);
+                if (whole && inLen - inPos >= PAGE_SIZE) {
+                    System.arraycopy(b, inPos, out, 0, PAGE_SIZE);
+                } else {
+                    readRawFully(rawPos, out, 0, PAGE_SIZE);
+                }
                 return;
             }
         }
 
+        HuffmanTable table = info.getEpwingTable();
+        int[] entries = table.getEntries();
+        // 未処理のビット列 (上位ビットから順に使用する)
+        long bitBuf = 0L;
+        int bitCount = 0;
+        boolean eof = false;
         while (outLen < PAGE_SIZE) {
-            HuffmanNode node = info.getEpwingRootNode();
-            while (!node.isLeaf()) {
-                // データがなければ次を読み込む
-                if (inLen <= inPos) {
-                    inLen = readRaw(b, 0, b.length);
-                    if (inLen <=0) {
-                        throw new EBException(EBException.UNEXP_FILE, info.getPath());
+            // 葉ノードに達するまでテーブルを引く
+            int bits = HuffmanTable.ROOT_BITS;
+            int base = 0;
+            int entry;
+            while (true) {
+                if (bitCount < bits && !eof) {
+                    // 64bitのバッファにデータを補充する
+                    while (bitCount <= 56) {
+                        if (inLen <= inPos) {
+                            if (whole) {
+                                eof = true;
+                                break;
+                            }
+                            inLen = readRaw(rawPos, b, 0, b.length);
+                            if (inLen <= 0) {
+                                eof = true;
+                                break;
+                            }
+                            rawPos += inLen;
+                            inPos = 0;
+                        }
+                        bitBuf |= (b[inPos++] & 0xffL) << (56 - bitCount);
+                        bitCount += 8;
                     }
-                    inPos = 0;
                 }
-                int bit = (b[inPos] >>> bitIndex) & 0x01;
-                if (bit == 1) {
-                    node = node.getLeft();
-                } else {
-                    node = node.getRight();
+                entry = entries[base + (int)(bitBuf >>> (64 - bits))];
+                if (entry >= 0) {
+                    bits = entry & 0x0f;
+                } else if (entry == HuffmanTable.INVALID) {
+                    throw new EBException(EBException.UNEXP_FILE, info.getPath());
                 }
-                if (node == null) {
+                // データの終わりを越えて読むことはできない
+                if (bitCount < bits) {
                     throw new EBException(EBException.UNEXP_FILE, info.getPath());
                 }
-
-                if (bitIndex > 0) {
-                    bitIndex--;
-                } else {
-                    bitIndex = 7;
-                    inPos++;
+                bitBuf <<= bits;
+                bitCount -= bits;
+                if (entry >= 0) {
+                    break;
                 }
+                base = ~entry >>> 4;
+                bits = ~entry & 0x0f;
             }
 
-            if (node.getLeafType() == HuffmanNode.LEAF_EOF) {
+            int leaf = entry >>> 4;
+            int value = table.getLeafValue(leaf);
+            int type = table.getLeafType(leaf);
+            if (type == HuffmanNode.LEAF_EOF) {
                 // 残りを埋める
                 if (outLen < PAGE_SIZE) {
-                    Arrays.fill(cache, outPos, cache.length, (byte)'\0');
+                    Arrays.fill(out, outPos, out.length, (byte)'\0');
                 }
                 break;
-            } else if (node.getLeafType() == HuffmanNode.LEAF_32) {
+            } else if (type == HuffmanNode.LEAF_32) {
                 if (outLen >= PAGE_SIZE - 1) {
-                    cache[outPos] = (byte)((node.getValue() >>> 24) & 0xff);
+                    out[outPos] = (byte)((value >>> 24) & 0xff);
                     outPos++;
                     outLen++;
                 } else if (outLen >= PAGE_SIZE - 2) {
-                    cache[outPos] = (byte)((node.getValue() >>> 24) & 0xff);
-                    cache[outPos+1] = (byte)((node.getValue() >>> 16) & 0xff);
+                    out[outPos] = (byte)((value >>> 24) & 0xff);
+                    out[outPos+1] = (byte)((value >>> 16) & 0xff);
                     outPos += 2;
                     outLen += 2;
                 } else if (outLen >= PAGE_SIZE - 3) {
-                    cache[outPos] = (byte)((node.getValue() >>> 24) & 0xff);
-                    cache[outPos+1] = (byte)((node.getValue() >>> 16) & 0xff);
-                    cache[outPos+2] = (byte)((node.getValue() >>> 8) & 0xff);
+                    out[outPos] = (byte)((value >>> 24) & 0xff);
+                    out[outPos+1] = (byte)((value >>> 16) & 0xff);
+                    out[outPos+2] = (byte)((value >>> 8) & 0xff);
                     outPos += 3;
                     outLen += 3;
                 } else {
-                    cache[outPos] = (byte)((node.getValue() >>> 24) & 0xff);
-                    cache[outPos+1] = (byte)((node.getValue() >>> 16) & 0xff);
-                    cache[outPos+2] = (byte)((node.getValue() >>> 8) & 0xff);
-                    cache[outPos+3] = (byte)(node.getValue() & 0xff);
+                    out[outPos] = (byte)((value >>> 24) & 0xff);
+                    out[outPos+1] = (byte)((value >>> 16) & 0xff);
+                    out[outPos+2] = (byte)((value >>> 8) & 0xff);
+                    out[outPos+3] = (byte)(value & 0xff);
                     outPos += 4;
                     outLen += 4;
                 }
-            } else if (node.getLeafType() == HuffmanNode.LEAF_16) {
+            } else if (type == HuffmanNode.LEAF_16) {
                 if (outLen >= PAGE_SIZE - 1) {
-                    cache[outPos] = (byte)((node.getValue() >>> 8) & 0xff);
+                    out[outPos] = (byte)((value >>> 8) & 0xff);
                     outPos++;
                     outLen++;
                 } else {
-                    cache[outPos] = (byte)((node.getValue() >>> 8) & 0xff);
-                    cache[outPos+1] = (byte)(node.getValue() & 0xff);
+                    out[outPos] = (byte)((value >>> 8) & 0xff);
+                    out[outPos+1] = (byte)(value & 0xff);
                     outPos += 2;
                     outLen += 2;
                 }
             } else {
-                cache[outPos] = (byte)(node.getValue() & 0xff);
+                out[outPos] = (byte)(value & 0xff);
                 outPos++;
                 outLen++;
             }
@@ -1,6 +1,18 @@
 package io.github.eb4j.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.github.eb4j.EBException;
+import io.github.eb4j.util.ByteUtil;
 
 /**
  * File information.
@@ -12,6 +24,24 @@ class FileInfo {
 
     /** ファイル */
     private File _file = null;
+    /** 共有チャネル */
+    private volatile FileChannel _channel = null;
+    /** メモリマップを使用するかどうか */
+    private volatile boolean _memoryMapped = false;
+    /** メモリマップ */
+    private volatile MappedFile _mapped = null;
+    /** メモリに常駐するデコード済みデータ */
+    private volatile MappedFile _resident = null;
+    /** デコード済みスライスのキャッシュ */
+    private volatile PageCache _pageCache = null;
+    /** 圧縮スライスのキャッシュ */
+    private volatile SliceCache _sliceCache = null;
+    /** 閉じるかキャッシュを無効にするたびに増える世代 */
+    private volatile long _generation = 0L;
+    /** 先読みするスライス数 */
+    private volatile int _readAhead = 0;
+    /** 先読み中のスライス番号 */
+    private final Set<Long> _readAheadPending = ConcurrentHashMap.newKeySet();
     /** フォーマット形式 */
     private EBFormat _format = EBFormat.FORMAT_PLAIN;
 
@@ -28,6 +58,12 @@ class FileInfo {
     private int _zipIndexSize = 0;
     /** CRC (for EBZIP) */
     private long _zipCrc = 0L;
+    /** スライス位置テーブル (for EBZIP) */
+    private long[] _zipSliceTable = null;
+    /** 5バイトインデックスのままのスライス位置テーブル (for EBZIP) */
+    private byte[] _zipPackedSliceTable = null;
+    /** Inflaterのプール (for EBZIP) */
+    private final InflaterPool _inflaterPool = new InflaterPool();
 
     /** インデックステーブルの位置 (for EPWING) */
     private long _epwingIndexPos = 0L;
@@ -39,6 +75,10 @@ class FileInfo {
     private long _epwingFreqSize = 0L;
     /** ハフマンツリーのルートノード (for EPWING) */
     private HuffmanNode _epwingRootNode = null;
+    /** ハフマンデコードテーブル (for EPWING) */
+    private HuffmanTable _epwingTable = null;
+    /** 圧縮ページ位置テーブル (for EPWING) */
+    private long[] _epwingPagePositions = null;
 
     /** インデックス開始位置 (for S-EBXA) */
     private long _sebxaIndexPos = 0L;
@@ -48,6 +88,8 @@ class FileInfo {
     private long _sebxaStartPos = 0L;
     /** 本文終了位置 (for S-EBXA) */
     private long _sebxaEndPos = 0L;
+    /** 圧縮スライス位置テーブル (for S-EBXA) */
+    private volatile int[] _sebxaSliceTable = null;
 
 
     /**
@@ -86,6 +128,368 @@ class FileInfo {
         _file = file;
     }
 
+    /**
+     * Returns a channel shared by all streams of the file.
+     * <p>
+     * The channel is opened on first use and reopened when it has been
+     * closed by {@link #closeChannel()} or by an interrupted reader. An
+     * open channel is returned without locking; only opening it is
+     * serialized.
+     * </p>
+     *
+     * @return file channel
+     * @exception EBException if the file cannot be opened.
+     */
+    FileChannel getChannel() throws EBException {
+        return getChannel(-1L);
+    }
+
+    /**
+     * Returns a channel shared by all streams of the file for a reader
+     * bound to a generation.
+     * <p>
+     * A bound reader, such as a read-ahead task, uses the channel only
+     * while the generation is current and never reopens it, so that it
+     * does not reopen a file closed meanwhile.
+     * </p>
+     *
+     * @param generation generation of the reader, or -1 for a reader which
+     * may reopen the file.
+     * @return file channel
+     * @exception EBException if the file cannot be opened, or the file has
+     * been closed since the generation of a bound reader.
+     */
+    FileChannel getChannel(final long generation) throws EBException {
+        FileChannel channel = _channel;
+        if (channel != null && channel.isOpen() && (generation < 0 || generation == _generation)) {
+            return channel;
+        }
+        return _openChannel(generation);
+    }
+
+    /**
+     * Opens the shared channel unless another thread has opened it.
+     *
+     * @param generation generation of the reader, or -1 for a reader which
+     * may reopen the file.
+     * @return file channel
+     * @exception EBException if the file cannot be opened, or the file has
+     * been closed since the generation of a bound reader.
+     */
+    private synchronized FileChannel _openChannel(final long generation) throws EBException {
+        FileChannel channel = _channel;
+        if (generation >= 0
+            && (generation != _generation || channel == null || !channel.isOpen())) {
+            throw new EBException(EBException.FAILED_READ_FILE, getPath());
+        }
+        if (channel == null || !channel.isOpen()) {
+            try {
+                channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                throw new EBException(EBException.FILE_NOT_FOUND, getPath(), e);
+            } catch (IOException e) {
+                throw new EBException(EBException.CANT_READ_FILE, getPath(), e);
+            }
+            _channel = channel;
+        }
+        return channel;
+    }
+
+    /**
+     * Reads bytes at a position of the file through the shared channel.
+     * <p>
+     * The JDK closes a channel for every thread when one reader blocked in
+     * it is interrupted. A read failing because the channel was closed by
+     * another thread reopens it and is retried for as long as the current
+     * thread is not interrupted.
+     * </p>
+     *
+     * @param dst destination buffer.
+     * @param pos position in the file.
+     * @param generation generation of the reader, or -1 for a reader which
+     * may reopen the file.
+     * @return number of bytes read, or -1 at the end of the file.
+     * @exception EBException if a read error occurs or the thread is interrupted.
+     * @see #getChannel(long)
+     */
+    int readChannel(final ByteBuffer dst, final long pos, final long generation) throws EBException {
+        int start = dst.position();
+        while (true) {
+            FileChannel channel = getChannel(generation);
+            try {
+                return channel.read(dst, pos);
+            } catch (ClosedByInterruptException e) {
+                throw new EBException(EBException.FAILED_READ_FILE, getPath(), e);
+            } catch (ClosedChannelException e) {
+                // closed by EBFile#close() or an interrupted reader
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new EBException(EBException.FAILED_READ_FILE, getPath(), e);
+                }
+                dst.position(start);
+            } catch (IOException e) {
+                throw new EBException(EBException.FAILED_READ_FILE, getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Closes the shared channel if it is open.
+     */
+    synchronized void closeChannel() {
+        _generation++;
+        _readAheadPending.clear();
+        _mapped = null;
+        FileChannel channel = _channel;
+        _channel = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Returns whether reads are served from a memory mapping.
+     *
+     * @return true if the file is memory mapped
+     */
+    boolean isMemoryMapped() {
+        return _memoryMapped;
+    }
+
+    /**
+     * Sets whether reads are served from a memory mapping.
+     *
+     * @param mapped true to map the file
+     */
+    synchronized void setMemoryMapped(final boolean mapped) {
+        _memoryMapped = mapped;
+        if (!mapped) {
+            _mapped = null;
+        }
+    }
+
+    /**
+     * Returns the memory mapping of the file, mapping it on first use.
+     * <p>
+     * An existing mapping is returned without locking; only mapping the
+     * file is serialized.
+     * </p>
+     *
+     * @return memory mapping
+     * @exception EBException if the file cannot be mapped.
+     */
+    MappedFile getMappedFile() throws EBException {
+        return getMappedFile(-1L);
+    }
+
+    /**
+     * Returns the memory mapping of the file for a reader bound to a
+     * generation.
+     *
+     * @param generation generation of the reader, or -1 for a reader which
+     * may reopen the file.
+     * @return memory mapping
+     * @exception EBException if the file cannot be mapped, or the file has
+     * been closed since the generation of a bound reader.
+     * @see #getChannel(long)
+     */
+    MappedFile getMappedFile(final long generation) throws EBException {
+        MappedFile mapped = _mapped;
+        if (mapped != null && (generation < 0 || generation == _generation)) {
+            return mapped;
+        }
+        return _mapFile(generation);
+    }
+
+    /**
+     * Maps the file unless another thread has mapped it.
+     *
+     * @param generation generation of the reader, or -1 for a reader which
+     * may reopen the file.
+     * @return memory mapping
+     * @exception EBException if the file cannot be mapped.
+     */
+    private synchronized MappedFile _mapFile(final long generation) throws EBException {
+        MappedFile mapped = _mapped;
+        if (mapped == null) {
+            try {
+                mapped = new MappedFile(getChannel(generation));
+            } catch (IOException e) {
+                throw new EBException(EBException.CANT_READ_FILE, getPath(), e);
+            }
+            _mapped = mapped;
+        }
+        return mapped;
+    }
+
+    /**
+     * Returns the decoded data held in memory.
+     *
+     * @return resident data, or null if the file is not resident
+     */
+    MappedFile getResidentFile() {
+        return _resident;
+    }
+
+    /**
+     * Sets the decoded data held in memory.
+     *
+     * @param resident resident data, or null to read the file again
+     */
+    void setResidentFile(final MappedFile resident) {
+        _resident = resident;
+    }
+
+    /**
+     * Returns the cache of decoded slices used by the file.
+     *
+     * @return page cache, or null if caching is disabled.
+     */
+    PageCache getPageCache() {
+        if (_pageCache != null) {
+            return _pageCache;
+        }
+        return PageCache.getDefault();
+    }
+
+    /**
+     * Sets the cache of decoded slices used by the file.
+     *
+     * @param cache page cache, or null to use the global cache.
+     */
+    void setPageCache(final PageCache cache) {
+        _pageCache = cache;
+    }
+
+    /**
+     * Returns the cache of compressed slices used by the file.
+     *
+     * @return slice cache, or null if caching is disabled.
+     */
+    SliceCache getSliceCache() {
+        if (_sliceCache != null) {
+            return _sliceCache;
+        }
+        return SliceCache.getDefault();
+    }
+
+    /**
+     * Sets the cache of compressed slices used by the file.
+     *
+     * @param cache slice cache, or null to use the global cache.
+     */
+    void setSliceCache(final SliceCache cache) {
+        _sliceCache = cache;
+    }
+
+    /**
+     * Returns whether the shared channel is open.
+     *
+     * @return true if open.
+     */
+    boolean isChannelOpen() {
+        FileChannel channel = _channel;
+        return channel != null && channel.isOpen();
+    }
+
+    /**
+     * Returns the generation of the file.
+     * <p>
+     * The generation changes when the file is closed or its cached slices
+     * are invalidated. Background tasks started in an earlier generation
+     * neither reopen the file nor store slices in the caches.
+     * </p>
+     *
+     * @return generation.
+     */
+    long getGeneration() {
+        return _generation;
+    }
+
+    /**
+     * Opens a stream bound to a generation for a background task.
+     *
+     * @param generation generation in which the task was started.
+     * @return stream, or null if the generation is not current or the file
+     * is not open.
+     * @exception EBException if the stream cannot be opened.
+     */
+    synchronized BookInputStream newBoundStream(final long generation) throws EBException {
+        FileChannel channel = _channel;
+        if (generation != _generation
+            || (_resident == null && (channel == null || !channel.isOpen()))) {
+            return null;
+        }
+        BookInputStream bis = EBFile.newInputStream(this);
+        bis.bindGeneration(generation);
+        return bis;
+    }
+
+    /**
+     * Stores a slice decoded by a background task in the page cache.
+     * <p>
+     * The slice is dropped if the generation has changed, so that a task
+     * finishing after the file was closed or invalidated does not put the
+     * file back into the cache.
+     * </p>
+     *
+     * @param cache page cache.
+     * @param generation generation in which the task was started.
+     * @param index slice index.
+     * @param data decoded slice.
+     */
+    synchronized void putBound(final PageCache cache, final long generation,
+                               final long index, final byte[] data) {
+        if (generation == _generation) {
+            cache.put(this, index, data);
+        }
+    }
+
+    /**
+     * Removes the slices of the file from the page cache and the slice
+     * cache it uses.
+     */
+    synchronized void invalidateCaches() {
+        _generation++;
+        PageCache pageCache = getPageCache();
+        if (pageCache != null) {
+            pageCache.invalidate(this);
+        }
+        SliceCache sliceCache = getSliceCache();
+        if (sliceCache != null) {
+            sliceCache.invalidate(this);
+        }
+    }
+
+    /**
+     * Returns the number of slices decoded ahead on sequential reads.
+     *
+     * @return number of slices, or 0 if disabled.
+     */
+    int getReadAhead() {
+        return _readAhead;
+    }
+
+    /**
+     * Sets the number of slices decoded ahead on sequential reads.
+     *
+     * @param slices number of slices, or 0 to disable.
+     */
+    void setReadAhead(final int slices) {
+        _readAhead = slices;
+    }
+
+    /**
+     * Returns the indexes of slices being decoded ahead.
+     *
+     * @return set of slice indexes; cleared when the channel is closed.
+     */
+    Set<Long> getReadAheadPending() {
+        return _readAheadPending;
+    }
+
     /**
      * フォーマット形式を返します。
      *
@@ -220,6 +624,54 @@ class FileInfo {
         _zipCrc = crc;
     }
 
+    /**
+     * EBZIPのスライス展開に使用するInflaterのプールを返します。
+     *
+     * @return Inflaterのプール
+     */
+    InflaterPool getInflaterPool() {
+        return _inflaterPool;
+    }
+
+    /**
+     * EBZIPのスライス位置テーブルを設定します。
+     *
+     * @param table スライス位置テーブル
+     */
+    void setZipSliceTable(final long[] table) {
+        _zipSliceTable = table;
+        _zipPackedSliceTable = null;
+    }
+
+    /**
+     * 5バイトインデックスのままのEBZIPのスライス位置テーブルを設定します。
+     *
+     * @param table スライス位置テーブル
+     */
+    void setZipPackedSliceTable(final byte[] table) {
+        _zipSliceTable = null;
+        _zipPackedSliceTable = table;
+    }
+
+    /**
+     * EBZIPの圧縮スライスの位置を返します。
+     *
+     * @param index スライス番号
+     * @return 圧縮スライスの位置 (テーブルが読み込まれていない場合は-1)
+     */
+    long getZipSlicePosition(final long index) {
+        if (_zipSliceTable != null) {
+            if (index < _zipSliceTable.length) {
+                return _zipSliceTable[(int)index];
+            }
+        } else if (_zipPackedSliceTable != null) {
+            if (index < _zipPackedSliceTable.length / 5) {
+                return ByteUtil.getLong5(_zipPackedSliceTable, (int)index * 5);
+            }
+        }
+        return -1L;
+    }
+
     /**
      * EPWINGのインデックステーブル位置を返します。
      *
@@ -310,6 +762,46 @@ class FileInfo {
         _epwingRootNode = node;
     }
 
+    /**
+     * EPWINGのハフマンデコードテーブルを返します。
+     *
+     * @return ハフマンデコードテーブル
+     */
+    HuffmanTable getEpwingTable() {
+        return _epwingTable;
+    }
+
+    /**
+     * EPWINGのハフマンデコードテーブルを設定します。
+     *
+     * @param table ハフマンデコードテーブル
+     */
+    void setEpwingTable(final HuffmanTable table) {
+        _epwingTable = table;
+    }
+
+    /**
+     * EPWINGの圧縮ページ位置テーブルを設定します。
+     *
+     * @param positions 圧縮ページ位置テーブル
+     */
+    void setEpwingPagePositions(final long[] positions) {
+        _epwingPagePositions = positions;
+    }
+
+    /**
+     * EPWINGの圧縮ページの位置を返します。
+     *
+     * @param index ページ番号 (0から始まる)
+     * @return 圧縮ページの位置 (テーブルが読み込まれていない場合は-1)
+     */
+    long getEpwingPagePosition(final long index) {
+        if (_epwingPagePositions != null && index < _epwingPagePositions.length) {
+            return _epwingPagePositions[(int)index];
+        }
+        return -1L;
+    }
+
     /**
      * S-EBXAのインデックス開始位置を返します。
      *
@@ -381,6 +873,24 @@ class FileInfo {
     void setSebxaEndPosition(final long pos) {
         _sebxaEndPos = pos;
     }
+
+    /**
+     * S-EBXAの圧縮スライス位置テーブルを返します。
+     *
+     * @return 圧縮本文開始位置からのオフセットのテーブル (読み込まれていない場合はnull)
+     */
+    int[] getSebxaSliceTable() {
+        return _sebxaSliceTable;
+    }
+
+    /**
+     * S-EBXAの圧縮スライス位置テーブルを設定します。
+     *
+     * @param table 圧縮本文開始位置からのオフセットのテーブル
+     */
+    void setSebxaSliceTable(final int[] table) {
+        _sebxaSliceTable = table;
+    }
 }
 
 // end of FileInfo.java
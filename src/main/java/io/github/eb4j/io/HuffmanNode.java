@@ -1,7 +1,8 @@
 package io.github.eb4j.io;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
 
 /**
  * Huffman node class.
@@ -157,62 +158,79 @@ public class HuffmanNode implements Comparable<HuffmanNode> {
 
     /**
      * ハフマンツリーを作成します。
+     * <p>
+     * ノードを頻度値の降順に選択ソートし、頻度値が最も小さい2つのノード
+     * (同じ頻度値の場合はリストの後ろにあるノード) を順に枝ノードにまとめます。
+     * The selection sort and the searches are simulated with a sorted set
+     * and a priority queue, so the tree is built in O(n log n) and is
+     * identical to the one built by the straightforward algorithm.
+     * </p>
      *
      * @param list HuffmanNodeのリスト
      * @return ルートノード
      */
     protected static HuffmanNode makeTree(final List<HuffmanNode> list) {
-        HuffmanNode node1, node2, tmp;
+        int size = list.size();
+        HuffmanNode[] nodes = new HuffmanNode[size * 2];
+        list.toArray(nodes);
 
         // ソート (選択ソート)
-        int size = list.size();
+        // i番目には残りのうち頻度値が最大で最も前にあるノードが入り、
+        // i番目にあったノードはそのノードの位置に移る
+        TreeSet<Long> rest = new TreeSet<>();
+        for (int i=0; i<size; i++) {
+            rest.add(_sortKey(nodes[i], i));
+        }
         for (int i=0; i<size-1; i++) {
-            node1 = list.get(i);
-            int n = i;
-            for (int j=i+1; j<size; j++) {
-                tmp = list.get(j);
-                if (node1.compareTo(tmp) < 0) {
-                    node1 = tmp;
-                    n = j;
-                }
-            }
+            int n = (int)(0xffffffffL - (rest.pollLast() & 0xffffffffL));
             if (i != n) {
-                Collections.swap(list, i, n);
+                rest.remove(_sortKey(nodes[i], i));
+                rest.add(_sortKey(nodes[i], n));
+                HuffmanNode tmp = nodes[i];
+                nodes[i] = nodes[n];
+                nodes[n] = tmp;
             }
         }
 
         // ハフマンツリーの作成
-        while (list.size() > 1) {
-            // 頻度値が最も小さいノードの検索
-            size = list.size();
-            node1 = list.get(0);
-            int n = 0;
-            for (int i=1; i<size; i++) {
-                tmp = list.get(i);
-                if (node1.compareTo(tmp) >= 0) {
-                    node1 = tmp;
-                    n = i;
-                }
-            }
-            list.remove(n);
-
-            // 頻度値が次に小さいノードの検索
-            size = list.size();
-            node2 = list.get(0);
-            n = 0;
-            for (int i=1; i<size; i++) {
-                tmp = list.get(i);
-                if (node2.compareTo(tmp) >= 0) {
-                    node2 = tmp;
-                    n = i;
+        // 頻度値が最も小さく、リストの最も後ろにあるノードから順に取り出す
+        // 枝ノードはリストの末尾に追加されるので、番号の大きいノードほど後ろにある
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, size),
+            (a, b) -> {
+                int ret = Integer.compare(nodes[a].getFrequency(), nodes[b].getFrequency());
+                if (ret != 0) {
+                    return ret;
                 }
-            }
-            list.remove(n);
-
+                return Integer.compare(b, a);
+            });
+        for (int i=0; i<size; i++) {
+            queue.add(i);
+        }
+        int next = size;
+        while (queue.size() > 1) {
+            HuffmanNode node1 = nodes[queue.poll()];
+            HuffmanNode node2 = nodes[queue.poll()];
             // 枝ノードの作成
-            list.add(new HuffmanNode(node1, node2));
+            nodes[next] = new HuffmanNode(node1, node2);
+            queue.add(next);
+            next++;
         }
-        return list.get(0);
+        HuffmanNode root = nodes[queue.poll()];
+        list.clear();
+        list.add(root);
+        return root;
+    }
+
+    /**
+     * 選択ソートの順序を表すキーを返します。
+     * 頻度値が大きく、位置が前にあるノードほど大きな値になります。
+     *
+     * @param node ノード
+     * @param pos リスト上の位置
+     * @return キー
+     */
+    private static long _sortKey(final HuffmanNode node, final int pos) {
+        return ((long)node.getFrequency() << 32) | (0xffffffffL - pos);
     }
 }
 
@@ -0,0 +1,211 @@
+package io.github.eb4j.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table-driven Huffman decoder for EPWING compressed text.
+ * <p>
+ * The tree built by {@link HuffmanNode#makeTree(List)} is compiled into
+ * flat lookup tables. Each lookup consumes up to {@link #ROOT_BITS} bits
+ * and either resolves a leaf together with its code length, or refers to
+ * a second-level table for longer codes. A bit 1 selects the left child
+ * and a bit 0 the right child, as in the tree.
+ * </p>
+ * <p>
+ * An entry {@code e >= 0} is a leaf: {@code e >>> 4} is the leaf index and
+ * {@code e & 0xf} the number of bits it consumes. An entry {@code e < -1}
+ * refers to a sub-table: {@code ~e >>> 4} is its offset and {@code ~e & 0xf}
+ * the number of bits used to index it. An entry {@code -1} marks a code
+ * that leads to no node.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+final class HuffmanTable {
+
+    /** Number of bits resolved by the root table. */
+    static final int ROOT_BITS = 10;
+    /** Number of bits resolved by a second-level table at most. */
+    static final int SUB_BITS = 8;
+    /** Entry for a code that leads to no node. */
+    static final int INVALID = -1;
+
+    /** Lookup tables; the root table comes first. */
+    private final int[] _entries;
+    /** Leaf types. */
+    private final byte[] _leafTypes;
+    /** Leaf values. */
+    private final int[] _leafValues;
+
+
+    /**
+     * Compile a Huffman tree.
+     *
+     * @param root root node of the tree.
+     */
+    HuffmanTable(final HuffmanNode root) {
+        super();
+        List<HuffmanNode> leaves = new ArrayList<>();
+        IntList entries = new IntList(1 << ROOT_BITS);
+        _build(root, ROOT_BITS, entries, leaves);
+        _entries = entries.toArray();
+        _leafTypes = new byte[leaves.size()];
+        _leafValues = new int[leaves.size()];
+        for (int i = 0; i < leaves.size(); i++) {
+            _leafTypes[i] = (byte) leaves.get(i).getLeafType();
+            _leafValues[i] = (int) leaves.get(i).getValue();
+        }
+    }
+
+
+    /**
+     * Returns the lookup tables.
+     *
+     * @return lookup tables.
+     */
+    int[] getEntries() {
+        return _entries;
+    }
+
+    /**
+     * Returns the type of a leaf.
+     *
+     * @param index leaf index.
+     * @return leaf type.
+     */
+    int getLeafType(final int index) {
+        return _leafTypes[index];
+    }
+
+    /**
+     * Returns the value of a leaf.
+     *
+     * @param index leaf index.
+     * @return leaf value.
+     */
+    int getLeafValue(final int index) {
+        return _leafValues[index];
+    }
+
+    /**
+     * Build the table for a subtree and its sub-tables.
+     *
+     * @param node root of the subtree.
+     * @param bits number of index bits of the table.
+     * @param entries destination of the tables.
+     * @param leaves destination of the leaves.
+     * @return offset of the table.
+     */
+    private static int _build(final HuffmanNode node, final int bits,
+                              final IntList entries, final List<HuffmanNode> leaves) {
+        int offset = entries.size();
+        int size = 1 << bits;
+        entries.grow(size);
+        for (int code = 0; code < size; code++) {
+            HuffmanNode n = node;
+            int len = 0;
+            while (n != null && !n.isLeaf() && len < bits) {
+                int bit = (code >>> (bits - 1 - len)) & 0x01;
+                n = bit == 1 ? n.getLeft() : n.getRight();
+                len++;
+            }
+            int entry;
+            if (n == null) {
+                entry = INVALID;
+            } else if (n.isLeaf()) {
+                // a leaf is reached from one table only, by consecutive codes
+                leaves.add(n);
+                entry = (leaves.size() - 1) << 4 | len;
+                int step = 1 << (bits - len);
+                for (int i = 0; i < step; i++) {
+                    entries.set(offset + code + i, entry);
+                }
+                code += step - 1;
+                continue;
+            } else {
+                int subBits = Math.min(SUB_BITS, _depth(n));
+                int sub = _build(n, subBits, entries, leaves);
+                entry = ~(sub << 4 | subBits);
+            }
+            entries.set(offset + code, entry);
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the depth of a subtree.
+     *
+     * @param node root of the subtree.
+     * @return depth.
+     */
+    private static int _depth(final HuffmanNode node) {
+        if (node == null || node.isLeaf()) {
+            return 0;
+        }
+        return 1 + Math.max(_depth(node.getLeft()), _depth(node.getRight()));
+    }
+
+    /**
+     * Growable list of int.
+     */
+    private static final class IntList {
+        /** Elements. */
+        private int[] _data;
+        /** Number of elements. */
+        private int _size = 0;
+
+        /**
+         * Build a list.
+         *
+         * @param capacity initial capacity.
+         */
+        IntList(final int capacity) {
+            _data = new int[capacity];
+        }
+
+        /**
+         * Returns the number of elements.
+         *
+         * @return number of elements.
+         */
+        int size() {
+            return _size;
+        }
+
+        /**
+         * Appends n elements of value INVALID.
+         *
+         * @param n number of elements.
+         */
+        void grow(final int n) {
+            if (_size + n > _data.length) {
+                _data = Arrays.copyOf(_data, Math.max(_size + n, _data.length * 2));
+            }
+            Arrays.fill(_data, _size, _size + n, INVALID);
+            _size += n;
+        }
+
+        /**
+         * Sets an element.
+         *
+         * @param index index.
+         * @param value value.
+         */
+        void set(final int index, final int value) {
+            _data[index] = value;
+        }
+
+        /**
+         * Returns the elements as an array.
+         *
+         * @return elements.
+         */
+        int[] toArray() {
+            return Arrays.copyOf(_data, _size);
+        }
+    }
+}
+
+// end of HuffmanTable.java
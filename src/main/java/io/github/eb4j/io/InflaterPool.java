@@ -0,0 +1,134 @@
+package io.github.eb4j.io;
+
+import java.util.ArrayDeque;
+import java.util.zip.Inflater;
+
+/**
+ * Bounded pool of inflaters and input buffers for EBZIP slice decoding.
+ * <p>
+ * Creating an {@link Inflater} allocates native zlib state, which costs
+ * more than inflating a small slice. Decoders borrow an entry, use it and
+ * release it back to the pool. Entries released to a full pool are ended.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+final class InflaterPool {
+
+    /** Default number of pooled entries. */
+    static final int DEFAULT_CAPACITY = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    /** Idle entries. */
+    private final ArrayDeque<Entry> _idle;
+    /** Maximum number of idle entries. */
+    private final int _capacity;
+
+
+    /**
+     * Build a pool with the default capacity.
+     */
+    InflaterPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Build a pool.
+     *
+     * @param capacity maximum number of idle entries.
+     */
+    InflaterPool(final int capacity) {
+        super();
+        _capacity = capacity;
+        _idle = new ArrayDeque<>(capacity);
+    }
+
+
+    /**
+     * Borrows an entry whose buffer holds at least size bytes.
+     *
+     * @param size required buffer size.
+     * @return entry.
+     */
+    Entry borrow(final int size) {
+        Entry entry;
+        synchronized (_idle) {
+            entry = _idle.pollFirst();
+        }
+        if (entry == null) {
+            entry = new Entry();
+        }
+        if (entry._buffer.length < size) {
+            entry._buffer = new byte[size];
+        }
+        return entry;
+    }
+
+    /**
+     * Releases an entry back to the pool.
+     *
+     * @param entry entry borrowed from this pool.
+     */
+    void release(final Entry entry) {
+        entry._inflater.reset();
+        synchronized (_idle) {
+            if (_idle.size() < _capacity) {
+                _idle.addFirst(entry);
+                return;
+            }
+        }
+        entry._inflater.end();
+    }
+
+    /**
+     * Ends all idle entries to free their native memory.
+     */
+    void clear() {
+        synchronized (_idle) {
+            for (Entry entry : _idle) {
+                entry._inflater.end();
+            }
+            _idle.clear();
+        }
+    }
+
+    /**
+     * Returns the number of idle entries.
+     *
+     * @return number of idle entries.
+     */
+    int getIdleCount() {
+        synchronized (_idle) {
+            return _idle.size();
+        }
+    }
+
+    /**
+     * Pooled inflater with its input buffer.
+     */
+    static final class Entry {
+        /** Inflater. */
+        private final Inflater _inflater = new Inflater();
+        /** Input buffer. */
+        private byte[] _buffer = new byte[0];
+
+        /**
+         * Returns the inflater.
+         *
+         * @return inflater.
+         */
+        Inflater getInflater() {
+            return _inflater;
+        }
+
+        /**
+         * Returns the input buffer.
+         *
+         * @return input buffer.
+         */
+        byte[] getBuffer() {
+            return _buffer;
+        }
+    }
+}
+
+// end of InflaterPool.java
@@ -0,0 +1,350 @@
+package io.github.eb4j.io;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded least-recently-used cache of slices of files.
+ * <p>
+ * This is the common part of {@link PageCache} and {@link SliceCache}.
+ * Entries are keyed by the identity of a {@link FileInfo} and a slice
+ * index, and are evicted in least-recently-used order when the total size
+ * given by {@link #sizeOf(Object)} exceeds the limit. Subclasses decide
+ * what is stored and how it is copied in and out.
+ * </p>
+ *
+ * @param <V> type of cached values.
+ * @author Hiroshi Miura
+ */
+abstract class LruCache<V> {
+
+    /** Cached values in access order. */
+    private final LinkedHashMap<Key, V> _map = new LinkedHashMap<>(64, 0.75f, true);
+    /** Size limit in bytes. */
+    private final long _maxSize;
+    /** Current size in bytes. */
+    private long _size = 0L;
+
+    /** Hit counter. */
+    private final AtomicLong _hits = new AtomicLong();
+    /** Miss counter. */
+    private final AtomicLong _misses = new AtomicLong();
+    /** Eviction counter. */
+    private final AtomicLong _evictions = new AtomicLong();
+
+
+    /**
+     * Build a cache.
+     *
+     * @param maxSize size limit in bytes.
+     */
+    LruCache(final long maxSize) {
+        super();
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        _maxSize = maxSize;
+    }
+
+
+    /**
+     * Returns the size of a value in bytes.
+     *
+     * @param value cached value.
+     * @return size in bytes.
+     */
+    abstract long sizeOf(V value);
+
+    /**
+     * Returns the lock guarding the entries.
+     * <p>
+     * Subclasses hold it while they copy a value that may be changed by a
+     * concurrent store.
+     * </p>
+     *
+     * @return lock object.
+     */
+    final Object lock() {
+        return _map;
+    }
+
+    /**
+     * Returns a cached value without counting a hit or a miss.
+     *
+     * @param info file information.
+     * @param index slice index.
+     * @return cached value, or null if not cached.
+     */
+    final V lookup(final FileInfo info, final long index) {
+        synchronized (_map) {
+            return _map.get(new Key(info, index));
+        }
+    }
+
+    /**
+     * Returns a cached value and counts a hit or a miss.
+     *
+     * @param info file information.
+     * @param index slice index.
+     * @return cached value, or null if not cached.
+     */
+    final V get(final FileInfo info, final long index) {
+        V value = lookup(info, index);
+        if (value != null) {
+            recordHit();
+        } else {
+            recordMiss();
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether a slice is cached.
+     * <p>
+     * Unlike {@link #get(FileInfo, long)}, this does not count a hit or a
+     * miss and does not change the eviction order.
+     * </p>
+     *
+     * @param info file information.
+     * @param index slice index.
+     * @return true if cached.
+     */
+    final boolean contains(final FileInfo info, final long index) {
+        synchronized (_map) {
+            return _map.containsKey(new Key(info, index));
+        }
+    }
+
+    /**
+     * Stores a value and evicts the least recently used entries over the
+     * size limit.
+     *
+     * @param info file information.
+     * @param index slice index.
+     * @param value value.
+     */
+    final void store(final FileInfo info, final long index, final V value) {
+        long size = sizeOf(value);
+        if (size > _maxSize) {
+            return;
+        }
+        synchronized (_map) {
+            V old = _map.put(new Key(info, index), value);
+            if (old != null) {
+                _size -= sizeOf(old);
+            }
+            _size += size;
+            Iterator<V> it = _map.values().iterator();
+            while (_size > _maxSize && it.hasNext()) {
+                _size -= sizeOf(it.next());
+                it.remove();
+                _evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Evicts the entries holding matching values.
+     *
+     * @param filter condition of the values to evict.
+     */
+    final void evictIf(final Predicate<V> filter) {
+        synchronized (_map) {
+            Iterator<V> it = _map.values().iterator();
+            while (it.hasNext()) {
+                V value = it.next();
+                if (filter.test(value)) {
+                    _size -= sizeOf(value);
+                    it.remove();
+                    _evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all cached slices of a file.
+     * <p>
+     * Called when the file is closed or its format changes, so that its
+     * slices and the file information they refer to are not kept until
+     * they are evicted. Removed slices are not counted as evictions.
+     * </p>
+     *
+     * @param info file information.
+     */
+    final void invalidate(final FileInfo info) {
+        synchronized (_map) {
+            Iterator<Map.Entry<Key, V>> it = _map.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, V> entry = it.next();
+                if (entry.getKey()._info == info) {
+                    _size -= sizeOf(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a lookup served from the cache.
+     */
+    final void recordHit() {
+        _hits.incrementAndGet();
+    }
+
+    /**
+     * Counts a lookup not served from the cache.
+     */
+    final void recordMiss() {
+        _misses.incrementAndGet();
+    }
+
+    /**
+     * Removes all cached slices.
+     */
+    public void clear() {
+        synchronized (_map) {
+            _map.clear();
+            _size = 0L;
+        }
+    }
+
+    /**
+     * Returns the size limit in bytes.
+     *
+     * @return size limit.
+     */
+    public long getMaxSize() {
+        return _maxSize;
+    }
+
+    /**
+     * Returns the total size of cached slices in bytes.
+     *
+     * @return cached size.
+     */
+    public long getSize() {
+        synchronized (_map) {
+            return _size;
+        }
+    }
+
+    /**
+     * Returns the number of cached slices.
+     *
+     * @return number of entries.
+     */
+    public int getEntryCount() {
+        synchronized (_map) {
+            return _map.size();
+        }
+    }
+
+    /**
+     * Returns the number of lookups served from the cache.
+     *
+     * @return hit count.
+     */
+    public long getHitCount() {
+        return _hits.get();
+    }
+
+    /**
+     * Returns the number of lookups not served from the cache.
+     *
+     * @return miss count.
+     */
+    public long getMissCount() {
+        return _misses.get();
+    }
+
+    /**
+     * Returns the ratio of lookups served from the cache.
+     *
+     * @return hit rate from 0 to 1, or 0 if nothing was looked up.
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        if (total == 0) {
+            return 0.0;
+        }
+        return (double) hits / total;
+    }
+
+    /**
+     * Returns the number of slices evicted to keep the size limit.
+     *
+     * @return eviction count.
+     */
+    public long getEvictionCount() {
+        return _evictions.get();
+    }
+
+    /**
+     * Returns additional settings shown by {@link #toString()}.
+     *
+     * @return settings starting with a comma, or an empty string.
+     */
+    String describe() {
+        return "";
+    }
+
+    /**
+     * Returns a string representation of the cache statistics.
+     *
+     * @return string representation.
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + getSize() + "/" + _maxSize
+            + describe()
+            + ", entries=" + getEntryCount()
+            + ", hits=" + getHitCount()
+            + ", misses=" + getMissCount()
+            + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    /**
+     * Cache key of a slice of a file.
+     */
+    private static final class Key {
+        /** File information. */
+        private final FileInfo _info;
+        /** Slice index. */
+        private final long _index;
+
+        /**
+         * Build a key.
+         *
+         * @param info file information.
+         * @param index slice index.
+         */
+        Key(final FileInfo info, final long index) {
+            _info = info;
+            _index = index;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _info == other._info && _index == other._index;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(_info) + Long.hashCode(_index);
+        }
+    }
+}
+
+// end of LruCache.java
@@ -0,0 +1,141 @@
+package io.github.eb4j.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only memory mapping of a whole file.
+ * <p>
+ * A single {@link MappedByteBuffer} can address at most 2 GB, so the file
+ * is mapped as consecutive segments of {@link #SEGMENT_SIZE} bytes.
+ * The mapping is released by the garbage collector once it is no longer
+ * referenced.
+ * </p>
+ * <p>
+ * The decoded data of a resident file is held in direct buffers of the
+ * same segment layout and read through this class as well.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+final class MappedFile {
+
+    /** Segment size. */
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    /** Mapped segments. */
+    private final ByteBuffer[] _segments;
+    /** File size. */
+    private final long _size;
+
+
+    /**
+     * Maps the whole file of the channel.
+     *
+     * @param channel file channel
+     * @exception IOException if the file cannot be mapped.
+     */
+    MappedFile(final FileChannel channel) throws IOException {
+        super();
+        _size = channel.size();
+        int count = getSegmentCount(_size);
+        _segments = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long pos = (long)i * SEGMENT_SIZE;
+            long len = Math.min(SEGMENT_SIZE, _size - pos);
+            _segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+        }
+    }
+
+
+    /**
+     * Wraps segments holding data in memory.
+     *
+     * @param segments consecutive segments of {@link #SEGMENT_SIZE} bytes,
+     * the last one may be shorter.
+     * @param size data size
+     */
+    MappedFile(final ByteBuffer[] segments, final long size) {
+        super();
+        _segments = segments;
+        _size = size;
+    }
+
+    /**
+     * Returns the number of segments needed for data of a size.
+     *
+     * @param size data size
+     * @return number of segments
+     */
+    static int getSegmentCount(final long size) {
+        return (int)((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns the size of the mapped file.
+     *
+     * @return file size
+     */
+    long size() {
+        return _size;
+    }
+
+    /**
+     * Copies up to len bytes at the specified position into the array.
+     *
+     * @param pos file position
+     * @param b destination buffer
+     * @param off offset in the destination buffer
+     * @param len maximum number of bytes
+     * @return number of bytes copied, or -1 at the end of the file
+     */
+    int read(final long pos, final byte[] b, final int off, final int len) {
+        if (pos >= _size) {
+            return -1;
+        }
+        int total = (int)Math.min(len, _size - pos);
+        int done = 0;
+        while (done < total) {
+            long p = pos + done;
+            ByteBuffer buf = _segments[(int)(p / SEGMENT_SIZE)].duplicate();
+            int segOff = (int)(p % SEGMENT_SIZE);
+            int n = Math.min(total - done, buf.limit() - segOff);
+            buf.position(segOff);
+            buf.get(b, off + done, n);
+            done += n;
+        }
+        return total;
+    }
+
+    /**
+     * Returns a read-only view of len bytes at the specified position.
+     * <p>
+     * The view shares the mapping unless the range crosses a segment
+     * boundary, in which case the bytes are copied into a heap buffer.
+     * </p>
+     *
+     * @param pos file position
+     * @param len number of bytes
+     * @return read-only buffer
+     */
+    ByteBuffer slice(final long pos, final int len) {
+        int n = (int)Math.max(0, Math.min(len, _size - pos));
+        if (n == 0) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+        int segOff = (int)(pos % SEGMENT_SIZE);
+        if (segOff + n <= SEGMENT_SIZE) {
+            ByteBuffer buf = _segments[(int)(pos / SEGMENT_SIZE)].duplicate();
+            buf.position(segOff);
+            buf.limit(segOff + n);
+            return buf.slice().asReadOnlyBuffer();
+        }
+        byte[] b = new byte[n];
+        read(pos, b, 0, n);
+        return ByteBuffer.wrap(b).asReadOnlyBuffer();
+    }
+}
+
+// end of MappedFile.java
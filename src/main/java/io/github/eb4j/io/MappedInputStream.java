@@ -0,0 +1,100 @@
+package io.github.eb4j.io;
+
+import java.nio.ByteBuffer;
+
+import io.github.eb4j.EBException;
+
+/**
+ * 無圧縮形式の書籍をメモリマップで読み込む入力ストリームクラス。
+ * <p>
+ * Pages are not copied into a page cache; data is copied straight from
+ * the mapping, or returned as a read-only view of it by {@link #slice(int)}.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+public class MappedInputStream extends BookInputStream {
+
+    /** メモリマップ */
+    private final MappedFile _mapped;
+
+
+    /**
+     * コンストラクタ。
+     *
+     * @param info ファイル情報
+     * @exception EBException 入出力エラーが発生した場合
+     */
+    protected MappedInputStream(final FileInfo info) throws EBException {
+        super(info);
+        open();
+        _mapped = info.getMappedFile();
+    }
+
+    /**
+     * Constructor for decoded data held in memory.
+     * <p>
+     * The file is not opened; all reads are served from the data.
+     * </p>
+     *
+     * @param info file information
+     * @param data decoded data of the file
+     */
+    MappedInputStream(final FileInfo info, final MappedFile data) {
+        super(info);
+        _mapped = data;
+    }
+
+
+    /**
+     * 無圧縮形式のファイル情報を初期化します。
+     *
+     * @exception EBException 入出力エラーが発生した場合
+     */
+    @Override
+    protected void initFileInfo() throws EBException {
+        info.setRealFileSize(_mapped.size());
+        info.setFileSize(info.getRealFileSize());
+        super.initFileInfo();
+    }
+
+    /**
+     * このファイルから最大lenバイトのデータをバイト配列に読み込みます。
+     *
+     * @param b データの読み込み先のバッファ
+     * @param off データの開始オフセット
+     * @param len 読み込まれる最大バイト数
+     * @return バッファに読み込まれたバイトの合計数
+     *         (ストリームの終わりに達してデータがない場合は-1)
+     * @exception EBException 入出力エラーが発生した場合
+     */
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws EBException {
+        if (info.getFileSize() <= filePos) {
+            return -1;
+        }
+        int rlen = (int)Math.min(len, info.getFileSize() - filePos);
+        rlen = _mapped.read(filePos, b, off, rlen);
+        filePos += rlen;
+        return rlen;
+    }
+
+    /**
+     * 現在位置から最大lenバイトのデータを読み取り専用のバッファとして返し、
+     * ファイルポインタを進めます。
+     * <p>
+     * The buffer is a view of the mapping, so no data is copied.
+     * </p>
+     *
+     * @param len 読み込まれる最大バイト数
+     * @return 読み取り専用のバッファ (ストリームの終わりでは空のバッファ)
+     */
+    public ByteBuffer slice(final int len) {
+        int rlen = (int)Math.max(0, Math.min(len, info.getFileSize() - filePos));
+        ByteBuffer buf = _mapped.slice(filePos, rlen);
+        filePos += buf.remaining();
+        return buf;
+    }
+}
+
+// end of MappedInputStream.java
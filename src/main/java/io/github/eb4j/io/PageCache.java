@@ -0,0 +1,80 @@
+package io.github.eb4j.io;
+
+/**
+ * Cache of decoded pages and slices shared by all streams.
+ * <p>
+ * Compressed streams ({@link EBZipInputStream}, {@link EPWINGInputStream}
+ * and {@link SEBXAInputStream}) look up a decoded slice here before they
+ * decode it, so that repeated lookups of the same slice by any stream or
+ * thread do not decompress it again. Entries are keyed by file and slice
+ * index and are evicted in least-recently-used order when the total size
+ * exceeds the limit.
+ * </p>
+ * <p>
+ * A cache is configured per book with
+ * {@link io.github.eb4j.Book#setPageCache(PageCache)}, or per file with
+ * {@link EBFile#setPageCache(PageCache)}. Files without their own cache
+ * use the global cache returned by {@link #getDefault()}.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+public final class PageCache extends LruCache<byte[]> {
+
+    /** Default size limit of the global cache in bytes. */
+    public static final long DEFAULT_SIZE = 8L * 1024 * 1024;
+
+    /** Global cache. */
+    private static volatile PageCache defaultCache = new PageCache(DEFAULT_SIZE);
+
+
+    /**
+     * Build a cache.
+     *
+     * @param maxSize size limit in bytes.
+     */
+    public PageCache(final long maxSize) {
+        super(maxSize);
+    }
+
+
+    /**
+     * Returns the global cache.
+     *
+     * @return global cache, or null if disabled.
+     */
+    public static PageCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Set the global cache.
+     *
+     * @param cache global cache, or null to disable.
+     */
+    public static void setDefault(final PageCache cache) {
+        defaultCache = cache;
+    }
+
+    @Override
+    long sizeOf(final byte[] value) {
+        return value.length;
+    }
+
+    /**
+     * Stores a decoded slice.
+     * <p>
+     * The array must not be modified after it is stored. Slices returned
+     * by {@link #get(FileInfo, long)} are shared in the same way.
+     * </p>
+     *
+     * @param info file information.
+     * @param index slice index.
+     * @param data decoded slice.
+     */
+    void put(final FileInfo info, final long index, final byte[] data) {
+        store(info, index, data);
+    }
+}
+
+// end of PageCache.java
@@ -32,7 +32,7 @@ public class PlainInputStream extends BookInputStream {
     @Override
     protected void initFileInfo() throws EBException {
         try {
-            info.setRealFileSize(stream.length());
+            info.setRealFileSize(info.getChannel().size());
             info.setFileSize(info.getRealFileSize());
         } catch (IOException e) {
             throw new EBException(EBException.FAILED_READ_FILE, info.getPath(), e);
@@ -70,19 +70,17 @@ public class PlainInputStream extends BookInputStream {
                 || cachePos + PAGE_SIZE <= filePos) {
                 // キャッシュのデータ位置
                 // filePosの位置が含まれるページの先頭位置
-                cachePos = filePos - (filePos % PAGE_SIZE);
+                long pagePos = filePos - (filePos % PAGE_SIZE);
 
                 // ページのデータをキャッシュに読み込む
-                try {
-                    stream.seek(cachePos);
-                } catch (IOException e) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                }
                 int readLen = PAGE_SIZE;
-                if (info.getFileSize() < cachePos + PAGE_SIZE) {
-                    readLen = (int)(info.getFileSize() - cachePos);
+                if (info.getFileSize() < pagePos + PAGE_SIZE) {
+                    readLen = (int)(info.getFileSize() - pagePos);
                 }
-                readRawFully(cache, 0, readLen);
+                // 読み込みに失敗したページをキャッシュ済みとしない
+                cachePos = -1;
+                readRawFully(pagePos, cache, 0, readLen);
+                cachePos = pagePos;
             }
 
             // キャッシュからデータの取得
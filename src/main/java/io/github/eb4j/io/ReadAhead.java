@@ -0,0 +1,123 @@
+package io.github.eb4j.io;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.eb4j.EBException;
+
+/**
+ * Background decoder of slices that a sequential reader will need next.
+ * <p>
+ * Slices are decoded on a small pool of daemon threads shared by all
+ * files and stored in the {@link PageCache} of the file, where the reader
+ * finds them. Each task decodes with its own stream, because decoders may
+ * keep per-stream buffers. A slice that is already cached or being
+ * decoded is not scheduled again. Errors are ignored; the reader decodes
+ * the slice itself and reports them.
+ * </p>
+ * <p>
+ * Tasks are bound to the generation of the file in which they were
+ * scheduled: once the file is closed they neither reopen it nor store
+ * slices in the cache.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+final class ReadAhead {
+
+    /** Number of background threads. */
+    static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    /** Shared executor, created on first use. */
+    private static volatile ExecutorService executor = null;
+
+
+    /**
+     * Not instantiable.
+     */
+    private ReadAhead() {
+    }
+
+
+    /**
+     * Returns the shared executor.
+     *
+     * @return executor.
+     */
+    private static ExecutorService _getExecutor() {
+        ExecutorService ret = executor;
+        if (ret == null) {
+            synchronized (ReadAhead.class) {
+                ret = executor;
+                if (ret == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    ret = Executors.newFixedThreadPool(THREADS, r -> {
+                        Thread t = new Thread(r, "eb4j-read-ahead-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    executor = ret;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Schedules decoding of a range of slices.
+     *
+     * @param info file information.
+     * @param cache page cache to store the slices in.
+     * @param first index of the first slice.
+     * @param last index of the last slice, inclusive.
+     * @param size slice size.
+     */
+    static void schedule(final FileInfo info, final PageCache cache,
+                         final long first, final long last, final int size) {
+        Set<Long> pending = info.getReadAheadPending();
+        long generation = info.getGeneration();
+        for (long index = first; index <= last; index++) {
+            if (cache.contains(info, index) || !pending.add(index)) {
+                continue;
+            }
+            final long i = index;
+            _getExecutor().execute(() -> _decode(info, cache, i, size, generation));
+        }
+    }
+
+    /**
+     * Decodes a slice into the cache.
+     *
+     * @param info file information.
+     * @param cache page cache to store the slice in.
+     * @param index slice index.
+     * @param size slice size.
+     * @param generation generation of the file when the task was scheduled.
+     */
+    private static void _decode(final FileInfo info, final PageCache cache,
+                                final long index, final int size, final long generation) {
+        Set<Long> pending = info.getReadAheadPending();
+        // cancelled when the file has been closed
+        if (!pending.contains(index)) {
+            return;
+        }
+        try {
+            if (!cache.contains(info, index)) {
+                BookInputStream bis = info.newBoundStream(generation);
+                if (bis == null) {
+                    return;
+                }
+                byte[] data = new byte[size];
+                bis.decodeSlice(index, data);
+                info.putBound(cache, generation, index, data);
+            }
+        } catch (EBException | RuntimeException ignored) {
+        } finally {
+            pending.remove(index);
+        }
+    }
+}
+
+// end of ReadAhead.java
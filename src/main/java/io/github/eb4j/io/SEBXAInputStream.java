@@ -1,6 +1,7 @@
 package io.github.eb4j.io;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import io.github.eb4j.EBException;
 import io.github.eb4j.util.ByteUtil;
@@ -13,7 +14,12 @@ import io.github.eb4j.util.ByteUtil;
 public class SEBXAInputStream extends BookInputStream {
 
     /** S-EBXAスライスサイズ */
-    private static final int SEBXA_SLICE_SIZE = 4096;
+    static final int SEBXA_SLICE_SIZE = 4096;
+    /** 圧縮フラグ1バイトと8組の圧縮データの最大長 */
+    private static final int SEBXA_GROUP_SIZE = 17;
+
+    /** 圧縮データの読み込みバッファ */
+    private final byte[] _inBuf = new byte[SEBXA_SLICE_SIZE];
 
 
     /**
@@ -25,7 +31,6 @@ public class SEBXAInputStream extends BookInputStream {
     protected SEBXAInputStream(final FileInfo info) throws EBException {
         super(info);
         open();
-        cache = new byte[SEBXA_SLICE_SIZE];
     }
 
 
@@ -37,7 +42,7 @@ public class SEBXAInputStream extends BookInputStream {
     @Override
     protected void initFileInfo() throws EBException {
         try {
-            info.setRealFileSize(stream.length());
+            info.setRealFileSize(info.getChannel().size());
         } catch (IOException e) {
             throw new EBException(EBException.FAILED_READ_FILE, info.getPath(), e);
         }
@@ -76,22 +81,12 @@ public class SEBXAInputStream extends BookInputStream {
                 } else {
                     n = len - rlen;
                 }
-                try {
-                    stream.seek(filePos);
-                } catch (IOException e) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                }
-                n = readRaw(b, off+rlen, n);
+                n = readRaw(filePos, b, off+rlen, n);
                 rlen += n;
                 filePos += n;
             } else if (filePos >= info.getSebxaEndPosition()) {
                 // データ位置が本文データの後
-                try {
-                    stream.seek(filePos);
-                } catch (IOException e) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                }
-                readRawFully(b, off+rlen, len-rlen);
+                readRawFully(filePos, b, off+rlen, len-rlen);
                 filePos = filePos + (len - rlen);
                 rlen = len;
             } else {
@@ -99,33 +94,13 @@ public class SEBXAInputStream extends BookInputStream {
                 if (cachePos < 0
                     || filePos < cachePos
                     || cachePos + SEBXA_SLICE_SIZE <= filePos) {
+                    // スライスをデコードしてキャッシュに読み込む
+                    long sliceIndex = (filePos - info.getSebxaStartPosition()) / SEBXA_SLICE_SIZE;
+                    loadCache(sliceIndex, SEBXA_SLICE_SIZE);
+
                     // キャッシュのデータ位置
                     // filePosの位置が含まれるスライスの先頭位置
                     cachePos = filePos - (filePos % SEBXA_SLICE_SIZE);
-
-                    // データの位置
-                    long sliceIndex = (filePos - info.getSebxaStartPosition()) / SEBXA_SLICE_SIZE;
-                    long slicePos;
-                    if (sliceIndex == 0) {
-                        slicePos = info.getSebxaBasePosition();
-                    } else {
-                        long pos = (sliceIndex - 1) * 4 + info.getSebxaIndexPosition();
-                        try {
-                            stream.seek(pos);
-                        } catch (IOException e) {
-                            throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                        }
-                        byte[] tmp = new byte[4];
-                        readRawFully(tmp, 0, tmp.length);
-                        slicePos = info.getSebxaBasePosition() + ByteUtil.getLong4(tmp, 0);
-                    }
-                    // スライスをデコードしてキャッシュに読み込む
-                    try {
-                        stream.seek(slicePos);
-                    } catch (IOException e) {
-                        throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath(), e);
-                    }
-                    _decode();
                 }
 
                 // キャッシュからデータの取得
@@ -146,79 +121,133 @@ public class SEBXAInputStream extends BookInputStream {
     }
 
     /**
-     * 復号化します。
+     * 圧縮された本文データのスライス数を返します。
      *
+     * @param size スライスサイズ
+     * @return スライス数
+     */
+    @Override
+    protected long getSliceCount(final int size) {
+        return (info.getSebxaEndPosition() - info.getSebxaStartPosition() + size - 1) / size;
+    }
+
+    /**
+     * 圧縮スライス位置テーブルを返します。
+     * <p>
+     * テーブルは最初に使用されたときに一度だけ読み込まれます。
+     * 配列に収まらない場合はnullを返し、スライスごとにインデックスを読み込みます。
+     * </p>
+     *
+     * @return 圧縮本文開始位置からのオフセットのテーブル
      * @exception EBException 入出力エラーが発生した場合
      */
-    private void _decode() throws EBException {
-        int inRest = 0;
+    private int[] _getSliceTable() throws EBException {
+        int[] table = info.getSebxaSliceTable();
+        if (table != null) {
+            return table;
+        }
+        long count = getSliceCount(SEBXA_SLICE_SIZE);
+        if (count <= 0 || count * 4 > Integer.MAX_VALUE - 8) {
+            return null;
+        }
+        // 先頭のスライスは圧縮本文開始位置から始まる
+        byte[] b = new byte[(int)(count - 1) * 4];
+        readRawFully(info.getSebxaIndexPosition(), b, 0, b.length);
+        table = new int[(int)count];
+        for (int i=1; i<table.length; i++) {
+            table[i] = (int)ByteUtil.getLong4(b, (i - 1) * 4);
+        }
+        info.setSebxaSliceTable(table);
+        return table;
+    }
+
+    /**
+     * 指定スライスを復号化します。
+     * <p>
+     * 圧縮データは1バイトの圧縮フラグと、それに続く8組のデータ (非圧縮の1バイト
+     * または2バイトの参照) の繰り返しです。参照はスライス内の4096バイトのリングを
+     * 指し、まだ出力されていない位置は0として扱います。
+     * </p>
+     *
+     * @param index スライス番号
+     * @param out 復号化したスライスの書き込み先のバッファ
+     * @exception EBException 入出力エラーが発生した場合
+     */
+    @Override
+    protected void decodeSlice(final long index, final byte[] out) throws EBException {
+        // データの位置
+        long rawPos;
+        int[] table = _getSliceTable();
+        if (table != null && index < table.length) {
+            rawPos = info.getSebxaBasePosition() + (table[(int)index] & 0xffffffffL);
+        } else if (index == 0) {
+            rawPos = info.getSebxaBasePosition();
+        } else {
+            long pos = (index - 1) * 4 + info.getSebxaIndexPosition();
+            byte[] tmp = new byte[4];
+            readRawFully(pos, tmp, 0, tmp.length);
+            rawPos = info.getSebxaBasePosition() + ByteUtil.getLong4(tmp, 0);
+        }
+
+        byte[] in = _inBuf;
         int inOff = 0;
-        int outLen = 0;
+        int inEnd = 0;
+        boolean eof = false;
         int outOff = 0;
-        byte[] b = new byte[SEBXA_SLICE_SIZE];
-        int len = 8;
-        boolean[] flags = new boolean[len];
-        boolean loop = true;
-        while (loop) {
-            if (inRest <= 0) {
-                // バッファにデータを読み込む
-                inRest = readRaw(b, 0, b.length);
-                if (inRest <= 0) {
-                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath());
-                }
+        while (outOff < SEBXA_SLICE_SIZE) {
+            // 圧縮フラグと8組分のデータがバッファにあるようにする
+            if (inEnd - inOff < SEBXA_GROUP_SIZE && !eof) {
+                System.arraycopy(in, inOff, in, 0, inEnd - inOff);
+                inEnd -= inOff;
                 inOff = 0;
-            }
-            // 圧縮フラグ
-            int mask = 0x01;
-            for (int i=0; i<len; i++) {
-                if ((b[inOff] & mask) == 0) {
-                    flags[i] = true;
-                } else {
-                    flags[i] = false;
+                while (inEnd < SEBXA_GROUP_SIZE && !eof) {
+                    int n = readRaw(rawPos, in, inEnd, in.length - inEnd);
+                    if (n <= 0) {
+                        eof = true;
+                    } else {
+                        rawPos += n;
+                        inEnd += n;
+                    }
                 }
-                mask = mask << 1;
             }
-            inOff++;
-            inRest--;
-            // 伸張
-            for (int i=0; i<len; i++) {
-                if (flags[i]) {
-                    if (inRest <= 1) {
+            if (inOff >= inEnd) {
+                throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath());
+            }
+            // 圧縮フラグ (下位ビットから順に、0であれば圧縮されている)
+            int flags = in[inOff++] & 0xff;
+            for (int i=0; i<8 && outOff<SEBXA_SLICE_SIZE; i++, flags>>>=1) {
+                if ((flags & 0x01) != 0) {
+                    // 圧縮されていない
+                    if (inOff >= inEnd) {
                         throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath());
                     }
-                    int c0 = b[inOff] & 0xff;
-                    int c1 = b[inOff+1] & 0xff;
-                    int copyOff = (((c1 & 0xf0) << 4) + c0 + 18) % SEBXA_SLICE_SIZE;
-                    int copyLen = (c1 & 0x0f) + 3;
-                    if (outLen + copyLen > SEBXA_SLICE_SIZE) {
-                        copyLen = SEBXA_SLICE_SIZE - outLen;
-                    }
-
+                    out[outOff++] = in[inOff++];
+                    continue;
+                }
+                if (inEnd - inOff < 2) {
+                    throw new EBException(EBException.FAILED_SEEK_FILE, info.getPath());
+                }
+                int c0 = in[inOff] & 0xff;
+                int c1 = in[inOff+1] & 0xff;
+                inOff += 2;
+                int copyOff = (((c1 & 0xf0) << 4) + c0 + 18) % SEBXA_SLICE_SIZE;
+                int copyLen = Math.min((c1 & 0x0f) + 3, SEBXA_SLICE_SIZE - outOff);
+                if (copyOff >= outOff) {
+                    // リングの先頭に戻るまではまだ出力されていない位置なので0
+                    int n = Math.min(copyLen, SEBXA_SLICE_SIZE - copyOff);
+                    Arrays.fill(out, outOff, outOff + n, (byte)0x00);
+                    outOff += n;
+                    copyLen -= n;
+                    copyOff = 0;
+                }
+                if (copyOff + copyLen <= outOff) {
+                    // 重なりがなければまとめてコピー
+                    System.arraycopy(out, copyOff, out, outOff, copyLen);
+                    outOff += copyLen;
+                } else {
                     for (int j=0; j<copyLen; j++) {
-                        if (copyOff < outOff) {
-                            cache[outOff++] = cache[copyOff];
-                        } else {
-                            cache[outOff++] = 0x00;
-                        }
-                        copyOff++;
-                        if (copyOff >= SEBXA_SLICE_SIZE) {
-                            copyOff = 0;
-                        }
+                        out[outOff++] = out[copyOff++];
                     }
-                    inRest -= 2;
-                    inOff += 2;
-                    outLen += copyLen;
-                } else {
-                    // 圧縮されていない
-                    inRest--;
-                    cache[outOff++] = b[inOff++];
-                    outLen++;
-                }
-
-                // スライスをすべて伸張したら終了
-                if (outLen >= SEBXA_SLICE_SIZE) {
-                    loop = false;
-                    break;
                 }
             }
         }
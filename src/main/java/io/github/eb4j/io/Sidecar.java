@@ -0,0 +1,295 @@
+package io.github.eb4j.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+
+import io.github.eb4j.EBException;
+import io.github.eb4j.util.TaskUtil;
+
+/**
+ * Decoded copy of a compressed book file.
+ * <p>
+ * EPWING and S-EBXA text needs a bit-level decode for every page. A
+ * sidecar holds the decoded data of such a file in PLAIN or EBZIP format
+ * next to it, named after the file with {@link #EXTENSION} appended.
+ * {@link EBFile} reads the sidecar instead of the file when it is present
+ * and was made from the same file.
+ * </p>
+ * <p>
+ * The data is followed by a trailer of {@link #TRAILER_SIZE} bytes which
+ * records the format of the data and a fingerprint of the source file:
+ * its size, the CRC-32 of its first and last pages and its modification
+ * time, taken before the source is decoded. A sidecar whose fingerprint
+ * does not match the source file is ignored, so a source rewritten in
+ * place makes its sidecar stale even if its size and ends are unchanged.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+public final class Sidecar {
+
+    /** File name extension of sidecars. */
+    public static final String EXTENSION = ".eb4j";
+    /** Size of the trailer. */
+    static final int TRAILER_SIZE = 32;
+
+    /** Magic of the trailer. */
+    private static final byte[] MAGIC = "EB4J".getBytes(StandardCharsets.US_ASCII);
+    /** Version of the trailer. */
+    private static final int VERSION = 2;
+    /** Size of the fingerprint of the source file. */
+    private static final int FINGERPRINT_SIZE = 24;
+    /** Format code of PLAIN data. */
+    private static final int DATA_PLAIN = 0;
+    /** Format code of EBZIP data. */
+    private static final int DATA_EBZIP = 1;
+    /** Number of pages decoded by one task when writing PLAIN data. */
+    private static final int CHUNK_PAGES = 256;
+
+    // protect from instantiation
+    private Sidecar() {}
+
+
+    /**
+     * Returns the sidecar of a file.
+     *
+     * @param source source file.
+     * @return sidecar file, which may not exist.
+     */
+    public static File getFile(final File source) {
+        return new File(source.getParentFile(), source.getName() + EXTENSION);
+    }
+
+    /**
+     * Write the sidecar of a file as PLAIN on the common pool.
+     *
+     * @param source source file.
+     * @return sidecar file.
+     * @exception EBException if the source could not be read or the sidecar
+     * could not be written.
+     * @see #write(EBFile, EBFormat, int, ForkJoinPool)
+     */
+    public static File write(final EBFile source) throws EBException {
+        return write(source, EBFormat.FORMAT_PLAIN, 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Write the sidecar of a file.
+     * <p>
+     * Page ranges of the source are decoded in parallel on the pool. The
+     * sidecar is written to a temporary file first and renamed, so readers
+     * never see a partial sidecar. Files opened before the sidecar is
+     * written keep reading the source.
+     * </p>
+     *
+     * @param source source file.
+     * @param format format of the sidecar, {@link EBFormat#FORMAT_PLAIN}
+     * or {@link EBFormat#FORMAT_EBZIP}.
+     * @param level compression level of EBZIP.
+     * @param pool pool decoding the source.
+     * @return sidecar file.
+     * @exception EBException if the source could not be read or the sidecar
+     * could not be written.
+     */
+    public static File write(final EBFile source, final EBFormat format, final int level,
+                             final ForkJoinPool pool) throws EBException {
+        int code;
+        if (format == EBFormat.FORMAT_PLAIN) {
+            code = DATA_PLAIN;
+        } else if (format == EBFormat.FORMAT_EBZIP) {
+            code = DATA_EBZIP;
+        } else {
+            throw new IllegalArgumentException("unsupported sidecar format: " + format);
+        }
+        File file = getFile(source.getSourceFile());
+        File tmp = null;
+        try {
+            // taken before decoding, so that a source changed meanwhile makes the sidecar stale
+            byte[] fingerprint = _fingerprint(source.getSourceFile());
+            tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp").toFile();
+            if (code == DATA_PLAIN) {
+                _writePlain(source, tmp, pool);
+            } else {
+                new EBZipWriter(level, pool).zip(source, tmp);
+            }
+            byte[] trailer = new byte[TRAILER_SIZE];
+            System.arraycopy(MAGIC, 0, trailer, 0, MAGIC.length);
+            trailer[4] = VERSION;
+            trailer[5] = (byte)code;
+            System.arraycopy(fingerprint, 0, trailer, 8, FINGERPRINT_SIZE);
+            try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                ByteBuffer buf = ByteBuffer.wrap(trailer);
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new EBException(EBException.FAILED_WRITE_FILE, file.getPath(), e);
+        } finally {
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the format of a sidecar if it is valid for the source file.
+     *
+     * @param file sidecar file.
+     * @param source source file.
+     * @return {@link EBFormat#FORMAT_PLAIN} or {@link EBFormat#FORMAT_EBZIP},
+     * or null if the sidecar does not exist, is broken or is stale.
+     */
+    static EBFormat check(final File file, final File source) {
+        if (!file.isFile() || file.length() < TRAILER_SIZE) {
+            return null;
+        }
+        byte[] trailer = new byte[TRAILER_SIZE];
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            _readFully(in, trailer, in.size() - TRAILER_SIZE);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (trailer[i] != MAGIC[i]) {
+                    return null;
+                }
+            }
+            if (trailer[4] != VERSION) {
+                return null;
+            }
+            byte[] fingerprint = _fingerprint(source);
+            for (int i = 0; i < fingerprint.length; i++) {
+                if (trailer[8 + i] != fingerprint[i]) {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        switch (trailer[5]) {
+            case DATA_PLAIN:
+                return EBFormat.FORMAT_PLAIN;
+            case DATA_EBZIP:
+                return EBFormat.FORMAT_EBZIP;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Write the decoded data of a file as PLAIN.
+     *
+     * @param source source file.
+     * @param target file to write.
+     * @param pool pool decoding the source.
+     * @exception EBException if the source could not be read.
+     * @exception IOException if the target could not be written.
+     */
+    private static void _writePlain(final EBFile source, final File target,
+                                    final ForkJoinPool pool) throws EBException, IOException {
+        BookChannel channel = source.getBookChannel();
+        long size = channel.size();
+        long chunk = (long)CHUNK_PAGES * BookInputStream.PAGE_SIZE;
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+            try {
+                for (long pos = 0; pos < size; pos += chunk) {
+                    long start = pos;
+                    int len = (int)Math.min(chunk, size - pos);
+                    tasks.add(pool.submit(() -> {
+                        byte[] b = new byte[len];
+                        channel.readFullyUncached(start, b, 0, len);
+                        ByteBuffer buf = ByteBuffer.wrap(b);
+                        while (buf.hasRemaining()) {
+                            out.write(buf, start + buf.position());
+                        }
+                        return null;
+                    }));
+                }
+                for (ForkJoinTask<Void> task : tasks) {
+                    try {
+                        TaskUtil.join(task);
+                    } catch (RuntimeException e) {
+                        for (Throwable t = e; t != null; t = t.getCause()) {
+                            if (t instanceof IOException) {
+                                throw (IOException)t;
+                            }
+                        }
+                        throw e;
+                    }
+                }
+            } finally {
+                for (ForkJoinTask<Void> task : tasks) {
+                    task.cancel(false);
+                    task.quietlyJoin();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the fingerprint of a source file.
+     *
+     * @param source source file.
+     * @return size of the file followed by the CRC-32 of its first and
+     * last pages and its modification time, {@link #FINGERPRINT_SIZE} bytes.
+     * @exception IOException if the file could not be read.
+     */
+    private static byte[] _fingerprint(final File source) throws IOException {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            int len = (int)Math.min(size, BookInputStream.PAGE_SIZE);
+            byte[] page = new byte[len];
+            CRC32 first = new CRC32();
+            _readFully(in, page, 0);
+            first.update(page);
+            CRC32 last = new CRC32();
+            _readFully(in, page, size - len);
+            last.update(page);
+
+            long mtime = Files.getLastModifiedTime(source.toPath()).toMillis();
+            byte[] b = new byte[FINGERPRINT_SIZE];
+            ByteBuffer.wrap(b).putLong(size).putInt((int)first.getValue()).putInt((int)last.getValue())
+                .putLong(mtime);
+            return b;
+        }
+    }
+
+    /**
+     * Read bytes at a position.
+     *
+     * @param in channel to read.
+     * @param b destination.
+     * @param pos position.
+     * @exception IOException if the bytes could not be read.
+     */
+    private static void _readFully(final FileChannel in, final byte[] b, final long pos) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while (buf.hasRemaining()) {
+            if (in.read(buf, pos + buf.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+    }
+}
+
+// end of Sidecar.java
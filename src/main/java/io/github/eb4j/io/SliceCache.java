@@ -0,0 +1,257 @@
+package io.github.eb4j.io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Cache of compressed slices shared by all streams.
+ * <p>
+ * This is the lower tier below {@link PageCache}. {@link EBZipInputStream}
+ * and {@link EPWINGInputStream} look up the compressed bytes of a slice
+ * here before they read them from the file, so that a slice evicted from
+ * the page cache is decompressed again from memory without any file I/O.
+ * Compressed slices are several times smaller than decoded ones, so a
+ * cache of the same size holds several times more of the book.
+ * </p>
+ * <p>
+ * Entries are copied in and out, keyed by file and slice index, and are
+ * evicted in least-recently-used order when the total size exceeds the
+ * limit. They are kept in heap arrays, or outside the Java heap when the
+ * cache is built as direct. A direct cache carves slices out of a few
+ * direct arenas of up to {@link #ARENA_SIZE} bytes, used in turn like a
+ * ring: when the arenas are full, the oldest one is reused and the slices
+ * still held in it are evicted. It holds at most the size limit plus one
+ * arena of direct memory.
+ * </p>
+ * <p>
+ * A cache is configured per book with
+ * {@link io.github.eb4j.Book#setSliceCache(SliceCache)}, or per file with
+ * {@link EBFile#setSliceCache(SliceCache)}. Files without their own cache
+ * use the global cache returned by {@link #getDefault()}, which is
+ * disabled by default.
+ * </p>
+ *
+ * @author Hiroshi Miura
+ */
+public final class SliceCache extends LruCache<SliceCache.Slot> {
+
+    /** Maximum size of a direct arena in bytes. */
+    public static final int ARENA_SIZE = 1024 * 1024;
+
+    /** Global cache. */
+    private static volatile SliceCache defaultCache = null;
+
+    /** Whether slices are kept outside the Java heap. */
+    private final boolean _direct;
+    /** Direct arenas (null for a heap cache). */
+    private final ByteBuffer[] _arenas;
+    /** Size of a direct arena. */
+    private final int _arenaSize;
+    /** Arena receiving new slices. */
+    private int _arena = 0;
+    /** Next free position in the arena receiving new slices. */
+    private int _arenaPos = 0;
+
+
+    /**
+     * Build a cache on the Java heap.
+     *
+     * @param maxSize size limit in bytes.
+     */
+    public SliceCache(final long maxSize) {
+        this(maxSize, false);
+    }
+
+    /**
+     * Build a cache.
+     *
+     * @param maxSize size limit in bytes.
+     * @param direct true to keep slices in direct buffers outside the Java heap.
+     */
+    public SliceCache(final long maxSize, final boolean direct) {
+        super(maxSize);
+        _direct = direct;
+        if (direct && maxSize > 0) {
+            _arenaSize = (int) Math.min(ARENA_SIZE, maxSize);
+            // one more arena so that a reused arena does not cut the cache below its limit
+            _arenas = new ByteBuffer[(int) ((maxSize + _arenaSize - 1) / _arenaSize) + 1];
+        } else {
+            _arenaSize = 0;
+            _arenas = null;
+        }
+    }
+
+
+    /**
+     * Returns the global cache.
+     *
+     * @return global cache, or null if disabled.
+     */
+    public static SliceCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Set the global cache.
+     *
+     * @param cache global cache, or null to disable.
+     */
+    public static void setDefault(final SliceCache cache) {
+        defaultCache = cache;
+    }
+
+    @Override
+    long sizeOf(final Slot value) {
+        return value._data.capacity();
+    }
+
+    /**
+     * Copies a compressed slice into a buffer.
+     *
+     * @param info file information.
+     * @param index slice index.
+     * @param b destination.
+     * @param len size of the compressed slice.
+     * @return true if the slice was cached and copied.
+     */
+    boolean get(final FileInfo info, final long index, final byte[] b, final int len) {
+        // copy under the lock so that a reused arena is not overwritten meanwhile
+        synchronized (lock()) {
+            Slot slot = lookup(info, index);
+            if (slot == null || slot._data.capacity() != len) {
+                recordMiss();
+                return false;
+            }
+            // duplicate so that concurrent readers do not share the position
+            slot._data.duplicate().get(b, 0, len);
+        }
+        recordHit();
+        return true;
+    }
+
+    /**
+     * Stores a copy of a compressed slice.
+     *
+     * @param info file information.
+     * @param index slice index.
+     * @param b compressed slice.
+     * @param len size of the compressed slice.
+     */
+    void put(final FileInfo info, final long index, final byte[] b, final int len) {
+        if (len <= 0 || len > getMaxSize()) {
+            return;
+        }
+        if (_arenas == null) {
+            store(info, index, new Slot(ByteBuffer.wrap(Arrays.copyOf(b, len)), -1));
+            return;
+        }
+        if (len > _arenaSize) {
+            return;
+        }
+        synchronized (lock()) {
+            Slot slot = _allocate(len);
+            slot._data.duplicate().put(b, 0, len);
+            store(info, index, slot);
+        }
+    }
+
+    /**
+     * Allocates a slot in the direct arenas.
+     * <p>
+     * Must be called while holding the lock.
+     * </p>
+     *
+     * @param len size of the slot.
+     * @return slot.
+     */
+    private Slot _allocate(final int len) {
+        if (_arenas[_arena] != null && _arenaPos + len > _arenaSize) {
+            _arena = (_arena + 1) % _arenas.length;
+            _arenaPos = 0;
+            if (_arenas[_arena] != null) {
+                // 最も古いアリーナを再利用する
+                int arena = _arena;
+                evictIf(slot -> slot._arena == arena);
+            }
+        }
+        if (_arenas[_arena] == null) {
+            _arenas[_arena] = ByteBuffer.allocateDirect(_arenaSize);
+        }
+        ByteBuffer data = _arenas[_arena].duplicate();
+        data.position(_arenaPos);
+        data.limit(_arenaPos + len);
+        _arenaPos += len;
+        return new Slot(data.slice(), _arena);
+    }
+
+    /**
+     * Removes all cached slices.
+     * <p>
+     * Direct arenas are kept and reused from the first one.
+     * </p>
+     */
+    @Override
+    public void clear() {
+        synchronized (lock()) {
+            super.clear();
+            _arena = 0;
+            _arenaPos = 0;
+        }
+    }
+
+    /**
+     * Returns the number of allocated direct arenas.
+     *
+     * @return number of arenas (0 for a heap cache).
+     */
+    int getArenaCount() {
+        int count = 0;
+        if (_arenas != null) {
+            synchronized (lock()) {
+                for (ByteBuffer arena : _arenas) {
+                    if (arena != null) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether slices are kept outside the Java heap.
+     *
+     * @return true if slices are kept in direct buffers.
+     */
+    public boolean isDirect() {
+        return _direct;
+    }
+
+    @Override
+    String describe() {
+        return ", direct=" + _direct;
+    }
+
+    /**
+     * Compressed slice held in a heap array or a direct arena.
+     */
+    static final class Slot {
+        /** Bytes of the slice. */
+        private final ByteBuffer _data;
+        /** Arena holding the slice (-1 on the heap). */
+        private final int _arena;
+
+        /**
+         * Build a slot.
+         *
+         * @param data bytes of the slice.
+         * @param arena arena holding the slice, or -1 on the heap.
+         */
+        Slot(final ByteBuffer data, final int arena) {
+            _data = data;
+            _arena = arena;
+        }
+    }
+}
+
+// end of SliceCache.java
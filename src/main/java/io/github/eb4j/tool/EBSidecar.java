@@ -0,0 +1,154 @@
+package io.github.eb4j.tool;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+
+import io.github.eb4j.Book;
+import io.github.eb4j.EBException;
+import io.github.eb4j.SubBook;
+import io.github.eb4j.io.EBFile;
+import io.github.eb4j.io.EBFormat;
+import io.github.eb4j.io.EBZipConstants;
+import io.github.eb4j.io.Sidecar;
+
+/**
+ * Command line tool to write sidecars of compressed text.
+ * <p>
+ * The EPWING and S-EBXA compressed text of each subbook of a book is
+ * decoded into a sidecar next to it, as PLAIN or with {@code -z} as
+ * EBZIP. Text already read from a valid sidecar is skipped unless
+ * {@code -f} is given.
+ * </p>
+ * <pre>
+ * java -cp eb4j.jar io.github.eb4j.tool.EBSidecar [-f] [-z] [-l level] [-t threads] book_dir
+ * </pre>
+ *
+ * @author Hiroshi Miura
+ * @see Sidecar
+ */
+public final class EBSidecar {
+
+    /** Usage message. */
+    private static final String USAGE =
+            "usage: EBSidecar [-f] [-z] [-l level] [-t threads] book_dir";
+
+    /** Whether valid sidecars are written again. */
+    private boolean _force = false;
+    /** Format of sidecars. */
+    private EBFormat _format = EBFormat.FORMAT_PLAIN;
+    /** Compression level of EBZIP. */
+    private int _level = EBZipConstants.EBZIP_DEFAULT_LEVEL;
+    /** Number of decoding threads. */
+    private int _threads = Runtime.getRuntime().availableProcessors();
+    /** Book directory. */
+    private File _bookDir = null;
+
+
+    /**
+     * Build a tool.
+     */
+    private EBSidecar() {
+        super();
+    }
+
+
+    /**
+     * Run the tool.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(final String[] args) {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Run the tool.
+     *
+     * @param args command line arguments.
+     * @param out stream of progress messages.
+     * @param err stream of error messages.
+     * @return exit status.
+     */
+    static int run(final String[] args, final PrintStream out, final PrintStream err) {
+        EBSidecar tool = new EBSidecar();
+        if (!tool._parse(args)) {
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            tool._process(out);
+        } catch (EBException | IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Parse command line arguments.
+     *
+     * @param args command line arguments.
+     * @return true if the arguments are valid.
+     */
+    private boolean _parse(final String[] args) {
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i++) {
+                switch (args[i]) {
+                    case "-f":
+                        _force = true;
+                        break;
+                    case "-z":
+                        _format = EBFormat.FORMAT_EBZIP;
+                        break;
+                    case "-l":
+                        _level = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                        _threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+        if (args.length - i != 1 || _threads < 1) {
+            return false;
+        }
+        _bookDir = new File(args[i]);
+        return true;
+    }
+
+    /**
+     * Write sidecars of the book.
+     *
+     * @param out stream of progress messages.
+     * @exception EBException if a book file could not be read or written.
+     */
+    private void _process(final PrintStream out) throws EBException {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        try (Book book = new Book(_bookDir)) {
+            for (SubBook sub : book.getSubBooks()) {
+                EBFile text = sub.getTextFile();
+                EBFormat format = text.getFormat();
+                if (text.isSidecar() && !_force) {
+                    out.println(text.getSourceFile() + ": sidecar is up to date");
+                } else if (text.isSidecar() || format == EBFormat.FORMAT_EPWING
+                        || format == EBFormat.FORMAT_EPWING6 || format == EBFormat.FORMAT_SEBXA) {
+                    File file = Sidecar.write(text, _format, _level, pool);
+                    out.println(text.getSourceFile() + " -> " + file);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
+
+// end of EBSidecar.java
@@ -0,0 +1,183 @@
+package io.github.eb4j.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import io.github.eb4j.Book;
+import io.github.eb4j.EBException;
+import io.github.eb4j.SubBook;
+import io.github.eb4j.io.EBFile;
+import io.github.eb4j.io.EBZipConstants;
+import io.github.eb4j.io.EBZipWriter;
+import io.github.eb4j.io.Sidecar;
+
+/**
+ * Command line tool to compress and uncompress books in EBZIP.
+ * <p>
+ * The book directory is copied to the output directory, and the text,
+ * graphic and sound files of each subbook are compressed into EBZIP, or
+ * with {@code -u} uncompressed into PLAIN files. Other files except
+ * sidecars are copied as is.
+ * </p>
+ * <pre>
+ * java -cp eb4j.jar io.github.eb4j.tool.EBZip [-u] [-l level] [-t threads] book_dir output_dir
+ * </pre>
+ *
+ * @author Hiroshi Miura
+ */
+public final class EBZip {
+
+    /** Usage message. */
+    private static final String USAGE =
+            "usage: EBZip [-u] [-l level] [-t threads] book_dir output_dir";
+
+    /** Whether files are uncompressed. */
+    private boolean _unzip = false;
+    /** Compression level. */
+    private int _level = EBZipConstants.EBZIP_DEFAULT_LEVEL;
+    /** Number of compressing threads. */
+    private int _threads = Runtime.getRuntime().availableProcessors();
+    /** Book directory. */
+    private File _bookDir = null;
+    /** Output directory. */
+    private File _outDir = null;
+
+
+    /**
+     * Build a tool.
+     */
+    private EBZip() {
+        super();
+    }
+
+
+    /**
+     * Run the tool.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(final String[] args) {
+        int status = run(args, System.out, System.err);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Run the tool.
+     *
+     * @param args command line arguments.
+     * @param out stream of progress messages.
+     * @param err stream of error messages.
+     * @return exit status.
+     */
+    static int run(final String[] args, final PrintStream out, final PrintStream err) {
+        EBZip tool = new EBZip();
+        if (!tool._parse(args)) {
+            err.println(USAGE);
+            return 2;
+        }
+        try {
+            tool._process(out);
+        } catch (EBException | IOException | IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Parse command line arguments.
+     *
+     * @param args command line arguments.
+     * @return true if the arguments are valid.
+     */
+    private boolean _parse(final String[] args) {
+        int i = 0;
+        try {
+            for (; i < args.length && args[i].startsWith("-"); i++) {
+                switch (args[i]) {
+                    case "-u":
+                        _unzip = true;
+                        break;
+                    case "-l":
+                        _level = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                        _threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+        if (args.length - i != 2 || _threads < 1) {
+            return false;
+        }
+        _bookDir = new File(args[i]);
+        _outDir = new File(args[i + 1]);
+        return true;
+    }
+
+    /**
+     * Copy the book to the output directory.
+     *
+     * @param out stream of progress messages.
+     * @exception EBException if a book file could not be read or written.
+     * @exception IOException if a file could not be copied.
+     */
+    private void _process(final PrintStream out) throws EBException, IOException {
+        ForkJoinPool pool = new ForkJoinPool(_threads);
+        try (Book book = new Book(_bookDir)) {
+            EBZipWriter writer = new EBZipWriter(_level, pool);
+            Map<Path, EBFile> dataFiles = new LinkedHashMap<>();
+            for (SubBook sub : book.getSubBooks()) {
+                for (EBFile file : new EBFile[] {sub.getTextFile(), sub.getGraphicFile(), sub.getSoundFile()}) {
+                    if (file != null) {
+                        dataFiles.putIfAbsent(file.getSourceFile().getCanonicalFile().toPath(), file);
+                    }
+                }
+            }
+            Path root = _bookDir.toPath();
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(root)) {
+                // sidecars would not match the converted files
+                files = stream.filter(Files::isRegularFile)
+                        .filter(p -> !p.getFileName().toString().endsWith(Sidecar.EXTENSION))
+                        .collect(Collectors.toList());
+            }
+            for (Path path : files) {
+                Path dir = _outDir.toPath().resolve(root.relativize(path)).getParent();
+                Files.createDirectories(dir);
+                EBFile file = dataFiles.get(path.toFile().getCanonicalFile().toPath());
+                if (file == null) {
+                    Files.copy(path, dir.resolve(path.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                } else if (_unzip) {
+                    File target = new File(dir.toFile(), file.getName());
+                    long size = writer.unzip(file, target);
+                    out.println(path + " -> " + target + " (" + size + " bytes)");
+                } else {
+                    File target = new File(dir.toFile(), file.getName() + ".ebz");
+                    long size = writer.zip(file, target);
+                    out.println(path + " -> " + target + " (" + size + " bytes)");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
+
+// end of EBZip.java
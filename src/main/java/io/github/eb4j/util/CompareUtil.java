@@ -28,8 +28,25 @@ public final class CompareUtil {
      */
     public static int compareToByte(final byte[] key, final byte[] pattern,
                                     final boolean presearch) {
+        return compareToByte(key, pattern, 0, pattern.length, presearch);
+    }
+
+    /**
+     * Compare byte by byte between key and pattern.
+     *
+     * @param key key
+     * @param pattern pattern
+     * @param off offset of the pattern in the array
+     * @param len length of the pattern
+     * @param presearch true when trying prefix match
+     * @return 0 if key and pattern are same, or key has a same prefix as pattern,
+     *         &gt;0 if key is larger than pattern,
+     *         &lt;0 if key is smaller than pattern.
+     */
+    public static int compareToByte(final byte[] key, final byte[] pattern, final int off,
+                                    final int len, final boolean presearch) {
         int klen = key.length;
-        int plen = pattern.length;
+        int plen = len;
         int kByte, pByte;
         for (int i=0; i<klen; i++) {
             if (i >= plen) {
@@ -43,7 +60,7 @@ public final class CompareUtil {
                 return 0;
             }
             kByte = key[i] & 0xff;
-            pByte = pattern[i] & 0xff;
+            pByte = pattern[off + i] & 0xff;
             if (kByte != pByte) {
                 return kByte - pByte;
             }
@@ -63,8 +80,25 @@ public final class CompareUtil {
      */
     public static int compareToJISX0208(final byte[] key, final byte[] pattern,
                                         final boolean presearch) {
+        return compareToJISX0208(key, pattern, 0, pattern.length, presearch);
+    }
+
+    /**
+     * Comparison between key and pattern with JIS X 0208 character set.
+     *
+     * @param key key (JIS X 0208)
+     * @param pattern pattern (JIS X 0208)
+     * @param off offset of the pattern in the array
+     * @param len length of the pattern
+     * @param presearch true when trying prefix match.
+     * @return 0 if key and pattern are same, or key has same prefix with pattern,
+     *         &gt;0 if key is larger than pattern,
+     *         &lt;0 if key is smaller than pattern.
+     */
+    public static int compareToJISX0208(final byte[] key, final byte[] pattern, final int off,
+                                        final int len, final boolean presearch) {
         int klen = key.length;
-        int plen = pattern.length;
+        int plen = len;
         int kByte, pByte;
         for (int i=0; i<klen; i++) {
             if (i >= plen) {
@@ -76,25 +110,25 @@ public final class CompareUtil {
             }
             if (key[i] == '\0') {
                 // パターン末尾のスペースは無視する
-                while (i < plen && pattern[i] == '\0') {
+                while (i < plen && pattern[off + i] == '\0') {
                     i++;
                 }
                 return i - plen;
             }
             kByte = key[i] & 0xff;
-            pByte = pattern[i] & 0xff;
+            pByte = pattern[off + i] & 0xff;
             if (kByte != pByte) {
                 return kByte - pByte;
             }
         }
         if (klen < plen) {
-            while (klen < plen && pattern[klen] == '\0') {
+            while (klen < plen && pattern[off + klen] == '\0') {
                 klen++;
             }
             return klen - plen;
         }
         return 0;
-     }
+    }
 
     /**
      * Comparison between key and pattern with ISO 8859-1 character set.
@@ -108,8 +142,25 @@ public final class CompareUtil {
      */
     public static int compareToLatin(final byte[] key, final byte[] pattern,
                                      final boolean presearch) {
+        return compareToLatin(key, pattern, 0, pattern.length, presearch);
+    }
+
+    /**
+     * Comparison between key and pattern with ISO 8859-1 character set.
+     *
+     * @param key key (ISO 8859-1)
+     * @param pattern pattern (ISO 8859-1)
+     * @param off offset of the pattern in the array
+     * @param len length of the pattern
+     * @param presearch true when trying prefix match.
+     * @return 0 if key and pattern are same, or key has same prefix with pattern,
+     *         &gt;0 if key is larger than pattern,
+     *         &lt;0 if key is smaller than pattern.
+     */
+    public static int compareToLatin(final byte[] key, final byte[] pattern, final int off,
+                                     final int len, final boolean presearch) {
         int klen = key.length;
-        int plen = pattern.length;
+        int plen = len;
         int kByte, pByte;
         for (int i=0; i<klen; i++) {
             if (i >= plen) {
@@ -121,19 +172,19 @@ public final class CompareUtil {
             }
             if (key[i] == '\0') {
                 // パターン末尾のスペースは無視する
-                while (i < plen && (pattern[i] == ' ' || pattern[i] == '\0')) {
+                while (i < plen && (pattern[off + i] == ' ' || pattern[off + i] == '\0')) {
                     i++;
                 }
                 return i - plen;
             }
             kByte = key[i] & 0xff;
-            pByte = pattern[i] & 0xff;
+            pByte = pattern[off + i] & 0xff;
             if (kByte != pByte) {
                 return kByte - pByte;
             }
         }
         if (klen < plen) {
-            while (klen < plen && (pattern[klen] == ' ' || pattern[klen] == '\0')) {
+            while (klen < plen && (pattern[off + klen] == ' ' || pattern[off + klen] == '\0')) {
                 klen++;
             }
             return klen - plen;
@@ -153,8 +204,25 @@ public final class CompareUtil {
      */
     public static int compareToKanaGroup(final byte[] key, final byte[] pattern,
                                          final boolean exact) {
+        return compareToKanaGroup(key, pattern, 0, pattern.length, exact);
+    }
+
+    /**
+     * Comparison between key and pattern with JIS X 0208 character set.
+     *
+     * @param key key (JIS X 0208)
+     * @param pattern pattern (JIS X 0208)
+     * @param off offset of the pattern in the array
+     * @param len length of the pattern
+     * @param exact true if trying exact match.
+     * @return 0 if key and pattern are same,
+     *         &gt;0 if key is larger than pattern,
+     *         &lt;0 if key is smaller than pattern.
+     */
+    public static int compareToKanaGroup(final byte[] key, final byte[] pattern, final int off,
+                                         final int len, final boolean exact) {
         int klen = key.length;
-        int plen = pattern.length;
+        int plen = len;
         int kc0, kc1, pc0, pc1;
         for (int i=0; i<klen; i+=2) {
             if (i >= plen) {
@@ -162,19 +230,19 @@ public final class CompareUtil {
             }
             if (key[i] == '\0') {
                 if (exact) {
-                    return 0 - (pattern[i] & 0xff);
+                    return 0 - (pattern[off + i] & 0xff);
                 } else {
                     return 0;
                 }
             }
             if (i+1 >= klen || i+1 >= plen) {
-                return (key[i] & 0xff) - (pattern[i] & 0xff);
+                return (key[i] & 0xff) - (pattern[off + i] & 0xff);
             }
 
             kc0 = key[i] & 0xff;
             kc1 = key[i+1] & 0xff;
-            pc0 = pattern[i] & 0xff;
-            pc1 = pattern[i+1] & 0xff;
+            pc0 = pattern[off + i] & 0xff;
+            pc1 = pattern[off+i+1] & 0xff;
             if ((kc0 == 0x24 || kc0 == 0x25) && (pc0 == 0x24 || pc0 == 0x25)) {
                 if (kc1 != pc1) {
                     return ((kc0 << 8) + kc1) - ((pc0 << 8) + pc1);
@@ -186,13 +254,13 @@ public final class CompareUtil {
             }
         }
         if (klen < plen && exact) {
-            return 0 - (pattern[klen] & 0xff);
+            return 0 - (pattern[off + klen] & 0xff);
         }
         return 0;
-     }
+    }
 
     /**
-      * Comparison between key and pattern with JIS X 0208 character set.
+     * Comparison between key and pattern with JIS X 0208 character set.
      *
      * @param key key (JIS X 0208)
      * @param pattern pattern (JIS X 0208)
@@ -203,8 +271,25 @@ public final class CompareUtil {
      */
     public static int compareToKanaSingle(final byte[] key, final byte[] pattern,
                                           final boolean exact) {
+        return compareToKanaSingle(key, pattern, 0, pattern.length, exact);
+    }
+
+    /**
+     * Comparison between key and pattern with JIS X 0208 character set.
+     *
+     * @param key key (JIS X 0208)
+     * @param pattern pattern (JIS X 0208)
+     * @param off offset of the pattern in the array
+     * @param len length of the pattern
+     * @param exact true if trying exact match.
+     * @return 0 if key and pattern are same,
+     *         &gt;0 if key is larger than pattern,
+     *         &lt;0 if key is smaller than pattern.
+     */
+    public static int compareToKanaSingle(final byte[] key, final byte[] pattern, final int off,
+                                          final int len, final boolean exact) {
         int klen = key.length;
-        int plen = pattern.length;
+        int plen = len;
         int kc0, kc1, pc0, pc1;
         for (int i=0; i<klen; i+=2) {
             if (i >= plen) {
@@ -212,19 +297,19 @@ public final class CompareUtil {
             }
             if (key[i] == '\0') {
                 if (exact) {
-                    return 0 - (pattern[i] & 0xff);
+                    return 0 - (pattern[off + i] & 0xff);
                 } else {
                     return 0;
                 }
             }
             if (i+1 >= klen || i+1 >= plen) {
-                return (key[i] & 0xff) - (pattern[i] & 0xff);
+                return (key[i] & 0xff) - (pattern[off + i] & 0xff);
             }
 
             kc0 = key[i] & 0xff;
             kc1 = key[i+1] & 0xff;
-            pc0 = pattern[i] & 0xff;
-            pc1 = pattern[i+1] & 0xff;
+            pc0 = pattern[off + i] & 0xff;
+            pc1 = pattern[off+i+1] & 0xff;
             if ((kc0 == 0x24 || kc0 == 0x25) && (pc0 == 0x24 || pc0 == 0x25)) {
                 if (kc1 != pc1) {
                     return kc1 - pc1;
@@ -236,10 +321,10 @@ public final class CompareUtil {
             }
         }
         if (klen < plen && exact) {
-            return 0 - (pattern[klen] & 0xff);
+            return 0 - (pattern[off + klen] & 0xff);
         }
         return 0;
-     }
+    }
 }
 
 // end of CompareUtil.java
@@ -0,0 +1,50 @@
+package io.github.eb4j.util;
+
+import java.util.concurrent.ForkJoinTask;
+
+import io.github.eb4j.EBException;
+
+/**
+ * Utility class for tasks run on a fork-join pool.
+ *
+ * @author Hiroshi Miura
+ */
+public final class TaskUtil {
+
+    /**
+     * Utility class should not be instantiated.
+     *
+     */
+    private TaskUtil() {
+        super();
+    }
+
+
+    /**
+     * Waits for a task and returns its result.
+     * <p>
+     * {@link ForkJoinTask#join()} rethrows a checked exception of the task
+     * wrapped in a RuntimeException. An EBException found in the causes is
+     * unwrapped and thrown as is.
+     * </p>
+     *
+     * @param <T> type of the result.
+     * @param task task.
+     * @return result of the task.
+     * @exception EBException if the task failed with an EBException.
+     */
+    public static <T> T join(final ForkJoinTask<T> task) throws EBException {
+        try {
+            return task.join();
+        } catch (RuntimeException e) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof EBException) {
+                    throw (EBException) t;
+                }
+            }
+            throw e;
+        }
+    }
+}
+
+// end of TaskUtil.java
@@ -0,0 +1,120 @@
+package io.github.eb4j;
+
+import org.testng.annotations.Test;
+
+import io.github.eb4j.hook.DefaultHook;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Test for AsyncSubBook.
+ */
+public class AsyncSubBookTest {
+
+    private SubBook openSubBook() throws EBException {
+        File bookPath = new File(this.getClass().getResource("/data/epwing").getFile());
+        return new Book(bookPath).getSubBook(1);
+    }
+
+    @Test
+    void testSearchWordAndGetText() throws Exception {
+        SubBook sub = openSubBook();
+        AsyncSubBook async = sub.async();
+        assertNotNull(async.getExecutor());
+        List<Result> results = async.searchWord("Tokyo", 0).get();
+        assertEquals(results.size(), 1);
+        Result result = results.get(0);
+        String text = async.getText(result.getTextPosition(), new DefaultHook(sub)).get();
+        assertEquals(text, "Tokyo\n\u6771\u4eac\n");
+        assertEquals(async.getHeading(result.getHeadingPosition(), new DefaultHook(sub)).get(),
+                     result.getHeading(new DefaultHook(sub)));
+        assertEquals(async.searchWord("Tokyo", 1).get().size(), 1);
+        assertEquals(async.searchExactword("Tokyo", 0).get().size(), countResults(sub.searchExactword("Tokyo")));
+        sub.getBook().close();
+    }
+
+    @Test
+    void testExecutor() throws Exception {
+        SubBook sub = openSubBook();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AsyncSubBook async = sub.async(executor);
+        assertEquals(async.getExecutor(), executor);
+        assertEquals(async.getSubBook(), sub);
+        assertEquals(async.searchWord("Tokyo", 0).get().size(), 1);
+        executor.shutdown();
+        sub.getBook().close();
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        SubBook sub = openSubBook();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        CompletableFuture<List<Result>> future = sub.async(executor).searchWord("Tokyo", 0);
+        assertTrue(future.cancel(true));
+        latch.countDown();
+        try {
+            future.get();
+            fail("cancelled search must not complete");
+        } catch (CancellationException expected) {
+            assertTrue(future.isCancelled());
+        }
+        executor.shutdown();
+        sub.getBook().close();
+    }
+
+    @Test
+    void testSearcherCancel() throws Exception {
+        SubBook sub = openSubBook();
+        Searcher searcher = sub.searchWord("Tokyo");
+        searcher.cancel();
+        assertNull(searcher.getNextResult());
+        sub.getBook().close();
+    }
+
+    @Test
+    void testRejected() throws Exception {
+        SubBook sub = openSubBook();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        CompletableFuture<List<Result>> future = sub.async(executor).searchWord("Tokyo", 0);
+        AtomicBoolean failed = new AtomicBoolean();
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            failed.set(true);
+        }
+        assertTrue(failed.get());
+        assertFalse(future.isCancelled());
+        sub.getBook().close();
+    }
+
+    private static int countResults(final Searcher searcher) throws EBException {
+        int n = 0;
+        while (searcher.getNextResult() != null) {
+            n++;
+        }
+        return n;
+    }
+}
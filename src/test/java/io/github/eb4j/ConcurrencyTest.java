@@ -0,0 +1,132 @@
+package io.github.eb4j;
+
+import org.testng.annotations.Test;
+
+import io.github.eb4j.hook.DefaultHook;
+import io.github.eb4j.hook.Hook;
+import io.github.eb4j.io.PageCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Stress test sharing one book between many threads.
+ * <p>
+ * Every thread runs the same lookups and compares the results with
+ * those of a single thread. The throughput is measured by
+ * ConcurrencyBenchmark in src/jmh.
+ * </p>
+ */
+public class ConcurrencyTest {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int ITERATIONS = 200;
+
+    private File getBookDir(final String book) {
+        return new File(this.getClass().getResource("/data/" + book).getFile());
+    }
+
+    /**
+     * Runs a task repeatedly on many threads started at once.
+     */
+    private void hammer(final Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        task.call();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testSearchWordAndGetText() throws Exception {
+        try (Book book = new Book(getBookDir("epwing-zipped"))) {
+            book.setPageCache(new PageCache(PageCache.DEFAULT_SIZE));
+            SubBook sub = book.getSubBook(1);
+            Result first = sub.searchWord("Tokyo").getNextResult();
+            assertNotNull(first);
+            String expected = first.getText(new DefaultHook(sub));
+            String heading = first.getHeading(new DefaultHook(sub));
+            hammer(() -> {
+                Hook<String> hook = new DefaultHook(sub);
+                Result result = sub.searchWord("Tokyo").getNextResult();
+                assertNotNull(result);
+                assertEquals(result.getText(hook), expected);
+                assertEquals(result.getHeading(new DefaultHook(sub)), heading);
+                return null;
+            });
+        }
+    }
+
+    @Test
+    void testMemoryMappedGetText() throws Exception {
+        try (Book book = new Book(getBookDir("epwing"))) {
+            book.setMemoryMapped(true);
+            SubBook sub = book.getSubBook(1);
+            Result first = sub.searchWord("Tokyo").getNextResult();
+            assertNotNull(first);
+            long pos = first.getTextPosition();
+            String expected = sub.getText(pos, new DefaultHook(sub));
+            hammer(() -> {
+                assertEquals(sub.getText(pos, new DefaultHook(sub)), expected);
+                return null;
+            });
+        }
+    }
+
+    @Test
+    void testGaiji() throws Exception {
+        try (Book book = new Book(getBookDir("epwing-gaiji"))) {
+            SubBook sub = book.getSubBook(0);
+            byte[] narrow = sub.getFont(ExtFont.FONT_16).getNarrowFont(0xa121);
+            byte[] wide = sub.getFont(ExtFont.FONT_16).getWideFont(0xb121);
+            assertTrue(narrow.length > 0);
+            hammer(() -> {
+                // the shared font selection must not affect per-call lookups
+                sub.setFont(ExtFont.FONT_48);
+                ExtFont font = sub.getFont(ExtFont.FONT_16);
+                assertTrue(Arrays.equals(font.getNarrowFont(0xa121), narrow));
+                assertTrue(Arrays.equals(font.getWideFont(0xb121), wide));
+                sub.setFont(ExtFont.FONT_16);
+                return null;
+            });
+        }
+    }
+
+    @Test
+    void testFontAlt() throws Exception {
+        File bookPath = getBookDir("epwing-zipped");
+        try (Book book = new Book(bookPath, new File(bookPath, "appendix"))) {
+            SubAppendix appendix = book.getSubBook(0).getSubAppendix();
+            hammer(() -> {
+                assertEquals(appendix.getWideFontAlt(0xA43A), "―");
+                return null;
+            });
+        }
+    }
+}
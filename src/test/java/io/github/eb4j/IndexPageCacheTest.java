@@ -0,0 +1,81 @@
+package io.github.eb4j;
+
+import org.testng.annotations.Test;
+
+import io.github.eb4j.io.BookInputStream;
+import io.github.eb4j.io.EBFile;
+import io.github.eb4j.io.EBFormat;
+import io.github.eb4j.io.EBZipWriter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Test for IndexPageCache.
+ */
+public class IndexPageCacheTest {
+
+    @Test
+    void testSliceDecodedOnce() throws Exception {
+        File data = new File(this.getClass().getResource("/data/epwing/test/DATA").getFile());
+        byte[] plain = Files.readAllBytes(new File(data, "HONMON").toPath());
+        EBFile source = new EBFile(data, "honmon", EBFormat.FORMAT_PLAIN);
+        int pages = plain.length / BookInputStream.PAGE_SIZE;
+        for (int level = 1; level <= 3; level++) {
+            File dir = Files.createTempDirectory("index-page").toFile();
+            dir.deleteOnExit();
+            File target = new File(dir, "HONMON.ebz");
+            target.deleteOnExit();
+            new EBZipWriter(level).zip(source, target);
+            EBFile file = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+            assertEquals(file.getFormat(), EBFormat.FORMAT_EBZIP);
+
+            // scan every page as an index of the whole file
+            IndexStyle style = new IndexStyle();
+            style.setStartPage(1);
+            style.setEndPage(pages);
+            IndexPageCache cache = new IndexPageCache(style);
+            for (long page = 1; page <= pages; page++) {
+                int off = (int) BookInputStream.getPosition(page, 0);
+                assertEquals(cache.getPage(file, page),
+                        Arrays.copyOfRange(plain, off, off + BookInputStream.PAGE_SIZE));
+            }
+            // each slice is decoded once, and its other pages are served from the cache
+            int sliceSize = file.getBookChannel().getSliceSize();
+            long slices = (plain.length + sliceSize - 1) / sliceSize;
+            assertEquals(cache.getMissCount(), slices);
+            assertEquals(cache.getHitCount(), pages - slices);
+            assertEquals(cache.getPinnedCount() + cache.getLeafCount(), pages);
+            file.close();
+        }
+        source.close();
+    }
+
+    @Test
+    void testOtherPagesOfSlice() throws Exception {
+        File data = new File(this.getClass().getResource("/data/epwing/test/DATA").getFile());
+        EBFile source = new EBFile(data, "honmon", EBFormat.FORMAT_PLAIN);
+        File dir = Files.createTempDirectory("index-page").toFile();
+        dir.deleteOnExit();
+        File target = new File(dir, "HONMON.ebz");
+        target.deleteOnExit();
+        new EBZipWriter(3).zip(source, target);
+        source.close();
+        EBFile file = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+
+        // pages of the slice outside the index are not cached
+        IndexStyle style = new IndexStyle();
+        style.setStartPage(4);
+        style.setEndPage(5);
+        IndexPageCache cache = new IndexPageCache(style);
+        cache.getPage(file, 4);
+        assertEquals(cache.getPinnedCount() + cache.getLeafCount(), 2);
+        cache.getPage(file, 5);
+        assertEquals(cache.getMissCount(), 1);
+        assertEquals(cache.getHitCount(), 1);
+        file.close();
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.eb4j;
+
+import org.testng.annotations.Test;
+
+import io.github.eb4j.io.EBFile;
+import io.github.eb4j.io.EBFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Test for streams of graphic and sound data.
+ * <p>
+ * The test books have no graphic and sound data, so a data file is built
+ * here and the streams are compared with the byte array accessors.
+ * </p>
+ */
+public class PayloadInputStreamTest {
+
+    private static final int DATA_SIZE = 10000;
+
+    private EBFile createFile(final byte[] content, final String name) throws Exception {
+        File dir = Files.createTempDirectory(name).toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "DATA");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        return new EBFile(dir, "data", EBFormat.FORMAT_PLAIN);
+    }
+
+    private byte[] readAll(final InputStream in, final int chunk) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[chunk];
+        int n;
+        while ((n = in.read(b)) >= 0) {
+            out.write(b, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] randomBytes(final int size) {
+        byte[] b = new byte[size];
+        new Random(size).nextBytes(b);
+        return b;
+    }
+
+    @Test
+    void testWaveStream() throws Exception {
+        // "fmt " chunk of 28 bytes and the following sound data at 32
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[100]);
+        content.write("fmt ".getBytes("ASCII"));
+        content.write(randomBytes(28));
+        content.write(randomBytes(DATA_SIZE));
+        EBFile file = createFile(content.toByteArray(), "wave");
+        SoundData sound = new SoundData(file, new IndexStyle());
+        long pos1 = 100;
+        long pos2 = 100 + 32 + DATA_SIZE - 1;
+        byte[] expected = sound.getWaveSound(pos1, pos2);
+        assertEquals(expected.length, 44 + DATA_SIZE);
+        try (InputStream in = sound.openWaveStream(pos1, pos2)) {
+            assertEquals(in.available(), expected.length);
+            assertEquals(readAll(in, 30), expected);
+        }
+        try (InputStream in = sound.openWaveStream(pos1, pos2)) {
+            assertEquals(in.read(), expected[0] & 0xff);
+            assertEquals(in.skip(999), 999);
+            assertEquals(in.read(), expected[1000] & 0xff);
+            assertEquals(in.skip(DATA_SIZE), expected.length - 1001);
+            assertEquals(in.read(), -1);
+        }
+        file.close();
+    }
+
+    @Test
+    void testMidiStream() throws Exception {
+        EBFile file = createFile(randomBytes(DATA_SIZE), "midi");
+        SoundData sound = new SoundData(file, new IndexStyle());
+        byte[] expected = sound.getMidiSound(1000, 6000);
+        try (InputStream in = sound.openMidiStream(1000, 6000)) {
+            assertEquals(readAll(in, 4096), expected);
+        }
+        file.close();
+    }
+
+    @Test
+    void testColorGraphicStream() throws Exception {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[50]);
+        content.write("data".getBytes("ASCII"));
+        content.write(new byte[] {(byte) 0x10, (byte) 0x27, 0, 0});
+        content.write(randomBytes(DATA_SIZE));
+        EBFile file = createFile(content.toByteArray(), "graphic");
+        GraphicData graphic = new GraphicData(file, file);
+        byte[] expected = graphic.getColorGraphic(50);
+        assertEquals(expected.length, DATA_SIZE);
+        try (InputStream in = graphic.openColorGraphicStream(50)) {
+            assertEquals(readAll(in, 1000), expected);
+        }
+        file.close();
+    }
+}
@@ -4,13 +4,25 @@ import org.testng.annotations.Test;
 
 import io.github.eb4j.hook.Hook;
 import io.github.eb4j.hook.DefaultHook;
+import io.github.eb4j.io.PageCache;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Created by miurahr on 16/06/05.
@@ -263,6 +275,240 @@ public class SubBookTest {
 
     }
 
+    @Test(dependsOnGroups = {"init"})
+    void testSearchAfterClose() throws Exception {
+        Hook<String> hook = new DefaultHook(subbooks[1]);
+        book.close();
+        Result sr = subbooks[1].searchWord("Tokyo").getNextResult();
+        assertNotNull(sr);
+        assertEquals(sr.getText(hook), "Tokyo\n\u6771\u4eac\n");
+        book.close();
+    }
+
+    @Test(dependsOnGroups = {"init"})
+    void testSearchMemoryMapped() throws Exception {
+        Hook<String> hook = new DefaultHook(subbooks[1]);
+        book.setMemoryMapped(true);
+        assertTrue(book.isMemoryMapped());
+        assertTrue(subbooks[1].getTextFile().isMemoryMapped());
+        Result sr = subbooks[1].searchWord("Tokyo").getNextResult();
+        assertNotNull(sr);
+        assertEquals(sr.getText(hook), "Tokyo\n\u6771\u4eac\n");
+        book.setMemoryMapped(false);
+        assertFalse(subbooks[1].getTextFile().isMemoryMapped());
+    }
+
+    @Test
+    void testHeadwordCursor() throws Exception {
+        File bookPath = new File(this.getClass().getResource("/data/epwing").getFile());
+        try (Book plain = new Book(bookPath)) {
+            SubBook sub = plain.getSubBook(0);
+            assertNull(sub.openHeadwordCursor(SubBook.SEARCH_ENDWORD, null));
+            HeadwordCursor cursor = sub.openHeadwordCursor(SubBook.SEARCH_WORD, null);
+            // HERE, THAT, THIS in index order
+            String[] words = {"\uff28\uff25\uff32\uff25", "\uff34\uff28\uff21\uff34",
+                "\uff34\uff28\uff29\uff33"};
+            for (String word : words) {
+                assertEquals(cursor.next().getKey(), word);
+            }
+            assertNull(cursor.next());
+            for (int i = words.length - 1; i >= 0; i--) {
+                assertEquals(cursor.previous().getKey(), words[i]);
+            }
+            assertNull(cursor.previous());
+
+            cursor.seek("That");
+            String token = cursor.getToken();
+            Headword that = cursor.next();
+            assertEquals(that.getKey(), words[1]);
+            assertEquals(that.getResult().getTextPosition(),
+                    sub.searchExactword("That").getNextResult().getTextPosition());
+            cursor.seek("THB");
+            assertEquals(cursor.next().getKey(), words[2]);
+            cursor.seek("Zzz");
+            assertNull(cursor.next());
+            assertEquals(cursor.previous().getKey(), words[2]);
+
+            cursor.restore(token);
+            assertEquals(cursor.next().getKey(), words[1]);
+            HeadwordCursor restored = sub.openHeadwordCursor(token);
+            assertEquals(restored.previous().getKey(), words[0]);
+            try {
+                sub.openHeadwordCursor("91:1");
+                fail("malformed token");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    void testComplete() throws Exception {
+        File bookPath = new File(this.getClass().getResource("/data/epwing").getFile());
+        try (Book plain = new Book(bookPath)) {
+            SubBook sub = plain.getSubBook(0);
+            List<Headword> words = sub.complete("T", 0);
+            assertEquals(words.size(), 2);
+            // index keys are upper case full width letters
+            assertEquals(words.get(0).getKey(), "\uff34\uff28\uff21\uff34");
+            assertEquals(words.get(1).getKey(), "\uff34\uff28\uff29\uff33");
+            assertEquals(words.get(0).getResult().getHeading(new DefaultHook(sub)), "That");
+            assertEquals(_positions(Arrays.asList(words.get(0).getResult(), words.get(1).getResult())),
+                    _positions(sub.searchWord("T")));
+
+            List<Headword> first = sub.complete("T", 1);
+            assertEquals(first.size(), 1);
+            assertEquals(first.get(0).getKey(), words.get(0).getKey());
+            assertTrue(sub.complete("Zzz", 10).isEmpty());
+            assertTrue(sub.complete(" ", 10).isEmpty());
+
+            Headword tokyo = plain.getSubBook(1).complete("Tok", 20).get(0);
+            assertEquals(tokyo.getKey(), "\uff34\uff2f\uff2b\uff39\uff2f");
+            // the heading as displayed, unlike the normalized key
+            assertEquals(tokyo.getHeading(new DefaultHook(plain.getSubBook(1))), "Tokyo");
+            assertEquals(tokyo.getResult().getText(new DefaultHook(plain.getSubBook(1))),
+                    "Tokyo\n\u6771\u4eac\n");
+        }
+    }
+
+    @Test
+    void testSearchWords() throws Exception {
+        File bookPath = new File(this.getClass().getResource("/data/epwing").getFile());
+        try (Book plain = new Book(bookPath)) {
+            SubBook sub = plain.getSubBook(1);
+            List<String> words = Arrays.asList("Tokyo", "Tok", "", "Tokyo", "Zzz", "\u6771\u4eac");
+            Map<String, List<Result>> results = sub.searchWords(words, SubBook.SEARCH_WORD);
+            assertEquals(results.keySet(), new LinkedHashSet<>(words));
+            for (String word : results.keySet()) {
+                assertEquals(_positions(results.get(word)), _positions(sub.searchWord(word)), word);
+            }
+            assertEquals(results.get("Tokyo").size(), 1);
+            assertTrue(results.get("").isEmpty());
+
+            results = sub.searchWords(words, SubBook.SEARCH_EXACTWORD);
+            assertEquals(_positions(results.get("Tok")), _positions(sub.searchExactword("Tok")));
+            assertEquals(_positions(results.get("Tokyo")), _positions(sub.searchExactword("Tokyo")));
+
+            // a batch split across threads returns the same results
+            List<String> many = new ArrayList<>();
+            for (int i = 0; i < 3 * BatchSearcher.CHUNK_SIZE; i++) {
+                many.add("Tokyo".substring(0, 1 + i % 5) + Integer.toString(i, 36));
+            }
+            many.add("Tokyo");
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                Map<String, List<Result>> parallel = sub.searchWords(many, SubBook.SEARCH_WORD, pool);
+                Map<String, List<Result>> serial = sub.searchWords(many, SubBook.SEARCH_WORD);
+                assertEquals(parallel.keySet(), serial.keySet());
+                assertEquals(parallel.get("Tokyo").size(), 1);
+                for (String word : serial.keySet()) {
+                    assertEquals(_positions(parallel.get(word)), _positions(serial.get(word)), word);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private List<Long> _positions(final List<Result> results) {
+        List<Long> list = new ArrayList<>();
+        for (Result result : results) {
+            list.add(result.getTextPosition());
+        }
+        return list;
+    }
+
+    private List<Long> _positions(final Searcher searcher) throws EBException {
+        List<Long> list = new ArrayList<>();
+        Result result;
+        while ((result = searcher.getNextResult()) != null) {
+            list.add(result.getTextPosition());
+        }
+        return list;
+    }
+
+    @Test
+    void testSearchIndexPageCache() throws Exception {
+        File bookPath = new File(this.getClass().getResource("/data/epwing-zipped").getFile());
+        Book book = new Book(bookPath);
+        try {
+            PageCache pageCache = new PageCache(PageCache.DEFAULT_SIZE);
+            book.setPageCache(pageCache);
+            SubBook sub = book.getSubBook(1);
+            Hook<String> hook = new DefaultHook(sub);
+            Result sr = sub.searchWord("Tokyo").getNextResult();
+            assertNotNull(sr);
+            // index pages are not cached twice
+            assertEquals(pageCache.getEntryCount(), 0);
+            long misses = 0;
+            long hits = 0;
+            for (IndexStyle style : _wordStyles(sub)) {
+                misses += style.getPageCache().getMissCount();
+                hits += style.getPageCache().getHitCount();
+                assertEquals(style.getPageCache().getPinnedCount() + style.getPageCache().getLeafCount(),
+                        (int) style.getPageCache().getMissCount());
+            }
+            assertTrue(misses > 0);
+
+            // the second lookup reads no index page from the file
+            sr = sub.searchWord("Tokyo").getNextResult();
+            assertNotNull(sr);
+            assertEquals(sr.getText(hook), "Tokyo\n\u6771\u4eac\n");
+            long misses2 = 0;
+            long hits2 = 0;
+            for (IndexStyle style : _wordStyles(sub)) {
+                misses2 += style.getPageCache().getMissCount();
+                hits2 += style.getPageCache().getHitCount();
+            }
+            assertEquals(misses2, misses);
+            assertTrue(hits2 > hits);
+        } finally {
+            book.close();
+        }
+        // closing the book drops the cached index pages
+        for (IndexStyle style : _wordStyles(book.getSubBook(1))) {
+            assertEquals(style.getPageCache().getPinnedCount() + style.getPageCache().getLeafCount(), 0);
+        }
+    }
+
+    private Set<IndexStyle> _wordStyles(final SubBook sub) {
+        Set<IndexStyle> styles =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int type : new int[] {SubBook.KANA, SubBook.KANJI, SubBook.ALPHABET}) {
+            if (sub.getWordIndexStyle(type) != null) {
+                styles.add(sub.getWordIndexStyle(type));
+            }
+        }
+        return styles;
+    }
+
+    @Test
+    void testSearchResident() throws Exception {
+        File bookPath = new File(this.getClass().getResource("/data/epwing-zipped").getFile());
+        try (Book zipped = new Book(bookPath)) {
+            SubBook sub = zipped.getSubBook(1);
+            Hook<String> hook = new DefaultHook(sub);
+            long textSize = sub.getTextFile().getBookChannel().size();
+
+            // a budget below the text size keeps the text streamed
+            assertEquals(zipped.setResident(textSize - 1), 0L);
+            assertFalse(sub.getTextFile().isResident());
+
+            long size = zipped.setResident(Long.MAX_VALUE);
+            assertEquals(zipped.getResidentBudget(), Long.MAX_VALUE);
+            assertEquals(zipped.getResidentSize(), size);
+            assertTrue(sub.getTextFile().isResident());
+            assertEquals(sub.getTextFile().getResidentSize(), textSize);
+            Result sr = sub.searchWord("Tokyo").getNextResult();
+            assertNotNull(sr);
+            assertEquals(sr.getText(hook), "Tokyo\n\u6771\u4eac\n");
+
+            assertEquals(zipped.setResident(0), 0L);
+            assertFalse(sub.getTextFile().isResident());
+            assertEquals(zipped.getResidentSize(), 0L);
+        }
+    }
+
     @Test(dependsOnGroups = {"init"})
     void testToString() {
         assertEquals(subbooks[0].toString(), subbooks[0].getTitle());
@@ -0,0 +1,312 @@
+package io.github.eb4j.io;
+
+import io.github.eb4j.EBException;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static io.github.eb4j.io.TestBooks.getDataDir;
+import static io.github.eb4j.io.TestBooks.readAll;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Test for EBFile input streams.
+ */
+public class EBFileTest {
+
+    @Test
+    void testMemoryMappedPlain() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN);
+        byte[] expected = readAll(file);
+        assertFalse(file.isMemoryMapped());
+        file.setMemoryMapped(true);
+        assertTrue(file.isMemoryMapped());
+        try (BookInputStream bis = file.getInputStream()) {
+            assertTrue(bis instanceof MappedInputStream);
+        }
+        assertEquals(readAll(file), expected);
+        file.close();
+    }
+
+    @Test
+    void testMemoryMappedSlice() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN);
+        byte[] expected = readAll(file);
+        file.setMemoryMapped(true);
+        try (MappedInputStream bis = (MappedInputStream) file.getInputStream()) {
+            bis.seek(2, 0);
+            ByteBuffer page = bis.slice(BookInputStream.PAGE_SIZE);
+            assertTrue(page.isReadOnly());
+            assertEquals(page.remaining(), BookInputStream.PAGE_SIZE);
+            for (int i = 0; i < BookInputStream.PAGE_SIZE; i++) {
+                assertEquals(page.get(i), expected[BookInputStream.PAGE_SIZE + i]);
+            }
+            bis.seek(bis.getFileSize());
+            assertEquals(bis.slice(BookInputStream.PAGE_SIZE).remaining(), 0);
+        }
+        file.close();
+    }
+
+    @Test
+    void testMemoryMappedEBZip() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        assertEquals(file.getFormat(), EBFormat.FORMAT_EBZIP);
+        byte[] expected = readAll(file);
+        file.setMemoryMapped(true);
+        assertEquals(readAll(file), expected);
+        assertEquals(readAll(file), readAll(new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN)));
+        file.close();
+    }
+
+    @Test
+    void testEBZipSliceTable() throws Exception {
+        FileInfo info = new FileInfo();
+        info.setFile(new File(getDataDir("epwing-zipped"), "HONMON.ebz"));
+        info.setFormat(EBFormat.FORMAT_EBZIP);
+        try (EBZipInputStream bis = new EBZipInputStream(info)) {
+            bis.initFileInfo();
+        }
+        info.closeChannel();
+        // 10240 bytes in 5 slices of 2048 bytes; the header is followed by 6 index entries
+        assertEquals(info.getZipIndexSize(), 2);
+        assertEquals(info.getZipSlicePosition(0), EBZipConstants.EBZIP_HEADER_SIZE + 6 * 2);
+        assertTrue(info.getZipSlicePosition(5) <= info.getRealFileSize());
+        assertEquals(info.getZipSlicePosition(6), -1L);
+    }
+
+    @Test
+    void testEBZipInflaterPool() throws Exception {
+        FileInfo info = new FileInfo();
+        info.setFile(new File(getDataDir("epwing-zipped"), "HONMON.ebz"));
+        info.setFormat(EBFormat.FORMAT_EBZIP);
+        info.setPageCache(new PageCache(0));
+        try (EBZipInputStream bis = new EBZipInputStream(info)) {
+            bis.initFileInfo();
+            byte[] b = new byte[(int) bis.getFileSize()];
+            bis.readFully(b);
+            bis.seek(0);
+            bis.readFully(b);
+        }
+        assertEquals(info.getInflaterPool().getIdleCount(), 1);
+        info.getInflaterPool().clear();
+        assertEquals(info.getInflaterPool().getIdleCount(), 0);
+        info.closeChannel();
+    }
+
+    @Test
+    void testReadAhead() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        byte[] expected = readAll(new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN));
+        PageCache cache = new PageCache(PageCache.DEFAULT_SIZE);
+        file.setPageCache(cache);
+        file.setReadAhead(8);
+        assertEquals(file.getReadAhead(), 8);
+        try (BookInputStream bis = file.getInputStream()) {
+            assertEquals(bis.getReadAhead(), 8);
+            // loading slices 0 and 1 in order schedules the remaining slices
+            byte[] b = new byte[BookInputStream.PAGE_SIZE + 1];
+            bis.readFully(b);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (cache.getEntryCount() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(cache.getEntryCount(), 5);
+            long misses = cache.getMissCount();
+            bis.seek(0);
+            b = new byte[(int) bis.getFileSize()];
+            bis.readFully(b);
+            assertEquals(b, expected);
+            assertEquals(cache.getMissCount(), misses);
+        }
+        file.close();
+    }
+
+    @Test
+    void testBoundStreamAfterClose() throws Exception {
+        FileInfo info = new FileInfo();
+        info.setFile(new File(getDataDir("epwing-zipped"), "HONMON.ebz"));
+        info.setFormat(EBFormat.FORMAT_EBZIP);
+        info.setPageCache(new PageCache(PageCache.DEFAULT_SIZE));
+        try (EBZipInputStream bis = new EBZipInputStream(info)) {
+            bis.initFileInfo();
+        }
+        long generation = info.getGeneration();
+        BookInputStream bound = info.newBoundStream(generation);
+        assertNotNull(bound);
+        info.closeChannel();
+        assertFalse(info.isChannelOpen());
+        // a background task of the closed generation neither reopens the file nor caches slices
+        assertNull(info.newBoundStream(generation));
+        try {
+            bound.decodeSlice(0, new byte[info.getSliceSize()]);
+            fail("bound stream reopened a closed file");
+        } catch (EBException e) {
+            assertEquals(e.getErrorCode(), EBException.FAILED_READ_FILE);
+        }
+        assertFalse(info.isChannelOpen());
+        info.putBound(info.getPageCache(), generation, 0, new byte[info.getSliceSize()]);
+        assertEquals(info.getPageCache().getEntryCount(), 0);
+    }
+
+    @Test
+    void testReadAt() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        byte[] expected = readAll(new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN));
+        file.setPageCache(new PageCache(PageCache.DEFAULT_SIZE));
+        BookChannel channel = file.getBookChannel();
+        assertEquals(channel.size(), expected.length);
+        byte[] b = new byte[100];
+        assertEquals(file.readAt(expected.length, b, 0, b.length), -1);
+        assertEquals(file.readAt(expected.length - 10, b, 0, b.length), 10);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(3000);
+        assertEquals(file.readAt(1000, direct), 3000);
+        direct.flip();
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(direct.get(), expected[1000 + i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            results.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                byte[] buf = new byte[300];
+                for (int i = 0; i < 500; i++) {
+                    int pos = random.nextInt(expected.length - buf.length);
+                    channel.readFullyAt(pos, buf, 0, buf.length);
+                    for (int j = 0; j < buf.length; j++) {
+                        if (buf[j] != expected[pos + j]) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+        assertTrue(channel.getIdleCount() <= BookChannel.MAX_IDLE);
+        file.close();
+        assertEquals(channel.getIdleCount(), 0);
+    }
+
+    @Test
+    void testInterruptedReader() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN);
+        byte[] expected = readAll(file);
+        boolean[] failed = new boolean[1];
+        Thread reader = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                file.readAt(0, new byte[BookInputStream.PAGE_SIZE], 0, BookInputStream.PAGE_SIZE);
+            } catch (Exception e) {
+                failed[0] = true;
+            }
+        });
+        reader.start();
+        reader.join();
+        // the interrupted reader fails and closes the shared channel
+        assertTrue(failed[0]);
+        // other readers reopen it
+        byte[] b = new byte[expected.length];
+        file.getBookChannel().readFullyAt(0, b, 0, b.length);
+        assertEquals(b, expected);
+        file.close();
+    }
+
+    @Test
+    void testTransferTo() throws Exception {
+        byte[] expected = readAll(new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN));
+        for (String book : new String[] {"epwing", "epwing-zipped"}) {
+            EBFile file = new EBFile(getDataDir(book), "honmon", EBFormat.FORMAT_PLAIN);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            assertEquals(file.transferTo(0, expected.length, target), expected.length);
+            assertEquals(out.toByteArray(), expected);
+
+            out.reset();
+            assertEquals(file.transferTo(3000, 5000, target), 5000);
+            byte[] b = out.toByteArray();
+            for (int i = 0; i < b.length; i++) {
+                assertEquals(b[i], expected[3000 + i]);
+            }
+
+            out.reset();
+            assertEquals(file.transferTo(expected.length - 10, 100, target), 10);
+            assertEquals(file.transferTo(expected.length, 100, target), 0);
+            file.close();
+        }
+    }
+
+    @Test
+    void testTransferToWriteError() throws Exception {
+        for (String book : new String[] {"epwing", "epwing-zipped"}) {
+            EBFile file = new EBFile(getDataDir(book), "honmon", EBFormat.FORMAT_PLAIN);
+            // a closed target fails to write, which is not a read error of the book
+            WritableByteChannel target = Channels.newChannel(new ByteArrayOutputStream());
+            target.close();
+            try {
+                file.transferTo(0, 100, target);
+                fail("transferred to a closed channel");
+            } catch (EBException e) {
+                assertEquals(e.getErrorCode(), EBException.FAILED_WRITE_FILE);
+            }
+            // the file stays readable
+            assertEquals(file.transferTo(0, 100, Channels.newChannel(new ByteArrayOutputStream())), 100);
+            file.close();
+        }
+    }
+
+    @Test
+    void testResident() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        byte[] expected = readAll(new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN));
+        PageCache pageCache = new PageCache(PageCache.DEFAULT_SIZE);
+        SliceCache sliceCache = new SliceCache(PageCache.DEFAULT_SIZE);
+        file.setPageCache(pageCache);
+        file.setSliceCache(sliceCache);
+        assertFalse(file.isResident());
+        assertEquals(file.getResidentSize(), 0L);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        assertEquals(file.loadResident(pool), expected.length);
+        pool.shutdown();
+        // the bulk load does not go through the shared caches
+        assertEquals(pageCache.getEntryCount(), 0);
+        assertEquals(sliceCache.getEntryCount(), 0);
+        assertTrue(file.isResident());
+        assertEquals(file.getResidentSize(), expected.length);
+        try (BookInputStream bis = file.getInputStream()) {
+            assertTrue(bis instanceof MappedInputStream);
+        }
+        assertEquals(readAll(file), expected);
+        byte[] b = new byte[3000];
+        file.getBookChannel().readFullyAt(5000, b, 0, b.length);
+        for (int i = 0; i < b.length; i++) {
+            assertEquals(b[i], expected[5000 + i]);
+        }
+        file.releaseResident();
+        assertFalse(file.isResident());
+        assertEquals(readAll(file), expected);
+        file.close();
+    }
+}
@@ -0,0 +1,202 @@
+package io.github.eb4j.io;
+
+import org.testng.annotations.Test;
+
+import io.github.eb4j.EBException;
+import io.github.eb4j.util.ByteUtil;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+
+import static io.github.eb4j.io.TestBooks.compressSebxa;
+import static io.github.eb4j.io.TestBooks.getDataDir;
+import static io.github.eb4j.io.TestBooks.readAll;
+import static io.github.eb4j.io.TestBooks.readPlain;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Test for EBZIP writer.
+ */
+public class EBZipWriterTest {
+
+    private File createTempDir(final String name) throws Exception {
+        File dir = Files.createTempDirectory(name).toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    @Test
+    void testZip() throws Exception {
+        EBFile source = new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN);
+        byte[] expected = readAll(source);
+        File dir = createTempDir("ebzip");
+        for (int level = 0; level <= EBZipConstants.EBZIP_MAX_LEVEL; level++) {
+            File target = new File(dir, "HONMON.ebz");
+            target.deleteOnExit();
+            long size = new EBZipWriter(level).zip(source, target);
+            assertEquals(target.length(), size);
+            EBFile file = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+            assertEquals(file.getFormat(), EBFormat.FORMAT_EBZIP);
+            try (EBZipInputStream bis = (EBZipInputStream) file.getInputStream()) {
+                assertEquals(bis.getLevel(), level);
+                Adler32 adler = new Adler32();
+                adler.update(expected);
+                assertEquals(bis.getCRC(), adler.getValue());
+            }
+            assertEquals(readAll(file), expected);
+            file.close();
+        }
+        source.close();
+    }
+
+    @Test
+    void testZipBypassesCaches() throws Exception {
+        EBFile source = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        PageCache pageCache = new PageCache(PageCache.DEFAULT_SIZE);
+        SliceCache sliceCache = new SliceCache(PageCache.DEFAULT_SIZE);
+        source.setPageCache(pageCache);
+        source.setSliceCache(sliceCache);
+        File target = new File(createTempDir("ebzip"), "HONMON.ebz");
+        target.deleteOnExit();
+        new EBZipWriter(1).zip(source, target);
+        assertEquals(pageCache.getEntryCount(), 0);
+        assertEquals(sliceCache.getEntryCount(), 0);
+        source.close();
+    }
+
+    @Test
+    void testZipSameAsReference() throws Exception {
+        // the reference file stores its fourth slice uncompressed, the others match
+        byte[] reference = Files.readAllBytes(new File(getDataDir("epwing-zipped"), "HONMON.ebz").toPath());
+        EBFile source = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        File dir = createTempDir("ebzip-ref");
+        File target = new File(dir, "HONMON.ebz");
+        target.deleteOnExit();
+        new EBZipWriter().zip(source, target);
+        byte[] b = Files.readAllBytes(target.toPath());
+        for (int i = 0; i < 18; i++) {
+            assertEquals(b[i], reference[i]);
+        }
+        int[] expected = {0, 1, 2, 4};
+        for (int slice : expected) {
+            int off = EBZipConstants.EBZIP_HEADER_SIZE + slice * 2;
+            int refLen = ByteUtil.getInt2(reference, off + 2) - ByteUtil.getInt2(reference, off);
+            int len = ByteUtil.getInt2(b, off + 2) - ByteUtil.getInt2(b, off);
+            assertEquals(len, refLen);
+        }
+        source.close();
+    }
+
+    @Test
+    void testZipParallel() throws Exception {
+        // large enough for three byte indexes and many batches of slices
+        byte[] plain = readAll(new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN));
+        byte[] data = new byte[plain.length * 100 + 12345];
+        for (int i = 0; i < 100; i++) {
+            System.arraycopy(plain, 0, data, i * plain.length, plain.length);
+        }
+        byte[] noise = new byte[200000];
+        new Random(0).nextBytes(noise);
+        System.arraycopy(noise, 0, data, 300000, noise.length);
+        File srcDir = createTempDir("ebzip-src");
+        File src = new File(srcDir, "HONMON");
+        src.deleteOnExit();
+        Files.write(src.toPath(), data);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        File dir = createTempDir("ebzip-parallel");
+        File target = new File(dir, "HONMON.ebz");
+        target.deleteOnExit();
+        EBFile source = new EBFile(srcDir, "honmon", EBFormat.FORMAT_PLAIN);
+        new EBZipWriter(1, pool).zip(source, target);
+        pool.shutdown();
+        assertTrue(target.length() < data.length);
+        EBFile file = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+        file.setPageCache(new PageCache(0));
+        assertEquals(readAll(file), data);
+        file.close();
+        source.close();
+    }
+
+    @Test
+    void testUnzip() throws Exception {
+        byte[] expected = readAll(new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN));
+        EBFile source = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        File dir = createTempDir("ebunzip");
+        File target = new File(dir, "HONMON");
+        target.deleteOnExit();
+        assertEquals(new EBZipWriter().unzip(source, target), expected.length);
+        assertEquals(Files.readAllBytes(target.toPath()), expected);
+        source.close();
+    }
+
+    @Test
+    void testInvalidLevel() throws Exception {
+        try {
+            new EBZipWriter(EBZipConstants.EBZIP_MAX_LEVEL + 1);
+            fail("level over the maximum should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    void testWriteError() throws Exception {
+        EBFile source = new EBFile(getDataDir("epwing"), "honmon", EBFormat.FORMAT_PLAIN);
+        File target = new File(createTempDir("ebzip-error"), "missing/HONMON.ebz");
+        try {
+            new EBZipWriter().zip(source, target);
+            fail("writing into a missing directory should fail");
+        } catch (EBException e) {
+            assertEquals(e.getErrorCode(), EBException.FAILED_WRITE_FILE);
+        }
+        source.close();
+    }
+
+    @Test
+    void testSEBXAIndexEntries() throws Exception {
+        byte[] plain = readPlain();
+        // an index table with S-EBXA index and base entries between the others
+        byte[] text = plain.clone();
+        int count = plain[1] & 0xff;
+        System.arraycopy(plain, 32, text, 48, 16);
+        System.arraycopy(plain, 48, text, 80, (count - 2) * 16);
+        text[32] = 0x22;
+        text[64] = 0x21;
+        text[1] = (byte) (count + 2);
+        EBFile source = compressSebxa(text, "ebzip-sebxa");
+        assertEquals(source.getFormat(), EBFormat.FORMAT_SEBXA);
+        File dir = createTempDir("ebzip-sebxa-out");
+
+        // the entries are removed, so the written text is not decoded again
+        File target = new File(dir, "HONMON");
+        target.deleteOnExit();
+        new EBZipWriter().unzip(source, target);
+        assertEquals(Files.readAllBytes(target.toPath()), plain);
+        target = new File(dir, "HONMON.ebz");
+        target.deleteOnExit();
+        new EBZipWriter(1).zip(source, target);
+        EBFile file = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+        assertEquals(file.getFormat(), EBFormat.FORMAT_EBZIP);
+        assertEquals(readAll(file), plain);
+        file.close();
+        source.close();
+
+        // a text without the entries is not written
+        source = compressSebxa(plain, "ebzip-sebxa-none");
+        try {
+            new EBZipWriter().unzip(source, new File(dir, "NONE"));
+            fail("an S-EBXA text without the S-EBXA entries should not be written");
+        } catch (EBException e) {
+            assertEquals(e.getErrorCode(), EBException.UNEXP_FILE);
+        }
+        assertFalse(new File(dir, "NONE").exists());
+        source.close();
+    }
+}
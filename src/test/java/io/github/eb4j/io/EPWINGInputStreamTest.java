@@ -0,0 +1,115 @@
+package io.github.eb4j.io;
+
+import org.testng.annotations.Test;
+
+import io.github.eb4j.EBException;
+
+import java.util.Arrays;
+
+import static io.github.eb4j.io.TestBooks.compressEpwing;
+import static io.github.eb4j.io.TestBooks.readAll;
+import static io.github.eb4j.io.TestBooks.readPlain;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for EPWING compressed text.
+ * <p>
+ * The test book has no compressed HONMON, so one is compressed from the
+ * PLAIN HONMON with the Huffman tree the reader builds, and the reader
+ * output is compared with the original.
+ * </p>
+ */
+public class EPWINGInputStreamTest {
+
+    private static final int PAGE_SIZE = BookInputStream.PAGE_SIZE;
+
+    @Test
+    void testDecodeEpwing() throws Exception {
+        byte[] plain = readPlain();
+        EBFile file = compressEpwing(plain, false, "epwing");
+        assertEquals(file.getFormat(), EBFormat.FORMAT_EPWING);
+        assertEquals(readAll(file), plain);
+        file.close();
+    }
+
+    @Test
+    void testDecodeEpwing6() throws Exception {
+        byte[] plain = readPlain();
+        EBFile file = compressEpwing(plain, true, "epwing6");
+        assertEquals(file.getFormat(), EBFormat.FORMAT_EPWING6);
+        assertEquals(readAll(file), plain);
+        file.close();
+    }
+
+    @Test
+    void testDecodeSeek() throws Exception {
+        byte[] plain = readPlain();
+        EBFile file = compressEpwing(plain, false, "epwing-seek");
+        byte[] b = new byte[100];
+        try (BookInputStream bis = file.getInputStream()) {
+            for (long pos = plain.length - b.length; pos >= 0; pos -= 777) {
+                bis.seek(pos);
+                bis.readFully(b);
+                for (int i = 0; i < b.length; i++) {
+                    assertEquals(b[i], plain[(int) pos + i]);
+                }
+            }
+        }
+        file.close();
+    }
+
+    @Test
+    void testPagePositions() throws Exception {
+        byte[] plain = readPlain();
+        EBFile file = compressEpwing(plain, false, "epwing-index");
+        FileInfo info = new FileInfo();
+        info.setFile(file.getFile());
+        info.setFormat(EBFormat.FORMAT_EPWING);
+        try (EPWINGInputStream bis = new EPWINGInputStream(info)) {
+            bis.initFileInfo();
+        }
+        info.closeChannel();
+        int pages = plain.length / PAGE_SIZE;
+        assertTrue(info.getEpwingPagePosition(0) > info.getEpwingIndexPosition());
+        for (int i = 1; i < pages; i++) {
+            assertTrue(info.getEpwingPagePosition(i) > info.getEpwingPagePosition(i - 1));
+        }
+        assertEquals(info.getEpwingPagePosition(pages), -1L);
+        file.close();
+    }
+
+    @Test
+    void testOneReadPerPage() throws Exception {
+        byte[] plain = readPlain();
+        for (boolean v6 : new boolean[] {false, true}) {
+            EBFile file = compressEpwing(plain, v6, "epwing-reads");
+            FileInfo info = new FileInfo();
+            info.setFile(file.getFile());
+            info.setFormat(file.getFormat());
+            final int[] reads = new int[1];
+            try (EPWINGInputStream bis = new EPWINGInputStream(info) {
+                @Override
+                protected int readRaw(final long pos, final byte[] b, final int off, final int len)
+                        throws EBException {
+                    reads[0]++;
+                    return super.readRaw(pos, b, off, len);
+                }
+            }) {
+                bis.initFileInfo();
+                // without a slice cache, each page including the last one
+                // and a page stored uncompressed in EPWING6 is read at once
+                byte[] out = new byte[PAGE_SIZE];
+                int pages = plain.length / PAGE_SIZE;
+                for (int i = 0; i < pages; i++) {
+                    reads[0] = 0;
+                    bis.decodeSlice(i, out);
+                    assertEquals(reads[0], 1);
+                    assertEquals(out, Arrays.copyOfRange(plain, i * PAGE_SIZE, (i + 1) * PAGE_SIZE));
+                }
+            }
+            info.closeChannel();
+            file.close();
+        }
+    }
+}
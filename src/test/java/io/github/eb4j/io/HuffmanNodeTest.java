@@ -2,11 +2,17 @@ package io.github.eb4j.io;
 
 import org.testng.annotations.Test;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 /**
@@ -81,4 +87,84 @@ public class HuffmanNodeTest {
         assertEquals(right.getFrequency(), 8);
         assertFalse(right.isLeaf());
     }
+
+    @Test(groups={"tree"})
+    void testMakeTreeSameAsSelectionSort() {
+        Random random = new Random(12345);
+        for (int round = 0; round < 50; round++) {
+            int size = 2 + random.nextInt(600);
+            int maxFreq = 1 + random.nextInt(round % 2 == 0 ? 8 : 0xffff);
+            ArrayList<HuffmanNode> list = new ArrayList<>(size);
+            for (int i = 0; i < size - 1; i++) {
+                list.add(new HuffmanNode(i, random.nextInt(maxFreq), HuffmanNode.LEAF_16));
+            }
+            list.add(new HuffmanNode(256, 1, HuffmanNode.LEAF_EOF));
+            HuffmanNode expected = makeTreeBySelectionSort(new ArrayList<>(list));
+            HuffmanNode actual = HuffmanNode.makeTree(list);
+            assertSameTree(actual, expected);
+            assertEquals(list.size(), 1);
+        }
+    }
+
+    private static void assertSameTree(final HuffmanNode actual, final HuffmanNode expected) {
+        Deque<HuffmanNode[]> stack = new ArrayDeque<>();
+        stack.push(new HuffmanNode[]{actual, expected});
+        while (!stack.isEmpty()) {
+            HuffmanNode[] pair = stack.pop();
+            assertEquals(pair[0].isLeaf(), pair[1].isLeaf());
+            assertEquals(pair[0].getFrequency(), pair[1].getFrequency());
+            if (pair[1].isLeaf()) {
+                assertSame(pair[0], pair[1]);
+            } else {
+                stack.push(new HuffmanNode[]{pair[0].getLeft(), pair[1].getLeft()});
+                stack.push(new HuffmanNode[]{pair[0].getRight(), pair[1].getRight()});
+            }
+        }
+    }
+
+    /** Tree construction of eb4j 2.3, used as the reference. */
+    private static HuffmanNode makeTreeBySelectionSort(final List<HuffmanNode> list) {
+        HuffmanNode node1, node2, tmp;
+        int size = list.size();
+        for (int i = 0; i < size - 1; i++) {
+            node1 = list.get(i);
+            int n = i;
+            for (int j = i + 1; j < size; j++) {
+                tmp = list.get(j);
+                if (node1.compareTo(tmp) < 0) {
+                    node1 = tmp;
+                    n = j;
+                }
+            }
+            if (i != n) {
+                Collections.swap(list, i, n);
+            }
+        }
+        while (list.size() > 1) {
+            size = list.size();
+            node1 = list.get(0);
+            int n = 0;
+            for (int i = 1; i < size; i++) {
+                tmp = list.get(i);
+                if (node1.compareTo(tmp) >= 0) {
+                    node1 = tmp;
+                    n = i;
+                }
+            }
+            list.remove(n);
+            size = list.size();
+            node2 = list.get(0);
+            n = 0;
+            for (int i = 1; i < size; i++) {
+                tmp = list.get(i);
+                if (node2.compareTo(tmp) >= 0) {
+                    node2 = tmp;
+                    n = i;
+                }
+            }
+            list.remove(n);
+            list.add(new HuffmanNode(node1, node2));
+        }
+        return list.get(0);
+    }
 }
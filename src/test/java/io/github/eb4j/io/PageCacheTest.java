@@ -0,0 +1,99 @@
+package io.github.eb4j.io;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for PageCache.
+ */
+public class PageCacheTest {
+
+    @Test
+    void testEviction() {
+        FileInfo info = new FileInfo();
+        PageCache cache = new PageCache(3 * BookInputStream.PAGE_SIZE);
+        byte[][] pages = new byte[4][BookInputStream.PAGE_SIZE];
+        cache.put(info, 0, pages[0]);
+        cache.put(info, 1, pages[1]);
+        cache.put(info, 2, pages[2]);
+        // touch page 0 so that page 1 is the eldest
+        assertSame(cache.get(info, 0), pages[0]);
+        cache.put(info, 3, pages[3]);
+        assertEquals(cache.getEntryCount(), 3);
+        assertEquals(cache.getSize(), 3L * BookInputStream.PAGE_SIZE);
+        assertEquals(cache.getEvictionCount(), 1);
+        assertNull(cache.get(info, 1));
+        assertNotNull(cache.get(info, 0));
+        assertNull(cache.get(new FileInfo(), 0));
+        assertEquals(cache.getHitCount(), 2);
+        assertEquals(cache.getMissCount(), 2);
+        cache.clear();
+        assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    void testSharedByStreams() throws Exception {
+        File dir = new File(this.getClass().getResource("/data/epwing-zipped/test/DATA").getFile());
+        EBFile file = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+        PageCache cache = new PageCache(PageCache.DEFAULT_SIZE);
+        file.setPageCache(cache);
+        assertSame(file.getPageCache(), cache);
+        byte[] first;
+        try (BookInputStream bis = file.getInputStream()) {
+            first = new byte[(int) bis.getFileSize()];
+            bis.readFully(first);
+        }
+        long misses = cache.getMissCount();
+        assertTrue(misses > 0);
+        assertEquals(cache.getHitCount(), 0);
+        byte[] second = new byte[first.length];
+        try (BookInputStream bis = file.getInputStream()) {
+            bis.readFully(second);
+        }
+        assertEquals(second, first);
+        assertEquals(cache.getMissCount(), misses);
+        assertEquals(cache.getHitCount(), misses);
+        file.setPageCache(null);
+        assertSame(file.getPageCache(), PageCache.getDefault());
+        file.close();
+    }
+
+    @Test
+    void testInvalidate() throws Exception {
+        File dir = new File(this.getClass().getResource("/data/epwing-zipped/test/DATA").getFile());
+        EBFile file = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+        PageCache pageCache = new PageCache(PageCache.DEFAULT_SIZE);
+        SliceCache sliceCache = new SliceCache(PageCache.DEFAULT_SIZE);
+        file.setPageCache(pageCache);
+        file.setSliceCache(sliceCache);
+        FileInfo other = new FileInfo();
+        pageCache.put(other, 0, new byte[BookInputStream.PAGE_SIZE]);
+        try (BookInputStream bis = file.getInputStream()) {
+            bis.readFully(new byte[(int) bis.getFileSize()]);
+        }
+        assertTrue(pageCache.getEntryCount() > 1);
+        assertTrue(sliceCache.getEntryCount() > 0);
+        // closing the file drops its slices only
+        file.close();
+        assertEquals(pageCache.getEntryCount(), 1);
+        assertEquals(pageCache.getSize(), BookInputStream.PAGE_SIZE);
+        assertNotNull(pageCache.get(other, 0));
+        assertEquals(sliceCache.getEntryCount(), 0);
+        assertEquals(sliceCache.getSize(), 0);
+
+        try (BookInputStream bis = file.getInputStream()) {
+            bis.readFully(new byte[BookInputStream.PAGE_SIZE]);
+        }
+        assertTrue(pageCache.getEntryCount() > 1);
+        file.setSEBXAInfo(0, 0, 0, BookInputStream.PAGE_SIZE);
+        assertEquals(pageCache.getEntryCount(), 1);
+        file.close();
+    }
+}
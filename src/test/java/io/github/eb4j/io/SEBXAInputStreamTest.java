@@ -0,0 +1,75 @@
+package io.github.eb4j.io;
+
+import org.testng.annotations.Test;
+
+import static io.github.eb4j.io.TestBooks.compressSebxa;
+import static io.github.eb4j.io.TestBooks.readAll;
+import static io.github.eb4j.io.TestBooks.readPlain;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for S-EBXA compressed text.
+ * <p>
+ * The test book has no S-EBXA text, so one is compressed from the
+ * PLAIN HONMON and the reader output is compared with the original.
+ * </p>
+ */
+public class SEBXAInputStreamTest {
+
+    @Test
+    void testDecode() throws Exception {
+        byte[] plain = readPlain();
+        EBFile file = compressSebxa(plain, "sebxa");
+        assertEquals(file.getFormat(), EBFormat.FORMAT_SEBXA);
+        assertEquals(readAll(file), plain);
+        file.close();
+    }
+
+    @Test
+    void testSliceTable() throws Exception {
+        byte[] plain = readPlain();
+        EBFile file = compressSebxa(plain, "sebxa-index");
+        FileInfo info = new FileInfo();
+        info.setFile(file.getFile());
+        info.setFormat(EBFormat.FORMAT_SEBXA);
+        info.setSebxaIndexPosition(0);
+        info.setSebxaBasePosition(8);
+        info.setSebxaStartPosition(0);
+        info.setSebxaEndPosition(plain.length);
+        info.setFileSize(plain.length);
+        info.setPageCache(new PageCache(0));
+        assertNull(info.getSebxaSliceTable());
+        try (SEBXAInputStream bis = new SEBXAInputStream(info)) {
+            byte[] b = new byte[plain.length];
+            bis.readFully(b);
+            assertEquals(b, plain);
+        }
+        info.closeChannel();
+        int[] table = info.getSebxaSliceTable();
+        assertNotNull(table);
+        assertEquals(table.length, 3);
+        assertEquals(table[0], 0);
+        assertTrue(table[1] > 0 && table[2] > table[1]);
+        file.close();
+    }
+
+    @Test
+    void testDecodeSeek() throws Exception {
+        byte[] plain = readPlain();
+        EBFile file = compressSebxa(plain, "sebxa-seek");
+        byte[] b = new byte[100];
+        try (BookInputStream bis = file.getInputStream()) {
+            for (long pos = plain.length - b.length; pos >= 0; pos -= 777) {
+                bis.seek(pos);
+                bis.readFully(b);
+                for (int i = 0; i < b.length; i++) {
+                    assertEquals(b[i], plain[(int) pos + i]);
+                }
+            }
+        }
+        file.close();
+    }
+}
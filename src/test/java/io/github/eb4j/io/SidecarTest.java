@@ -0,0 +1,129 @@
+package io.github.eb4j.io;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+import static io.github.eb4j.io.TestBooks.compressEpwing;
+import static io.github.eb4j.io.TestBooks.compressSebxa;
+import static io.github.eb4j.io.TestBooks.readAll;
+import static io.github.eb4j.io.TestBooks.readPlain;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for sidecars of compressed text.
+ */
+public class SidecarTest {
+
+    @Test
+    void testPlainSidecar() throws Exception {
+        byte[] plain = readPlain();
+        EBFile source = compressEpwing(plain, false, "sidecar");
+        File dir = source.getFile().getParentFile();
+        assertFalse(source.isSidecar());
+        File file = Sidecar.write(source);
+        file.deleteOnExit();
+        assertEquals(file, new File(dir, "HONMON" + Sidecar.EXTENSION));
+        assertEquals(file.length(), plain.length + Sidecar.TRAILER_SIZE);
+        source.close();
+
+        EBFile ebFile = new EBFile(dir, "honmon", EBFormat.FORMAT_EPWING);
+        assertTrue(ebFile.isSidecar());
+        assertEquals(ebFile.getFormat(), EBFormat.FORMAT_PLAIN);
+        assertEquals(ebFile.getFile(), file);
+        assertEquals(ebFile.getSourceFile(), new File(dir, "HONMON"));
+        assertEquals(ebFile.getName(), "HONMON");
+        assertEquals(readAll(ebFile), plain);
+        ebFile.setMemoryMapped(true);
+        assertEquals(readAll(ebFile), plain);
+        ebFile.close();
+    }
+
+    @Test
+    void testEBZipSidecar() throws Exception {
+        byte[] plain = readPlain();
+        EBFile source = compressEpwing(plain, true, "sidecar-ebzip");
+        File dir = source.getFile().getParentFile();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        File file = Sidecar.write(source, EBFormat.FORMAT_EBZIP, 1, pool);
+        file.deleteOnExit();
+        pool.shutdown();
+        source.close();
+
+        EBFile ebFile = new EBFile(dir, "honmon", EBFormat.FORMAT_EPWING6);
+        assertTrue(ebFile.isSidecar());
+        assertEquals(ebFile.getFormat(), EBFormat.FORMAT_EBZIP);
+        assertEquals(readAll(ebFile), plain);
+        ebFile.close();
+    }
+
+    @Test
+    void testSEBXASidecar() throws Exception {
+        byte[] plain = readPlain();
+        EBFile source = compressSebxa(plain, "sidecar-sebxa");
+        File dir = source.getFile().getParentFile();
+        File file = Sidecar.write(source);
+        file.deleteOnExit();
+        source.close();
+
+        EBFile ebFile = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+        assertTrue(ebFile.isSidecar());
+        // the article is already decoded in the sidecar
+        ebFile.setSEBXAInfo(0, 8, 0, plain.length);
+        assertEquals(ebFile.getFormat(), EBFormat.FORMAT_PLAIN);
+        assertEquals(readAll(ebFile), plain);
+        ebFile.close();
+    }
+
+    @Test
+    void testRewrittenSource() throws Exception {
+        byte[] plain = readPlain();
+        EBFile source = compressEpwing(plain, false, "sidecar-mtime");
+        File dir = source.getFile().getParentFile();
+        File file = Sidecar.write(source);
+        file.deleteOnExit();
+        source.close();
+        // the temporary file has been renamed to the sidecar
+        String[] names = dir.list();
+        assertEquals(names.length, 2);
+
+        // a source rewritten with the same size and ends invalidates the sidecar
+        File honmon = new File(dir, "HONMON");
+        assertEquals(Sidecar.check(file, honmon), EBFormat.FORMAT_PLAIN);
+        assertTrue(honmon.setLastModified(honmon.lastModified() - 10000));
+        assertEquals(Sidecar.check(file, honmon), null);
+    }
+
+    @Test
+    void testStaleSidecar() throws Exception {
+        byte[] plain = readPlain();
+        EBFile source = compressEpwing(plain, false, "sidecar-stale");
+        File dir = source.getFile().getParentFile();
+        File file = Sidecar.write(source);
+        file.deleteOnExit();
+        source.close();
+        assertEquals(Sidecar.check(file, new File(dir, "HONMON")), EBFormat.FORMAT_PLAIN);
+
+        // a changed last page of the source invalidates the sidecar
+        try (RandomAccessFile raf = new RandomAccessFile(new File(dir, "HONMON"), "rw")) {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0xff);
+        }
+        assertEquals(Sidecar.check(file, new File(dir, "HONMON")), null);
+        EBFile ebFile = new EBFile(dir, "honmon", EBFormat.FORMAT_EPWING);
+        assertFalse(ebFile.isSidecar());
+        assertEquals(ebFile.getFormat(), EBFormat.FORMAT_EPWING);
+        ebFile.close();
+
+        // a broken trailer is ignored too
+        Files.write(file.toPath(), new byte[Sidecar.TRAILER_SIZE]);
+        assertEquals(Sidecar.check(file, new File(dir, "HONMON")), null);
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.eb4j.io;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static io.github.eb4j.io.TestBooks.compressEpwing;
+import static io.github.eb4j.io.TestBooks.getDataDir;
+import static io.github.eb4j.io.TestBooks.readAll;
+import static io.github.eb4j.io.TestBooks.readPlain;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for SliceCache.
+ */
+public class SliceCacheTest {
+
+    @Test
+    void testEviction() {
+        for (boolean direct : new boolean[] {false, true}) {
+            FileInfo info = new FileInfo();
+            SliceCache cache = new SliceCache(300, direct);
+            assertEquals(cache.isDirect(), direct);
+            byte[] b = new byte[100];
+            for (int i = 0; i < 4; i++) {
+                b[0] = (byte) i;
+                cache.put(info, i, b, 100);
+            }
+            assertEquals(cache.getEntryCount(), 3);
+            assertEquals(cache.getSize(), 300);
+            assertEquals(cache.getEvictionCount(), 1);
+            assertFalse(cache.get(info, 0, b, 100));
+            assertTrue(cache.get(info, 2, b, 100));
+            assertEquals(b[0], 2);
+            // a slice of another size is a miss
+            assertFalse(cache.get(info, 3, b, 50));
+            assertFalse(cache.get(new FileInfo(), 3, b, 100));
+            assertEquals(cache.getHitCount(), 1);
+            assertEquals(cache.getMissCount(), 3);
+            assertEquals(cache.getHitRate(), 0.25);
+            cache.clear();
+            assertEquals(cache.getSize(), 0);
+        }
+    }
+
+    @Test
+    void testDirectArenas() {
+        FileInfo info = new FileInfo();
+        SliceCache cache = new SliceCache(4096, true);
+        byte[] b = new byte[1000];
+        for (int i = 0; i < 20; i++) {
+            Arrays.fill(b, (byte) i);
+            cache.put(info, i, b, b.length);
+        }
+        // slices share two arenas of 4 KB
+        assertEquals(cache.getArenaCount(), 2);
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+        byte[] dst = new byte[1000];
+        assertTrue(cache.get(info, 19, dst, dst.length));
+        assertEquals(dst[0], 19);
+        assertEquals(dst[999], 19);
+        assertTrue(cache.get(info, 17, dst, dst.length));
+        assertEquals(dst[500], 17);
+        assertFalse(cache.get(info, 0, dst, dst.length));
+        // a slice larger than an arena is not cached
+        cache.put(info, 100, new byte[5000], 5000);
+        assertFalse(cache.get(info, 100, new byte[5000], 5000));
+    }
+
+    @Test
+    void testEBZipTiers() throws Exception {
+        EBFile file = new EBFile(getDataDir("epwing-zipped"), "honmon", EBFormat.FORMAT_PLAIN);
+        assertEquals(file.getFormat(), EBFormat.FORMAT_EBZIP);
+        PageCache pageCache = new PageCache(0);
+        SliceCache sliceCache = new SliceCache(PageCache.DEFAULT_SIZE, true);
+        file.setPageCache(pageCache);
+        file.setSliceCache(sliceCache);
+        assertSame(file.getSliceCache(), sliceCache);
+        byte[] plain = readPlain();
+        assertEquals(readAll(file), plain);
+        long misses = sliceCache.getMissCount();
+        try (BookInputStream bis = file.getInputStream()) {
+            // stored and deflated slices alike are read through the slice cache
+            assertEquals(misses, (plain.length + bis.getSliceSize() - 1) / bis.getSliceSize());
+        }
+        assertEquals(sliceCache.getHitCount(), 0);
+        // slices are decoded again from memory
+        assertEquals(readAll(file), plain);
+        assertEquals(sliceCache.getMissCount(), misses);
+        assertEquals(sliceCache.getHitCount(), misses);
+        assertEquals(pageCache.getHitCount(), 0);
+        file.setSliceCache(null);
+        assertNull(file.getSliceCache());
+        file.close();
+    }
+
+    @Test
+    void testEpwingTiers() throws Exception {
+        byte[] plain = readPlain();
+        for (boolean v6 : new boolean[] {false, true}) {
+            EBFile file = compressEpwing(plain, v6, "epwing-slice");
+            SliceCache sliceCache = new SliceCache(PageCache.DEFAULT_SIZE);
+            file.setSliceCache(sliceCache);
+            assertEquals(readAll(file), plain);
+            // every page, including the last one and a page stored
+            // uncompressed in EPWING6, is read through the slice cache
+            int cached = plain.length / BookInputStream.PAGE_SIZE;
+            assertEquals(sliceCache.getMissCount(), cached);
+            assertEquals(readAll(file), plain);
+            assertEquals(sliceCache.getHitCount(), cached);
+            assertEquals(sliceCache.getMissCount(), cached);
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package io.github.eb4j.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixtures and read helpers shared by the io tests.
+ * <p>
+ * The test books have no compressed HONMON, so EPWING and S-EBXA texts
+ * are compressed here from the PLAIN HONMON of the epwing test book.
+ * </p>
+ */
+final class TestBooks {
+
+    private static final int PAGE_SIZE = BookInputStream.PAGE_SIZE;
+    private static final int EPWING6_LEAF16 = 0x400;
+    private static final int SEBXA_SLICE_SIZE = 4096;
+    private static final int MIN_MATCH = 3;
+    private static final int MAX_MATCH = 18;
+
+    private TestBooks() {
+    }
+
+    static File getDataDir(final String book) {
+        return new File(TestBooks.class.getResource("/data/" + book + "/test/DATA").getFile());
+    }
+
+    static byte[] readPlain() throws Exception {
+        return Files.readAllBytes(new File(getDataDir("epwing"), "HONMON").toPath());
+    }
+
+    static byte[] readAll(final EBFile file) throws Exception {
+        try (BookInputStream bis = file.getInputStream()) {
+            byte[] b = new byte[(int) bis.getFileSize()];
+            bis.readFully(b);
+            return b;
+        }
+    }
+
+    /**
+     * Writes an EPWING or EPWING6 compressed HONMON of the given text.
+     */
+    static EBFile compressEpwing(final byte[] plain, final boolean v6, final String name) throws Exception {
+        File dir = Files.createTempDirectory(name).toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "HONMON");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new Compressor(plain, v6).build());
+        EBFile ebFile = new EBFile(dir, "honmon", v6 ? EBFormat.FORMAT_EPWING6 : EBFormat.FORMAT_EPWING);
+        ebFile.setPageCache(new PageCache(0));
+        return ebFile;
+    }
+
+    /**
+     * Writes an S-EBXA compressed HONMON of the given text, with the slice
+     * index at 0 and the compressed data following it.
+     */
+    static EBFile compressSebxa(final byte[] plain, final String name) throws Exception {
+        File dir = Files.createTempDirectory(name).toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "HONMON");
+        file.deleteOnExit();
+        int slices = (plain.length + SEBXA_SLICE_SIZE - 1) / SEBXA_SLICE_SIZE;
+        int indexSize = (slices - 1) * 4;
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        for (int i = 0; i < slices; i++) {
+            if (i > 0) {
+                writeInt(index, data.size(), 4);
+            }
+            byte[] slice = new byte[SEBXA_SLICE_SIZE];
+            int len = Math.min(SEBXA_SLICE_SIZE, plain.length - i * SEBXA_SLICE_SIZE);
+            System.arraycopy(plain, i * SEBXA_SLICE_SIZE, slice, 0, len);
+            data.write(compressSlice(slice));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(out);
+        data.writeTo(out);
+        Files.write(file.toPath(), out.toByteArray());
+        EBFile ebFile = new EBFile(dir, "honmon", EBFormat.FORMAT_PLAIN);
+        ebFile.setSEBXAInfo(0, indexSize, 0, plain.length);
+        ebFile.setPageCache(new PageCache(0));
+        return ebFile;
+    }
+
+    /**
+     * Compresses a slice with greedy LZSS matching in the layout read by
+     * SEBXAInputStream: a flag byte, bit 1 for a literal byte and bit 0 for
+     * a two-byte reference, followed by eight items.
+     */
+    private static byte[] compressSlice(final byte[] slice) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] items = new byte[16];
+        int pos = 0;
+        while (pos < SEBXA_SLICE_SIZE) {
+            int flags = 0;
+            int n = 0;
+            for (int i = 0; i < 8 && pos < SEBXA_SLICE_SIZE; i++) {
+                int bestLen = 0;
+                int bestSrc = 0;
+                for (int src = Math.max(0, pos - SEBXA_SLICE_SIZE + MAX_MATCH); src < pos; src++) {
+                    int len = 0;
+                    while (len < MAX_MATCH && pos + len < SEBXA_SLICE_SIZE && slice[src + len] == slice[pos + len]) {
+                        len++;
+                    }
+                    if (len > bestLen) {
+                        bestLen = len;
+                        bestSrc = src;
+                    }
+                }
+                // positions not written yet read as zero
+                int zeros = 0;
+                while (zeros < MAX_MATCH && pos + zeros < SEBXA_SLICE_SIZE && slice[pos + zeros] == 0) {
+                    zeros++;
+                }
+                if (zeros > bestLen && pos <= SEBXA_SLICE_SIZE - MAX_MATCH) {
+                    bestLen = zeros;
+                    bestSrc = SEBXA_SLICE_SIZE - MAX_MATCH;
+                }
+                if (bestLen >= MIN_MATCH) {
+                    int raw = (bestSrc - MAX_MATCH + SEBXA_SLICE_SIZE) % SEBXA_SLICE_SIZE;
+                    items[n++] = (byte) raw;
+                    items[n++] = (byte) (((raw >>> 8) << 4) | (bestLen - MIN_MATCH));
+                    pos += bestLen;
+                } else {
+                    flags |= 1 << i;
+                    items[n++] = slice[pos++];
+                }
+            }
+            out.write(flags);
+            out.write(items, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final long value, final int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            out.write((int) (value >>> (i * 8)) & 0xff);
+        }
+    }
+
+    /**
+     * Builds an EPWING compressed HONMON in the layout read by EPWINGInputStream.
+     */
+    private static final class Compressor {
+        private final byte[] plain;
+        private final boolean v6;
+        private final int pages;
+        private final List<Integer> leaf32 = new ArrayList<>();
+        private final List<Integer> leaf16 = new ArrayList<>();
+        private final Map<Long, String> code32 = new HashMap<>();
+        private final Map<Long, String> code16 = new HashMap<>();
+        private final Map<Long, String> code8 = new HashMap<>();
+        private String codeEof;
+
+        Compressor(final byte[] plain, final boolean v6) {
+            this.plain = plain;
+            this.v6 = v6;
+            this.pages = plain.length / PAGE_SIZE;
+        }
+
+        byte[] build() throws Exception {
+            // the most frequent byte sequences become 32bit and 16bit leaves
+            if (v6) {
+                leaf32.addAll(topSequences(4, 64));
+            }
+            leaf16.addAll(topSequences(2, 128));
+            if (v6) {
+                for (int v = 0xffff; leaf16.size() < EPWING6_LEAF16; v--) {
+                    if (!leaf16.contains(v)) {
+                        leaf16.add(v);
+                    }
+                }
+            }
+            int[] freq32 = new int[leaf32.size()];
+            int[] freq16 = new int[leaf16.size()];
+            int[] freq8 = new int[256];
+            for (int page = 0; page < pages; page++) {
+                for (long symbol : symbols(page)) {
+                    int type = (int) (symbol >>> 40);
+                    int value = (int) symbol;
+                    if (type == HuffmanNode.LEAF_32) {
+                        freq32[leaf32.indexOf(value)]++;
+                    } else if (type == HuffmanNode.LEAF_16) {
+                        freq16[leaf16.indexOf(value)]++;
+                    } else if (type == HuffmanNode.LEAF_8) {
+                        freq8[value]++;
+                    }
+                }
+            }
+
+            ByteArrayOutputStream freq = new ByteArrayOutputStream();
+            List<HuffmanNode> list = new ArrayList<>();
+            for (int i = 0; i < leaf32.size(); i++) {
+                int f = Math.min(freq32[i], 0xffff);
+                writeInt(freq, leaf32.get(i), 4);
+                writeInt(freq, f, 2);
+                list.add(new HuffmanNode(leaf32.get(i) & 0xffffffffL, f, HuffmanNode.LEAF_32));
+            }
+            for (int i = 0; i < leaf16.size(); i++) {
+                int f = Math.min(freq16[i], 0xffff);
+                writeInt(freq, leaf16.get(i), 2);
+                writeInt(freq, f, 2);
+                list.add(new HuffmanNode(leaf16.get(i), f, HuffmanNode.LEAF_16));
+            }
+            for (int i = 0; i < 256; i++) {
+                int f = Math.min(freq8[i], 0xffff);
+                writeInt(freq, f, 2);
+                list.add(new HuffmanNode(i, f, HuffmanNode.LEAF_8));
+            }
+            list.add(new HuffmanNode(256, 1, HuffmanNode.LEAF_EOF));
+            assign(HuffmanNode.makeTree(list), "");
+
+            int headerSize = v6 ? 48 : 32;
+            int indexSize = (pages + 15) / 16 * 36;
+            long freqPos = headerSize;
+            long indexPos = freqPos + freq.size();
+            long dataPos = indexPos + indexSize;
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            long[] pagePos = new long[pages];
+            for (int page = 0; page < pages; page++) {
+                pagePos[page] = dataPos + data.size();
+                if (v6 && page == 2) {
+                    // stored without compression
+                    data.write(1);
+                    data.write(plain, page * PAGE_SIZE, PAGE_SIZE);
+                    continue;
+                }
+                if (v6) {
+                    data.write(0);
+                }
+                StringBuilder bits = new StringBuilder();
+                for (long symbol : symbols(page)) {
+                    bits.append(code(symbol));
+                }
+                while (bits.length() % 8 != 0) {
+                    bits.append('0');
+                }
+                for (int i = 0; i < bits.length(); i += 8) {
+                    data.write(Integer.parseInt(bits.substring(i, i + 8), 2));
+                }
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeInt(out, indexPos, 4);
+            writeInt(out, indexSize, 4);
+            writeInt(out, freqPos, 4);
+            writeInt(out, freq.size(), 4);
+            out.write(new byte[headerSize - 16]);
+            freq.writeTo(out);
+            for (int block = 0; block < indexSize / 36; block++) {
+                long base = pagePos[block * 16];
+                writeInt(out, base, 4);
+                for (int i = 0; i < 16; i++) {
+                    int page = block * 16 + i;
+                    writeInt(out, page < pages ? pagePos[page] - base : 0, 2);
+                }
+            }
+            data.writeTo(out);
+            return out.toByteArray();
+        }
+
+        private List<Integer> topSequences(final int len, final int count) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int i = 0; i + len <= plain.length; i++) {
+                int v = 0;
+                for (int j = 0; j < len; j++) {
+                    v = (v << 8) | (plain[i + j] & 0xff);
+                }
+                counts.merge(v, 1, Integer::sum);
+            }
+            List<Integer> list = new ArrayList<>(counts.keySet());
+            list.sort(Comparator.comparing(counts::get, Comparator.reverseOrder()));
+            return new ArrayList<>(list.subList(0, Math.min(count, list.size())));
+        }
+
+        /** Greedy symbol sequence of a page, as (type << 40 | value). */
+        private List<Long> symbols(final int page) {
+            List<Long> ret = new ArrayList<>();
+            int start = page * PAGE_SIZE;
+            int end = start + PAGE_SIZE;
+            int last = end;
+            if (page == pages - 1) {
+                while (last > start && plain[last - 1] == 0) {
+                    last--;
+                }
+            }
+            int p = start;
+            while (p < last) {
+                if (v6 && p + 4 <= last && leaf32.contains(value(p, 4))) {
+                    ret.add((long) HuffmanNode.LEAF_32 << 40 | (value(p, 4) & 0xffffffffL));
+                    p += 4;
+                } else if (p + 2 <= last && leaf16.contains(value(p, 2))) {
+                    ret.add((long) HuffmanNode.LEAF_16 << 40 | value(p, 2));
+                    p += 2;
+                } else {
+                    ret.add((long) HuffmanNode.LEAF_8 << 40 | (plain[p] & 0xff));
+                    p++;
+                }
+            }
+            if (last < end) {
+                ret.add((long) HuffmanNode.LEAF_EOF << 40);
+            }
+            return ret;
+        }
+
+        private int value(final int pos, final int len) {
+            int v = 0;
+            for (int j = 0; j < len; j++) {
+                v = (v << 8) | (plain[pos + j] & 0xff);
+            }
+            return v;
+        }
+
+        private void assign(final HuffmanNode node, final String prefix) {
+            if (node.isLeaf()) {
+                long value = node.getValue();
+                switch (node.getLeafType()) {
+                    case HuffmanNode.LEAF_32:
+                        code32.putIfAbsent(value, prefix);
+                        break;
+                    case HuffmanNode.LEAF_16:
+                        code16.putIfAbsent(value, prefix);
+                        break;
+                    case HuffmanNode.LEAF_8:
+                        code8.put(value, prefix);
+                        break;
+                    default:
+                        codeEof = prefix;
+                        break;
+                }
+                return;
+            }
+            assign(node.getLeft(), prefix + "1");
+            assign(node.getRight(), prefix + "0");
+        }
+
+        private String code(final long symbol) {
+            int type = (int) (symbol >>> 40);
+            long value = symbol & 0xffffffffL;
+            switch (type) {
+                case HuffmanNode.LEAF_32:
+                    return code32.get(value);
+                case HuffmanNode.LEAF_16:
+                    return code16.get(value);
+                case HuffmanNode.LEAF_8:
+                    return code8.get(value);
+                default:
+                    return codeEof;
+            }
+        }
+    }
+}
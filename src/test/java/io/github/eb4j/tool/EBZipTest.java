@@ -0,0 +1,66 @@
+package io.github.eb4j.tool;
+
+import org.testng.annotations.Test;
+
+import io.github.eb4j.Book;
+import io.github.eb4j.Result;
+import io.github.eb4j.Searcher;
+import io.github.eb4j.SubBook;
+import io.github.eb4j.hook.DefaultHook;
+import io.github.eb4j.io.EBFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for EBZip command line tool.
+ */
+public class EBZipTest {
+
+    private String search(final File dir) throws Exception {
+        try (Book book = new Book(dir)) {
+            SubBook sub = book.getSubBook(1);
+            Searcher searcher = sub.searchWord("Tokyo");
+            Result result = searcher.getNextResult();
+            assertNotNull(result);
+            return result.getText(new DefaultHook(sub));
+        }
+    }
+
+    private int run(final String... args) {
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        return EBZip.run(args, out, out);
+    }
+
+    @Test
+    void testZipAndUnzip() throws Exception {
+        File bookDir = new File(this.getClass().getResource("/data/epwing").getFile());
+        File zipped = Files.createTempDirectory("ebzip-book").toFile();
+        File unzipped = Files.createTempDirectory("ebunzip-book").toFile();
+        assertEquals(run("-l", "1", "-t", "2", bookDir.getPath(), zipped.getPath()), 0);
+        assertTrue(new File(zipped, "test/DATA/HONMON.ebz").isFile());
+        try (Book book = new Book(zipped)) {
+            assertEquals(book.getSubBook(1).getTextFile().getFormat(), EBFormat.FORMAT_EBZIP);
+        }
+        assertEquals(search(zipped), search(bookDir));
+
+        assertEquals(run("-u", zipped.getPath(), unzipped.getPath()), 0);
+        assertEquals(Files.readAllBytes(new File(unzipped, "test/DATA/HONMON").toPath()),
+                Files.readAllBytes(new File(bookDir, "test/DATA/HONMON").toPath()));
+        assertEquals(search(unzipped), search(bookDir));
+    }
+
+    @Test
+    void testUsage() throws Exception {
+        assertEquals(run("-x", "a", "b"), 2);
+        assertEquals(run("-l"), 2);
+        assertEquals(run("a"), 2);
+        assertEquals(run("-l", "9", "a", "b"), 1);
+    }
+}
@@ -2,6 +2,8 @@ package io.github.eb4j.util;
 
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+
 import static org.testng.Assert.assertEquals;
 
 /**
@@ -74,4 +76,30 @@ public class CompareUtilTest {
         byte[] pattern3 = {0x21, 0x22, '\0'};
         assertEquals(CompareUtil.compareToKanaSingle(key, pattern3, exact), 1);
     }
+
+    @Test
+    void testCompareWithOffset() {
+        byte[][] keys = {{0x24, 0x22, 0x21, 0x23, '\0'}, {0x25, 0x22}, {0x21, 0x23, 0x41, '\0'}, {'\0'}};
+        byte[][] patterns = {{0x24, 0x22, 0x21, 0x23}, {0x24, 0x22}, {0x21, 0x23, ' ', '\0'}, {0x21}, {}};
+        for (byte[] key : keys) {
+            for (byte[] pattern : patterns) {
+                byte[] page = new byte[pattern.length + 7];
+                Arrays.fill(page, (byte) 0x7e);
+                System.arraycopy(pattern, 0, page, 3, pattern.length);
+                int len = pattern.length;
+                for (boolean flag : new boolean[] {true, false}) {
+                    assertEquals(CompareUtil.compareToByte(key, page, 3, len, flag),
+                            CompareUtil.compareToByte(key, pattern, flag));
+                    assertEquals(CompareUtil.compareToJISX0208(key, page, 3, len, flag),
+                            CompareUtil.compareToJISX0208(key, pattern, flag));
+                    assertEquals(CompareUtil.compareToLatin(key, page, 3, len, flag),
+                            CompareUtil.compareToLatin(key, pattern, flag));
+                    assertEquals(CompareUtil.compareToKanaGroup(key, page, 3, len, flag),
+                            CompareUtil.compareToKanaGroup(key, pattern, flag));
+                    assertEquals(CompareUtil.compareToKanaSingle(key, page, 3, len, flag),
+                            CompareUtil.compareToKanaSingle(key, pattern, flag));
+                }
+            }
+        }
+    }
 }
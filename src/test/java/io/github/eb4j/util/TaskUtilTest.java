@@ -0,0 +1,47 @@
+package io.github.eb4j.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import io.github.eb4j.EBException;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+/**
+ * Test for TaskUtil.
+ */
+public class TaskUtilTest {
+
+    @Test
+    void testJoin() throws Exception {
+        assertEquals(TaskUtil.join(ForkJoinPool.commonPool().submit(() -> 42)), Integer.valueOf(42));
+    }
+
+    @Test
+    void testJoinUnwrapsEBException() {
+        ForkJoinTask<Integer> task = ForkJoinPool.commonPool().submit(() -> {
+            throw new EBException(EBException.FAILED_READ_FILE, "test");
+        });
+        try {
+            TaskUtil.join(task);
+            fail("exception expected");
+        } catch (EBException e) {
+            assertEquals(e.getErrorCode(), EBException.FAILED_READ_FILE);
+        }
+    }
+
+    @Test
+    void testJoinRethrowsRuntimeException() throws Exception {
+        ForkJoinTask<Integer> task = ForkJoinPool.commonPool().submit(() -> {
+            throw new IllegalStateException();
+        });
+        try {
+            TaskUtil.join(task);
+            fail("exception expected");
+        } catch (IllegalStateException expected) {
+            // not an EBException
+        }
+    }
+}